@@ -287,7 +287,12 @@ CREATE TABLE `t_pay_order` (
         `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
         PRIMARY KEY (`pay_order_id`),
         UNIQUE KEY `Uni_MchNo_MchOrderNo` (`mch_no`, `mch_order_no`),
-        INDEX(`created_at`)
+        INDEX(`created_at`),
+        INDEX `Idx_State_CreatedAt` (`state`, `created_at`, `pay_order_id`),
+        INDEX `Idx_State_ExpiredTime` (`state`, `expired_time`),
+        INDEX `Idx_MchNo_CreatedAt` (`mch_no`, `created_at`),
+        INDEX `Idx_MchOrderNo` (`mch_order_no`),
+        INDEX `Idx_ChannelOrderNo` (`channel_order_no`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='支付订单表';
 
 
@@ -310,10 +315,27 @@ CREATE TABLE `t_mch_notify_record` (
         `created_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) COMMENT '创建时间',
         `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
         PRIMARY KEY (`notify_id`),
-        UNIQUE KEY `Uni_OrderId_Type` (`order_id`, `order_type`)
+        UNIQUE KEY `Uni_OrderId_Type` (`order_id`, `order_type`),
+        INDEX(`created_at`)
 ) ENGINE=InnoDB AUTO_INCREMENT=1001 DEFAULT CHARSET=utf8mb4 COMMENT='商户通知记录表';
 
 
+-- 订单日统计表
+DROP TABLE IF EXISTS `t_order_statistics_day`;
+CREATE TABLE `t_order_statistics_day` (
+        `stat_date` DATE NOT NULL COMMENT '统计日期（订单创建日期）',
+        `mch_no` VARCHAR(64) NOT NULL COMMENT '商户号',
+        `way_code` VARCHAR(20) NOT NULL COMMENT '支付方式代码',
+        `pay_amount` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '支付成功金额（含已退款）,单位分',
+        `pay_count` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '支付成功笔数（含已退款）',
+        `refund_amount` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '退款金额,单位分',
+        `refund_all_count` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '全额退款笔数',
+        `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
+        PRIMARY KEY (`stat_date`, `mch_no`, `way_code`),
+        INDEX `Idx_MchNo_StatDate` (`mch_no`, `stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单日统计表';
+
+
 -- 订单接口数据快照（加密存储）
 DROP TABLE IF EXISTS `t_order_snapshot`;
 CREATE TABLE `t_order_snapshot` (
@@ -364,7 +386,12 @@ CREATE TABLE `t_refund_order` (
           `created_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) COMMENT '创建时间',
           `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
           PRIMARY KEY (`refund_order_id`),
-          UNIQUE KEY `Uni_MchNo_MchRefundNo` (`mch_no`, `mch_refund_no`)
+          UNIQUE KEY `Uni_MchNo_MchRefundNo` (`mch_no`, `mch_refund_no`),
+          INDEX(`created_at`),
+          INDEX `Idx_MchNo_CreatedAt` (`mch_no`, `created_at`),
+          INDEX `Idx_PayOrderId` (`pay_order_id`),
+          INDEX `Idx_ChannelPayOrderNo` (`channel_pay_order_no`),
+          INDEX `Idx_MchRefundNo` (`mch_refund_no`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='退款订单表';
 
 
@@ -399,7 +426,10 @@ CREATE TABLE `t_transfer_order` (
            `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
            PRIMARY KEY (`transfer_id`),
            UNIQUE KEY `Uni_MchNo_MchOrderNo` (`mch_no`, `mch_order_no`),
-           INDEX(`created_at`)
+           INDEX(`created_at`),
+           INDEX `Idx_MchNo_CreatedAt` (`mch_no`, `created_at`),
+           INDEX `Idx_MchOrderNo` (`mch_order_no`),
+           INDEX `Idx_ChannelOrderNo` (`channel_order_no`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='转账订单表';
 
 -- 商户分账接收者账号组
@@ -472,9 +502,20 @@ CREATE TABLE `t_pay_order_division_record` (
           `cal_division_amount` BIGINT(20) NOT NULL COMMENT '计算该接收方的分账金额,单位分',
           `created_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) COMMENT '创建时间',
           `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
-          PRIMARY KEY (`record_id`)
+          PRIMARY KEY (`record_id`),
+          INDEX(`created_at`)
 ) ENGINE=InnoDB AUTO_INCREMENT=1001 DEFAULT CHARSET=utf8mb4 COMMENT='分账记录表';
 
+-- 订单归档记录表
+DROP TABLE IF EXISTS `t_order_archive`;
+CREATE TABLE `t_order_archive` (
+        `source_table` VARCHAR(64) NOT NULL COMMENT '源数据表名',
+        `archive_cutoff` DATETIME DEFAULT NULL COMMENT '归档截止时间（创建时间早于该时间的终态数据已移至月度归档表）',
+        `archived_count` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '累计归档条数',
+        `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
+        PRIMARY KEY (`source_table`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单归档记录表';
+
 
 
 #####  ↑↑↑↑↑↑↑↑↑↑  表结构DDL  ↑↑↑↑↑↑↑↑↑↑  #####
@@ -283,3 +283,58 @@ INSERT INTO t_pay_way (way_code, way_name) VALUES ('UP_JSAPI', '银联Js支付')
 -- 分账状态新增： 已受理
 alter table t_pay_order_division_record modify column `state` TINYINT(6) NOT NULL COMMENT '状态: 0-待分账 1-分账成功（明确成功）, 2-分账失败（明确失败）, 3-分账已受理（上游受理）';
 
+
+## -- ++++ [v2.2.0] ===>
+
+-- 补单任务按 (state, created_at, pay_order_id) 游标分页查询
+alter table t_pay_order add index `Idx_State_CreatedAt` (`state`, `created_at`, `pay_order_id`);
+
+-- 订单超时关闭按 (state, expired_time) 查询
+alter table t_pay_order add index `Idx_State_ExpiredTime` (`state`, `expired_time`);
+
+-- 订单列表： 商户维度按创建时间分页， 三合一订单号查询 （各条件均可走索引）
+alter table t_pay_order add index `Idx_MchNo_CreatedAt` (`mch_no`, `created_at`);
+alter table t_pay_order add index `Idx_MchOrderNo` (`mch_order_no`);
+alter table t_pay_order add index `Idx_ChannelOrderNo` (`channel_order_no`);
+
+alter table t_refund_order add index `created_at` (`created_at`);
+alter table t_refund_order add index `Idx_MchNo_CreatedAt` (`mch_no`, `created_at`);
+alter table t_refund_order add index `Idx_PayOrderId` (`pay_order_id`);
+alter table t_refund_order add index `Idx_ChannelPayOrderNo` (`channel_pay_order_no`);
+alter table t_refund_order add index `Idx_MchRefundNo` (`mch_refund_no`);
+
+alter table t_transfer_order add index `Idx_MchNo_CreatedAt` (`mch_no`, `created_at`);
+alter table t_transfer_order add index `Idx_MchOrderNo` (`mch_order_no`);
+alter table t_transfer_order add index `Idx_ChannelOrderNo` (`channel_order_no`);
+
+-- 订单日统计表
+CREATE TABLE `t_order_statistics_day` (
+        `stat_date` DATE NOT NULL COMMENT '统计日期（订单创建日期）',
+        `mch_no` VARCHAR(64) NOT NULL COMMENT '商户号',
+        `way_code` VARCHAR(20) NOT NULL COMMENT '支付方式代码',
+        `pay_amount` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '支付成功金额（含已退款）,单位分',
+        `pay_count` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '支付成功笔数（含已退款）',
+        `refund_amount` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '退款金额,单位分',
+        `refund_all_count` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '全额退款笔数',
+        `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
+        PRIMARY KEY (`stat_date`, `mch_no`, `way_code`),
+        INDEX `Idx_MchNo_StatDate` (`mch_no`, `stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单日统计表';
+
+-- 按历史订单初始化日统计数据
+insert into t_order_statistics_day (stat_date, mch_no, way_code, pay_amount, pay_count, refund_amount, refund_all_count)
+select DATE(created_at), mch_no, way_code, SUM(amount), COUNT(1), SUM(refund_amount), SUM(CASE WHEN state = 5 THEN 1 ELSE 0 END)
+from t_pay_order where state in (2, 5)
+group by DATE(created_at), mch_no, way_code;
+
+-- 订单归档记录表
+CREATE TABLE `t_order_archive` (
+        `source_table` VARCHAR(64) NOT NULL COMMENT '源数据表名',
+        `archive_cutoff` DATETIME DEFAULT NULL COMMENT '归档截止时间（创建时间早于该时间的终态数据已移至月度归档表）',
+        `archived_count` BIGINT(20) NOT NULL DEFAULT '0' COMMENT '累计归档条数',
+        `updated_at` TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) COMMENT '更新时间',
+        PRIMARY KEY (`source_table`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单归档记录表';
+
+alter table t_mch_notify_record add index `created_at` (`created_at`);
+alter table t_pay_order_division_record add index `created_at` (`created_at`);
@@ -72,6 +72,26 @@ public class AliyunOssService implements IOssService{
         }
     }
 
+    @Override
+    public String upload2PreviewUrl(OssSavePlaceEnum ossSavePlaceEnum, File file, String saveDirAndFileName) {
+
+        try {
+
+            this.ossClient.putObject(ossSavePlaceEnum == OssSavePlaceEnum.PUBLIC ? aliyunOssYmlConfig.getPublicBucketName() : aliyunOssYmlConfig.getPrivateBucketName()
+                    , saveDirAndFileName, file);
+
+            if(ossSavePlaceEnum == OssSavePlaceEnum.PUBLIC){
+                return "https://" + aliyunOssYmlConfig.getPublicBucketName() + "." + aliyunOssYmlConfig.getEndpoint() + "/" + saveDirAndFileName;
+            }
+
+            return saveDirAndFileName;
+
+        } catch (Exception e) {
+            log.error("error", e);
+            return null;
+        }
+    }
+
     @Override
     public boolean downloadFile(OssSavePlaceEnum ossSavePlaceEnum, String source, String target) {
 
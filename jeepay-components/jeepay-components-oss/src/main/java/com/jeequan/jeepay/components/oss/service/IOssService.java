@@ -18,6 +18,8 @@ package com.jeequan.jeepay.components.oss.service;
 import com.jeequan.jeepay.components.oss.constant.OssSavePlaceEnum;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
+
 /**
  * OSSService 接口
  *
@@ -30,6 +32,9 @@ public interface IOssService {
     /** 上传文件 & 生成下载/预览URL **/
     String upload2PreviewUrl(OssSavePlaceEnum ossSavePlaceEnum, MultipartFile multipartFile, String saveDirAndFileName);
 
+    /** 上传本地文件 & 生成下载/预览URL **/
+    String upload2PreviewUrl(OssSavePlaceEnum ossSavePlaceEnum, File file, String saveDirAndFileName);
+
     /** 将文件下载到本地
      * 返回是否 写入成功
      * false: 写入失败， 或者文件不存在
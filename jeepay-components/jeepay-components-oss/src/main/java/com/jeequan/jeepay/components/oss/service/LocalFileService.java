@@ -15,6 +15,7 @@
  */
 package com.jeequan.jeepay.components.oss.service;
 
+import cn.hutool.core.io.FileUtil;
 import com.jeequan.jeepay.core.service.ISysConfigService;
 import com.jeequan.jeepay.components.oss.config.OssYmlConfig;
 import com.jeequan.jeepay.components.oss.constant.OssSavePlaceEnum;
@@ -71,8 +72,41 @@ public class LocalFileService implements IOssService{
         return sysConfigService.getDBApplicationConfig().getOssPublicSiteUrl() + "/" + saveDirAndFileName;
     }
 
+    @Override
+    public String upload2PreviewUrl(OssSavePlaceEnum ossSavePlaceEnum, File file, String saveDirAndFileName) {
+
+        try {
+            FileUtil.copy(file, new File(getSavePath(ossSavePlaceEnum) + File.separator + saveDirAndFileName), true);
+        } catch (Exception e) {
+            log.error("", e);
+            return null;
+        }
+
+        // 私有文件 不返回预览文件地址
+        if(ossSavePlaceEnum == OssSavePlaceEnum.PRIVATE){
+            return saveDirAndFileName;
+        }
+
+        return sysConfigService.getDBApplicationConfig().getOssPublicSiteUrl() + "/" + saveDirAndFileName;
+    }
+
     @Override
     public boolean downloadFile(OssSavePlaceEnum ossSavePlaceEnum, String source, String target) {
-        return false;
+
+        try {
+            File sourceFile = new File(getSavePath(ossSavePlaceEnum) + File.separator + source);
+            if(!sourceFile.isFile()){
+                return false;
+            }
+            FileUtil.copy(sourceFile, new File(target), true);
+            return true;
+        } catch (Exception e) {
+            log.error("", e);
+            return false;
+        }
+    }
+
+    private String getSavePath(OssSavePlaceEnum ossSavePlaceEnum){
+        return ossSavePlaceEnum == OssSavePlaceEnum.PUBLIC ? ossYmlConfig.getOss().getFilePublicPath() : ossYmlConfig.getOss().getFilePrivatePath();
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.core.beans;
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.RandomUtil;
+import com.jeequan.jeepay.core.cache.RedisUtil;
+import com.jeequan.jeepay.core.constants.CS;
+import com.jeequan.jeepay.core.utils.OrderIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+* 订单号生成器 节点号分配
+* 未配置固定节点号时， 启动时从redis租用一个空闲的节点号并定期续约， 保证同一系统的多个节点生成的订单号不重复；
+* 生成器仅在租约有效期内生成订单号 （按最后一次续约成功的时间计算）， redis不可用导致无法续约时， 租约到期后停止生成 （下单失败），
+* 不使用可能与其他节点重复的默认节点号； redis恢复后重新续约或租用。
+*/
+@Slf4j
+@Component
+public class OrderIdWorkerBean {
+
+    /** 租约有效期 / 续约间隔 (秒) **/
+    private static final long LEASE_TIME = 60;
+    private static final long RENEW_INTERVAL = 20;
+
+    /** 本地租约提前到期的时间(毫秒)， 抵消redis过期时间与本机时间的偏差 **/
+    private static final long LEASE_SAFETY_MILLIS = 5000;
+
+    /** 停机时等待借用的未来时间走完的最长时间(毫秒) **/
+    private static final long MAX_RELEASE_WAIT_MILLIS = 5000;
+
+    /** 固定节点号， <0 表示从redis租用 **/
+    @Value("${isys.order-id-worker-id:-1}")
+    private int configWorkerId;
+
+    /** 当前节点标识 **/
+    private final String nodeId = NetUtil.getLocalhostStr() + "_" + IdUtil.fastSimpleUUID();
+
+    /** 当前租用的节点号， 未租用时为-1 **/
+    private volatile int leasedWorkerId = -1;
+
+    private ScheduledExecutorService renewExecutor;
+
+    @PostConstruct
+    public void init(){
+
+        if(configWorkerId >= 0){
+            OrderIdGenerator.setWorkerId(configWorkerId);
+            log.info("订单号生成器使用固定节点号, workerId={}", configWorkerId);
+            return ;
+        }
+
+        lease();
+
+        renewExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("order-id-worker-renew-", true));
+        renewExecutor.scheduleWithFixedDelay(this::renew, RENEW_INTERVAL, RENEW_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /** 从随机位置开始查找空闲的节点号 **/
+    private void lease(){
+
+        try {
+            int start = RandomUtil.randomInt(OrderIdGenerator.MAX_WORKER_COUNT);
+            for (int i = 0; i < OrderIdGenerator.MAX_WORKER_COUNT; i++) {
+                int workerId = (start + i) % OrderIdGenerator.MAX_WORKER_COUNT;
+                long leaseStart = System.currentTimeMillis(); // 以请求前的时间计算到期时间， 不晚于redis中的过期时间
+                if(RedisUtil.setIfAbsent(CS.getCacheKeyOrderIdWorker(workerId), nodeId, LEASE_TIME)){
+                    OrderIdGenerator.setWorkerId(workerId, leaseExpireAt(leaseStart));
+                    leasedWorkerId = workerId;
+                    log.info("订单号生成器租用节点号成功, workerId={}, nodeId={}", workerId, nodeId);
+                    return ;
+                }
+            }
+            log.error("订单号生成器无空闲的节点号, 暂停生成订单号");
+        } catch (Exception e) {
+            log.error("订单号生成器租用节点号异常, 暂停生成订单号", e);
+        }
+    }
+
+    private void renew(){
+
+        try {
+            if(leasedWorkerId < 0){ // 启动时未租用成功， 重试
+                lease();
+                return ;
+            }
+
+            long leaseStart = System.currentTimeMillis();
+            if(RedisUtil.compareAndExpire(CS.getCacheKeyOrderIdWorker(leasedWorkerId), nodeId, LEASE_TIME)){
+                OrderIdGenerator.renewWorkerId(leasedWorkerId, leaseExpireAt(leaseStart));
+                return ;
+            }
+
+            // 租约已被其他节点租用 （如长时间无法续约）， 立即停止使用该节点号
+            log.warn("订单号生成器节点号租约已丢失, 重新租用, workerId={}", leasedWorkerId);
+            OrderIdGenerator.clearWorkerId();
+            leasedWorkerId = -1;
+            lease();
+        } catch (Exception e) { // 本地租约到期前续约成功即可继续生成
+            log.error("订单号生成器节点号续约异常, workerId={}", leasedWorkerId, e);
+        }
+    }
+
+    private static long leaseExpireAt(long leaseStart){
+        return leaseStart + TimeUnit.SECONDS.toMillis(LEASE_TIME) - LEASE_SAFETY_MILLIS;
+    }
+
+    /** 停机时释放租约， 释放前等待借用的未来时间走完， 避免接手该节点号的节点生成重复的订单号 **/
+    @PreDestroy
+    public void destroy(){
+
+        if(renewExecutor == null){
+            return ;
+        }
+        renewExecutor.shutdownNow();
+
+        if(leasedWorkerId < 0){
+            return ;
+        }
+        OrderIdGenerator.clearWorkerId();
+
+        try {
+            long waitMillis = OrderIdGenerator.getMaxIssuedTime() - System.currentTimeMillis();
+            if(waitMillis > 0){
+                Thread.sleep(Math.min(waitMillis, MAX_RELEASE_WAIT_MILLIS));
+            }
+            RedisUtil.compareAndDel(CS.getCacheKeyOrderIdWorker(leasedWorkerId), nodeId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("订单号生成器释放节点号异常, workerId={}", leasedWorkerId, e);
+        }
+    }
+
+}
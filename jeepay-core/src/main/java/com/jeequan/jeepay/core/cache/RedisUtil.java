@@ -19,9 +19,11 @@ import com.alibaba.fastjson.JSON;
 import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.util.CollectionUtils;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 /*
@@ -35,6 +37,14 @@ public class RedisUtil {
 
     private static StringRedisTemplate stringRedisTemplate = null;
 
+    /** 值匹配时重置过期时间(秒) **/
+    private static final DefaultRedisScript<Long> COMPARE_AND_EXPIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+
+    /** 值匹配时删除 **/
+    private static final DefaultRedisScript<Long> COMPARE_AND_DEL_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
     /** 获取RedisTemplate对象, 默认使用 StringRedisTemplate, 客户端可查询 **/
     private static final RedisTemplate getStringRedisTemplate(){
 
@@ -79,6 +89,24 @@ public class RedisUtil {
         getStringRedisTemplate().opsForValue().set(key, value, time, timeUnit);
     }
 
+    /** 缓存不存在时放入并设置时间, 默认单位：秒,  返回是否放入成功 */
+    public static boolean setIfAbsent(String key, String value, long time) {
+        Boolean result = getStringRedisTemplate().opsForValue().setIfAbsent(key, value, time, TimeUnit.SECONDS);
+        return result != null && result;
+    }
+
+    /** 当缓存值与value一致时重置失效时间, 单位：秒,  返回是否设置成功 */
+    public static boolean compareAndExpire(String key, String value, long time) {
+        Object result = getStringRedisTemplate().execute(COMPARE_AND_EXPIRE_SCRIPT, Collections.singletonList(key), value, String.valueOf(time));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    /** 当缓存值与value一致时删除,  返回是否删除成功 */
+    public static boolean compareAndDel(String key, String value) {
+        Object result = getStringRedisTemplate().execute(COMPARE_AND_DEL_SCRIPT, Collections.singletonList(key), value);
+        return Long.valueOf(1L).equals(result);
+    }
+
     /** 放置缓存对象 */
     public static void set(String key, Object value) {
         setString(key, JSON.toJSONString(value));
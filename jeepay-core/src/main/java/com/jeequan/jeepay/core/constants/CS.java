@@ -112,6 +112,24 @@ public class CS {
         return String.format(CACHE_KEY_IMG_CODE, imgToken);
     }
 
+    /** 定时任务租约 缓存key **/
+    public static final String CACHE_KEY_TASK_LEASE = "task_lease_%s";
+    public static String getCacheKeyTaskLease(String taskName){
+        return String.format(CACHE_KEY_TASK_LEASE, taskName);
+    }
+
+    /** 订单号生成器节点号租约 缓存key **/
+    public static final String CACHE_KEY_ORDER_ID_WORKER = "order_id_worker_%s";
+    public static String getCacheKeyOrderIdWorker(int workerId){
+        return String.format(CACHE_KEY_ORDER_ID_WORKER, workerId);
+    }
+
+    /** 订单导出任务 缓存key **/
+    public static final String CACHE_KEY_ORDER_EXPORT_JOB = "order_export_job_%s";
+    public static String getCacheKeyOrderExportJob(String jobId){
+        return String.format(CACHE_KEY_ORDER_EXPORT_JOB, jobId);
+    }
+
     /** 回调URL的格前缀  */
     public static final String PAY_RETURNURL_FIX_ONLY_JUMP_PREFIX = "ONLYJUMP_";
 
@@ -36,7 +36,10 @@ import org.springframework.web.multipart.MultipartFile;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.net.URLEncoder;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -306,6 +309,14 @@ public abstract class AbstractCtrl {
         file.transferTo(saveFile);
     }
 
+    /** 设置文件下载的响应头， 返回响应输出流 **/
+    protected OutputStream getDownloadOutputStream(String fileName, String contentType) throws IOException {
+
+        response.setContentType(contentType);
+        response.setHeader("Content-Disposition", "attachment; filename=" + URLEncoder.encode(fileName, "UTF-8"));
+        return response.getOutputStream();
+    }
+
     /** 获取客户端ip地址 **/
     public String getClientIp() {
         return requestKitBean.getClientIp();
@@ -15,6 +15,8 @@
  */
 package com.jeequan.jeepay.core.entity;
 
+import com.alibaba.fastjson.annotation.JSONField;
+import com.alibaba.fastjson.serializer.ToStringSerializer;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
@@ -62,10 +64,11 @@ public class MchNotifyRecord extends BaseModel implements Serializable {
     private static final long serialVersionUID=1L;
 
     /**
-     * 商户通知记录ID
+     * 商户通知记录ID （由 OrderIdGenerator 生成， 包含所属订单的分片号； 按字符串输出， 避免前端精度丢失）
      */
     @ApiModelProperty(value = "商户通知记录ID")
-    @TableId(value = "notify_id", type = IdType.AUTO)
+    @TableId(value = "notify_id", type = IdType.INPUT)
+    @JSONField(serializeUsing = ToStringSerializer.class)
     private Long notifyId;
 
     /**
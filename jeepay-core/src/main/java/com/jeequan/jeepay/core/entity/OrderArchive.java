@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.core.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * <p>
+ * 订单归档记录表 （每个源表一条， 记录已完成归档的截止时间）
+ * </p>
+ */
+@ApiModel(value = "订单归档记录表", description = "")
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("t_order_archive")
+public class OrderArchive implements Serializable {
+
+    //gw
+    public static final LambdaQueryWrapper<OrderArchive> gw(){
+        return new LambdaQueryWrapper<>();
+    }
+
+    private static final long serialVersionUID=1L;
+
+    /**
+     * 源表名称
+     */
+    @ApiModelProperty(value = "源表名称")
+    @TableId(value = "source_table", type = IdType.INPUT)
+    private String sourceTable;
+
+    /**
+     * 归档截止时间 （创建时间早于该时间的终态数据已全部移至归档表）
+     */
+    @ApiModelProperty(value = "归档截止时间 （创建时间早于该时间的终态数据已全部移至归档表）")
+    private Date archiveCutoff;
+
+    /**
+     * 累计归档条数
+     */
+    @ApiModelProperty(value = "累计归档条数")
+    private Long archivedCount;
+
+    /**
+     * 更新时间
+     */
+    @ApiModelProperty(value = "更新时间")
+    private Date updatedAt;
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.core.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * <p>
+ * 订单日统计表 （按 订单创建日期, 商户号, 支付方式 汇总的支付成功数据）
+ * </p>
+ */
+@ApiModel(value = "订单日统计表", description = "")
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("t_order_statistics_day")
+public class OrderStatisticsDay implements Serializable {
+
+    //gw
+    public static final LambdaQueryWrapper<OrderStatisticsDay> gw(){
+        return new LambdaQueryWrapper<>();
+    }
+
+    private static final long serialVersionUID=1L;
+
+    /**
+     * 统计日期 （订单创建日期）
+     */
+    @ApiModelProperty(value = "统计日期 （订单创建日期）")
+    private Date statDate;
+
+    /**
+     * 商户号
+     */
+    @ApiModelProperty(value = "商户号")
+    private String mchNo;
+
+    /**
+     * 支付方式代码
+     */
+    @ApiModelProperty(value = "支付方式代码")
+    private String wayCode;
+
+    /**
+     * 支付成功金额（含已退款）,单位分
+     */
+    @ApiModelProperty(value = "支付成功金额（含已退款）,单位分")
+    private Long payAmount;
+
+    /**
+     * 支付成功笔数（含已退款）
+     */
+    @ApiModelProperty(value = "支付成功笔数（含已退款）")
+    private Long payCount;
+
+    /**
+     * 退款金额,单位分
+     */
+    @ApiModelProperty(value = "退款金额,单位分")
+    private Long refundAmount;
+
+    /**
+     * 全额退款笔数
+     */
+    @ApiModelProperty(value = "全额退款笔数")
+    private Long refundAllCount;
+
+    /**
+     * 更新时间
+     */
+    @ApiModelProperty(value = "更新时间")
+    private Date updatedAt;
+
+}
@@ -1,5 +1,7 @@
 package com.jeequan.jeepay.core.entity;
 
+import com.alibaba.fastjson.annotation.JSONField;
+import com.alibaba.fastjson.serializer.ToStringSerializer;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
@@ -41,10 +43,11 @@ public class PayOrderDivisionRecord implements Serializable {
     }
 
     /**
-     * 分账记录ID
+     * 分账记录ID （由 OrderIdGenerator 生成， 包含所属订单的分片号； 按字符串输出， 避免前端精度丢失）
      */
     @ApiModelProperty(value = "分账记录ID")
-    @TableId(value = "record_id", type = IdType.AUTO)
+    @TableId(value = "record_id", type = IdType.INPUT)
+    @JSONField(serializeUsing = ToStringSerializer.class)
     private Long recordId;
 
     /**
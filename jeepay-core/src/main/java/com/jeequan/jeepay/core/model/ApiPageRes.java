@@ -48,6 +48,12 @@ public class ApiPageRes<M> extends ApiRes {
         innerPage.setCurrent(iPage.getCurrent()); //当前页码
         innerPage.setHasNext( iPage.getPages() > iPage.getCurrent()); //是否有下一页
 
+        // 游标分页
+        if(iPage instanceof CursorPage){
+            innerPage.setNextCursor(((CursorPage<M>) iPage).getNextCursor());
+            innerPage.setHasNext(((CursorPage<M>) iPage).hasNext());
+        }
+
         ApiPageRes result = new ApiPageRes();
         result.setData(innerPage);
         result.setCode(ApiCodeEnum.SUCCESS.getCode());
@@ -77,6 +83,10 @@ public class ApiPageRes<M> extends ApiRes {
         @ApiModelProperty(value = "是否包含下一页， true:包含 ，false: 不包含")
         private boolean hasNext;
 
+        /** 下一页游标 （游标分页时返回） */
+        @ApiModelProperty(value = "下一页游标 （游标分页时返回）")
+        private String nextCursor;
+
     }
 
 }
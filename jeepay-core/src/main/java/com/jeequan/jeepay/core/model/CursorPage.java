@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.core.model;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+
+import java.util.List;
+
+/*
+* 游标分页结果
+* 按 (创建时间, 主键) 倒序的游标分页， 不查询总数； 下一页请求时传入nextCursor即可， 查询耗时与页码深度无关。
+*/
+public class CursorPage<T> extends Page<T> {
+
+    /** 下一页游标 （本页最后一条记录的主键）， 无下一页时为空 **/
+    private final String nextCursor;
+
+    public CursorPage(List<T> records, long size, String nextCursor) {
+        super(1, size, false);
+        this.nextCursor = nextCursor;
+        setRecords(records);
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+}
@@ -18,31 +18,41 @@ package com.jeequan.jeepay.core.model;
 import cn.hutool.core.util.URLUtil;
 import com.alibaba.fastjson.JSONObject;
 import com.jeequan.jeepay.core.utils.JeepayKit;
-import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
 
 import java.io.Serializable;
 
 /*
-* 系统应用配置项定义Bean
+* 系统应用配置项定义Bean （不可变对象， 配置变更时整体替换）
 *
 * @author terrfly
 * @site https://www.jeequan.com
 * @date 2021/6/8 16:35
 */
-@Data
+@Getter
+@ToString
+@AllArgsConstructor
 public class DBApplicationConfig implements Serializable {
 
     /** 运营系统地址 **/
-    private String mgrSiteUrl;
+    private final String mgrSiteUrl;
 
     /** 商户系统地址 **/
-    private String mchSiteUrl;
+    private final String mchSiteUrl;
 
     /** 支付网关地址 **/
-    private String paySiteUrl;
+    private final String paySiteUrl;
 
     /** oss公共读文件地址 **/
-    private String ossPublicSiteUrl;
+    private final String ossPublicSiteUrl;
+
+    /** 根据配置分组数据 <configKey, configVal> 创建 **/
+    public static DBApplicationConfig of(JSONObject configJSON){
+        return new DBApplicationConfig(configJSON.getString("mgrSiteUrl"), configJSON.getString("mchSiteUrl"),
+                configJSON.getString("paySiteUrl"), configJSON.getString("ossPublicSiteUrl"));
+    }
 
     /** 生成  【jsapi统一收银台跳转地址】 **/
     public String genUniJsapiPayUrl(String payOrderId){
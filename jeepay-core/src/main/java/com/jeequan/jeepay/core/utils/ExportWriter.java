@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.core.utils;
+
+import cn.hutool.core.date.DateUtil;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/*
+* 流式表格写入工具 (csv / xlsx)
+* 逐行写入输出流， 不在内存中保留已写入的数据， 导出任意行数时内存占用恒定。
+*/
+public abstract class ExportWriter implements Closeable {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_XLSX = "xlsx";
+
+    /** 创建写入器， 不支持的格式返回null **/
+    public static ExportWriter of(String format, OutputStream out){
+
+        if(FORMAT_CSV.equalsIgnoreCase(format)){
+            return new CsvWriter(out);
+        }else if(FORMAT_XLSX.equalsIgnoreCase(format)){
+            return new XlsxWriter(out);
+        }
+        return null;
+    }
+
+    /** 文件对应的contentType **/
+    public static String getContentType(String format){
+        return FORMAT_XLSX.equalsIgnoreCase(format) ? "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet" : "text/csv;charset=UTF-8";
+    }
+
+    /** 写入一行 **/
+    public abstract void writeRow(List<?> row) throws IOException;
+
+    /** 写入结束， 刷新并关闭输出流 **/
+    @Override
+    public abstract void close() throws IOException;
+
+    /** 单元格文本 **/
+    protected static String toText(Object value){
+
+        if(value == null){
+            return "";
+        }else if(value instanceof Date){
+            return DateUtil.formatDateTime((Date) value);
+        }else if(value instanceof BigDecimal){
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+
+
+    /** csv格式： UTF-8(BOM)编码， 兼容Excel直接打开 **/
+    private static class CsvWriter extends ExportWriter {
+
+        private final Writer writer;
+        private boolean bomWritten = false;
+
+        CsvWriter(OutputStream out){
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        public void writeRow(List<?> row) throws IOException {
+
+            if(!bomWritten){
+                writer.write('\uFEFF');
+                bomWritten = true;
+            }
+
+            for (int i = 0; i < row.size(); i++) {
+                if(i > 0){
+                    writer.write(',');
+                }
+                writer.write(escape(row.get(i)));
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+        private static String escape(Object value){
+
+            String text = toText(value);
+
+            // 文本以公式字符开头时， 添加单引号前缀， 避免被Excel作为公式执行
+            if(value instanceof CharSequence && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0){
+                text = "'" + text;
+            }
+
+            if(text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\r') >= 0 || text.indexOf('\n') >= 0){
+                return "\"" + text.replace("\"", "\"\"") + "\"";
+            }
+            return text;
+        }
+    }
+
+
+    /**
+    * xlsx格式： 直接生成OOXML压缩包， 工作表内容逐行写入zip流 (字符串使用inlineStr， 无需共享字符串表)；
+    * 单个sheet超出最大行数时自动写入下一个sheet， workbook等描述文件在写入结束时生成。
+    **/
+    private static class XlsxWriter extends ExportWriter {
+
+        /** 单个sheet最大行数 **/
+        private static final int MAX_ROWS_PER_SHEET = 1048576;
+
+        private final ZipOutputStream zipOut;
+        private final Writer writer;
+
+        private int sheetCount = 0;
+        private int rowNum = 0;
+        private List<?> headerRow = null;
+
+        XlsxWriter(OutputStream out){
+            this.zipOut = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024), StandardCharsets.UTF_8);
+            this.writer = new OutputStreamWriter(zipOut, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void writeRow(List<?> row) throws IOException {
+
+            // 第一行作为表头， 每个sheet均写入
+            if(headerRow == null){
+                headerRow = row;
+            }
+
+            if(sheetCount == 0 || rowNum >= MAX_ROWS_PER_SHEET){
+                nextSheet();
+            }
+
+            writeRowXml(row);
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            if(sheetCount == 0){
+                nextSheet();
+            }
+            endSheet();
+
+            StringBuilder contentTypes = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>")
+                    .append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+                    .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+                    .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+                    .append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+            StringBuilder sheets = new StringBuilder();
+            StringBuilder sheetRels = new StringBuilder();
+            for (int i = 1; i <= sheetCount; i++) {
+                contentTypes.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                        .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+                sheets.append("<sheet name=\"Sheet").append(i).append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+                sheetRels.append("<Relationship Id=\"rId").append(i)
+                        .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+            }
+            contentTypes.append("</Types>");
+
+            writeEntry("[Content_Types].xml", contentTypes.toString());
+            writeEntry("_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                    + "</Relationships>");
+            writeEntry("xl/workbook.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                    + "<sheets>" + sheets + "</sheets></workbook>");
+            writeEntry("xl/_rels/workbook.xml.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" + sheetRels + "</Relationships>");
+
+            zipOut.close();
+        }
+
+        private void nextSheet() throws IOException {
+
+            if(sheetCount > 0){
+                endSheet();
+            }
+
+            sheetCount++;
+            rowNum = 0;
+            zipOut.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+
+            // 续写的sheet， 重复写入表头
+            if(sheetCount > 1 && headerRow != null){
+                writeRowXml(headerRow);
+            }
+        }
+
+        private void endSheet() throws IOException {
+            writer.write("</sheetData></worksheet>");
+            writer.flush();
+            zipOut.closeEntry();
+        }
+
+        private void writeRowXml(List<?> row) throws IOException {
+
+            rowNum++;
+            writer.write("<row r=\"" + rowNum + "\">");
+            for (Object value : row) {
+                if(value instanceof Number){
+                    writer.write("<c><v>" + toText(value) + "</v></c>");
+                }else{
+                    writer.write("<c t=\"inlineStr\"><is><t>");
+                    writer.write(escapeXml(toText(value)));
+                    writer.write("</t></is></c>");
+                }
+            }
+            writer.write("</row>");
+        }
+
+        private void writeEntry(String name, String content) throws IOException {
+            zipOut.putNextEntry(new ZipEntry(name));
+            writer.write(content);
+            writer.flush();
+            zipOut.closeEntry();
+        }
+
+        /** xml转义， 并去除xml不允许的控制字符 **/
+        private static String escapeXml(String text){
+
+            StringBuilder sb = new StringBuilder(text.length() + 16);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c){
+                    case '<': sb.append("&lt;"); break;
+                    case '>': sb.append("&gt;"); break;
+                    case '&': sb.append("&amp;"); break;
+                    case '"': sb.append("&quot;"); break;
+                    default:
+                        if(c >= 0x20 || c == '\t' || c == '\n' || c == '\r'){
+                            sb.append(c);
+                        }
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+}
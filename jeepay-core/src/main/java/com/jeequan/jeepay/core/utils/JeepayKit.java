@@ -21,12 +21,16 @@ import com.jeequan.jeepay.core.exception.BizException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -56,6 +60,17 @@ public class JeepayKit {
 
     private static String encodingCharset = "UTF-8";
 
+    /** 签名类型 **/
+    public static final String SIGN_TYPE_MD5 = "MD5";
+    public static final String SIGN_TYPE_HMAC_SHA256 = "HMAC-SHA256";
+
+    /** 16进制编码表 **/
+    private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+    private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+
+    /** 线程内复用的签名上下文 (摘要实例、拼接缓冲区、字节缓冲区) **/
+    private static final ThreadLocal<SignContext> SIGN_CONTEXT = ThreadLocal.withInitial(SignContext::new);
+
     /**
      * <p><b>Description: </b>计算签名摘要
      * <p>2018年9月30日 上午11:32:46
@@ -64,25 +79,69 @@ public class JeepayKit {
      * @return
      */
     public static String getSign(Map<String,Object> map, String key){
-        ArrayList<String> list = new ArrayList<String>();
-        for(Map.Entry<String,Object> entry:map.entrySet()){
-            if(null != entry.getValue() && !"".equals(entry.getValue())){
-                list.add(entry.getKey() + "=" + entry.getValue() + "&");
-            }
-        }
-        int size = list.size();
-        String [] arrayToSort = list.toArray(new String[size]);
-        Arrays.sort(arrayToSort, String.CASE_INSENSITIVE_ORDER);
-        StringBuilder sb = new StringBuilder();
-        for(int i = 0; i < size; i ++) {
-            sb.append(arrayToSort[i]);
-        }
-        String result = sb.toString();
-        result += "key=" + key;
-        log.info("signStr:{}", result);
-        result = md5(result, encodingCharset).toUpperCase();
-        log.info("sign:{}", result);
-        return result;
+        return getSign(map, key, SIGN_TYPE_MD5);
+    }
+
+    /**
+     * 计算签名摘要
+     * 签名串： 按参数名(不区分大小写)排序后拼接为 k1=v1&k2=v2&key=商户秘钥， 空值不参与签名；
+     * signType = HMAC-SHA256 时使用商户秘钥计算HMAC， 否则使用MD5， 结果均为大写。
+     * @param map 参数Map
+     * @param key 商户秘钥， 为空时抛出BizException
+     * @param signType 签名类型
+     * @return
+     */
+    public static String getSign(Map<String,Object> map, String key, String signType){
+
+        // 秘钥为空时 MD5 与 HMAC 均无法得到有效签名， 统一拒绝
+        if(StringUtils.isEmpty(key)){
+            throw new BizException("商户秘钥未配置");
+        }
+
+        SignContext ctx = SIGN_CONTEXT.get();
+        try {
+            // 1. 过滤空值， 按参数名排序
+            Map.Entry<String, Object>[] entries = ctx.entries(map.size());
+            int size = 0;
+            for(Map.Entry<String,Object> entry : map.entrySet()){
+                if(null != entry.getValue() && !"".equals(entry.getValue())){
+                    entries[size++] = entry;
+                }
+            }
+            Arrays.sort(entries, 0, size, SIGN_ENTRY_ORDER);
+
+            // 2. 拼接签名串
+            StringBuilder sb = ctx.sb;
+            for(int i = 0; i < size; i ++) {
+                sb.append(entries[i].getKey()).append('=').append(entries[i].getValue()).append('&');
+            }
+            sb.append("key=").append(key);
+
+            if(log.isDebugEnabled()){
+                log.debug("signStr:{}", sb);
+            }
+
+            // 3. 摘要， 直接使用缓冲区中的UTF-8字节
+            int len = ctx.encodeUtf8(sb);
+            byte[] digestData;
+            if(SIGN_TYPE_HMAC_SHA256.equalsIgnoreCase(signType)){
+                Mac mac = ctx.hmacSha256(key);
+                mac.update(ctx.buffer, 0, len);
+                digestData = mac.doFinal();
+            }else{
+                MessageDigest md = ctx.md5;
+                md.reset();
+                md.update(ctx.buffer, 0, len);
+                digestData = md.digest();
+            }
+
+            String result = toHex(digestData, HEX_UPPER);
+            log.debug("sign:{}", result);
+            return result;
+
+        } finally {
+            ctx.reset();
+        }
     }
 
 
@@ -94,15 +153,12 @@ public class JeepayKit {
      * @return
      */
     public static String md5(String value, String charset) {
-        MessageDigest md = null;
         try {
             byte[] data = value.getBytes(charset);
-            md = MessageDigest.getInstance("MD5");
+            MessageDigest md = SIGN_CONTEXT.get().md5;
+            md.reset();
             byte[] digestData = md.digest(data);
             return toHex(digestData);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
         } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
             return null;
@@ -110,19 +166,166 @@ public class JeepayKit {
     }
 
     public static String toHex(byte input[]) {
+        return toHex(input, HEX_LOWER);
+    }
+
+    /** 查表方式转换为16进制字符串 **/
+    private static String toHex(byte input[], char[] hexTable) {
         if (input == null) {
             return null;
         }
-        StringBuffer output = new StringBuffer(input.length * 2);
+        char[] output = new char[input.length * 2];
         for (int i = 0; i < input.length; i++) {
             int current = input[i] & 0xff;
-            if (current < 16) {
-                output.append("0");
+            output[i * 2] = hexTable[current >>> 4];
+            output[i * 2 + 1] = hexTable[current & 0x0f];
+        }
+        return new String(output);
+    }
+
+    /**
+     * 签名参数排序规则， 与 对"k=v&"字符串使用 String.CASE_INSENSITIVE_ORDER 排序 的结果一致，
+     * 即参数名后追加'='参与比较， 仅在参数名(忽略大小写)相同时才比较参数值。
+     **/
+    private static final Comparator<Map.Entry<String, Object>> SIGN_ENTRY_ORDER = (e1, e2) -> {
+
+        String k1 = e1.getKey(), k2 = e2.getKey();
+        int n1 = k1.length(), n2 = k2.length();
+        int min = Math.min(n1, n2);
+        for (int i = 0; i < min; i++) {
+            char c1 = k1.charAt(i), c2 = k2.charAt(i);
+            if(Character.isSurrogate(c1) || Character.isSurrogate(c2)){ // 代理字符的比较规则与jdk版本有关， 直接比较完整字符串
+                return compareSignStr(e1, e2);
+            }
+            int c = compareIgnoreCase(c1, c2);
+            if(c != 0){
+                return c;
             }
-            output.append(Integer.toString(current, 16));
         }
 
-        return output.toString();
+        if(n1 != n2){ // 一个参数名是另一个的前缀， 使用 '=' 与较长参数名的下一个字符比较
+            char next = n1 < n2 ? k2.charAt(n1) : k1.charAt(n2);
+            int c = Character.isSurrogate(next) ? 0 : (n1 < n2 ? compareIgnoreCase('=', next) : compareIgnoreCase(next, '='));
+            if(c != 0){
+                return c;
+            }
+        }
+
+        return compareSignStr(e1, e2);
+    };
+
+    private static int compareSignStr(Map.Entry<String, Object> e1, Map.Entry<String, Object> e2){
+        return String.CASE_INSENSITIVE_ORDER.compare(e1.getKey() + "=" + e1.getValue() + "&", e2.getKey() + "=" + e2.getValue() + "&");
+    }
+
+    /** 与 String.CASE_INSENSITIVE_ORDER 的单字符比较规则一致 **/
+    private static int compareIgnoreCase(char c1, char c2){
+        if (c1 != c2) {
+            c1 = Character.toUpperCase(c1);
+            c2 = Character.toUpperCase(c2);
+            if (c1 != c2) {
+                c1 = Character.toLowerCase(c1);
+                c2 = Character.toLowerCase(c2);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /** 签名上下文， 每个线程一份 **/
+    private static class SignContext {
+
+        /** 缓冲区超出该大小后不再复用， 避免大请求长期占用内存 **/
+        private static final int MAX_REUSE_SIZE = 64 * 1024;
+
+        private final MessageDigest md5;
+        private Mac hmacSha256;
+        private String hmacKey;
+
+        private final StringBuilder sb = new StringBuilder(512);
+        private byte[] buffer = new byte[1024];
+        private Map.Entry<String, Object>[] entries = new Map.Entry[32];
+
+        SignContext(){
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        Map.Entry<String, Object>[] entries(int size){
+            if(entries.length < size){
+                entries = new Map.Entry[size];
+            }
+            return entries;
+        }
+
+        /** HMAC-SHA256实例， 秘钥与上次相同时无需重新初始化 **/
+        Mac hmacSha256(String key){
+            try {
+                if(hmacSha256 == null){
+                    hmacSha256 = Mac.getInstance("HmacSHA256");
+                }
+                if(!key.equals(hmacKey)){
+                    hmacSha256.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+                    hmacKey = key;
+                }
+                return hmacSha256;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /** 将拼接串按UTF-8编码写入buffer， 返回字节长度 (非法代理字符与String.getBytes一致， 输出'?') **/
+        int encodeUtf8(CharSequence cs){
+
+            int length = cs.length();
+            if(buffer.length < length * 3){
+                buffer = new byte[length * 3];
+            }
+
+            byte[] buf = buffer;
+            int pos = 0;
+            for (int i = 0; i < length; i++) {
+                char c = cs.charAt(i);
+                if (c < 0x80) {
+                    buf[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[pos++] = (byte) (0xc0 | (c >> 6));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(cs.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, cs.charAt(++i));
+                        buf[pos++] = (byte) (0xf0 | (cp >> 18));
+                        buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                        buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                        buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+                    } else {
+                        buf[pos++] = '?';
+                    }
+                } else {
+                    buf[pos++] = (byte) (0xe0 | (c >> 12));
+                    buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            return pos;
+        }
+
+        void reset(){
+            Arrays.fill(entries, null);
+            if(sb.capacity() > MAX_REUSE_SIZE){
+                sb.setLength(0);
+                sb.trimToSize();
+            }
+            sb.setLength(0);
+            if(buffer.length > MAX_REUSE_SIZE){
+                buffer = new byte[1024];
+            }
+        }
     }
 
     /** map 转换为  url参数 **/
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.core.utils;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* 订单号生成器
+*
+* 64位ID结构 (最高位为0)：  41位时间戳(毫秒, 自2021-01-01起) | 7位节点号 | 4位分片号 | 11位序号
+* 订单号 = 前缀 + 版本号[1] + 19位ID (左补0)， 固定长度且按时间有序；
+* 仅凭订单号即可解析出生成时间 (归档表路由) 及分片号 (分库分表路由)， 无需查询。
+*
+* 每个分片独立计数， 同一毫秒内序号用尽时借用下一毫秒 (逻辑时钟)， 不阻塞等待， 也可容忍系统时钟回拨。
+* 节点号由 OrderIdWorkerBean 启动时分配 （固定配置 或 从redis租用）； 未分配 或 租约已过期时拒绝生成， 避免与其他节点重复。
+*/
+public class OrderIdGenerator {
+
+    /** 时间戳起始值： 2021-01-01 00:00:00 (GMT+8) **/
+    public static final long EPOCH = 1609430400000L;
+
+    public static final int WORKER_ID_BITS = 7;
+    public static final int SHARD_BITS = 4;
+    public static final int SEQUENCE_BITS = 11;
+
+    /** 最大节点数 / 分片数 **/
+    public static final int MAX_WORKER_COUNT = 1 << WORKER_ID_BITS;
+    public static final int SHARD_COUNT = 1 << SHARD_BITS;
+
+    private static final int SHARD_SHIFT = SEQUENCE_BITS;
+    private static final int WORKER_ID_SHIFT = SEQUENCE_BITS + SHARD_BITS;
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + SHARD_BITS + WORKER_ID_BITS;
+
+    /** 订单号格式版本， 同时用于与历史订单号 (MybatisPlus雪花ID, 19位以内) 区分 **/
+    private static final char FORMAT_VERSION = '1';
+    private static final int ID_DIGITS = 19;
+
+    /** 本生成器生成的ID的最小值 (时间戳不小于1天)， 数据库自增ID不会达到该值 **/
+    private static final long MIN_GENERATED_ID = (24 * 60 * 60 * 1000L) << TIMESTAMP_SHIFT;
+
+    /** 当前节点号及租约， 未分配时为null **/
+    private static volatile WorkerLease workerLease = null;
+
+    /** 每个分片的 [时间戳 << SEQUENCE_BITS | 序号] **/
+    private static final AtomicLong[] SHARD_STATES = new AtomicLong[SHARD_COUNT];
+    static {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            SHARD_STATES[i] = new AtomicLong(0);
+        }
+    }
+
+    /** 设置固定节点号 （不过期） **/
+    public static void setWorkerId(int id) {
+        setWorkerId(id, Long.MAX_VALUE);
+    }
+
+    /**
+     * 设置租用的节点号
+     * @param expireAt 租约到期时间(毫秒)， 生成的ID中的时间达到该时间后拒绝生成， 直到续约成功
+     */
+    public static void setWorkerId(int id, long expireAt) {
+        if(id < 0 || id >= MAX_WORKER_COUNT) {
+            throw new IllegalArgumentException("workerId must be between 0 and " + (MAX_WORKER_COUNT - 1));
+        }
+        workerLease = new WorkerLease(id, expireAt);
+    }
+
+    /** 续约： 延长当前节点号的租约到期时间 **/
+    public static void renewWorkerId(int id, long expireAt) {
+        WorkerLease lease = workerLease;
+        if(lease != null && lease.workerId == id && expireAt > lease.expireAt) {
+            workerLease = new WorkerLease(id, expireAt);
+        }
+    }
+
+    /** 租约已丢失， 停止生成 **/
+    public static void clearWorkerId() {
+        workerLease = null;
+    }
+
+    /** 当前节点号， 未分配时返回-1 **/
+    public static int getWorkerId() {
+        WorkerLease lease = workerLease;
+        return lease == null ? -1 : lease.workerId;
+    }
+
+    /** 商户号对应的分片号 **/
+    public static int shardOf(String mchNo) {
+        return mchNo == null ? 0 : (mchNo.hashCode() & 0x7fffffff) % SHARD_COUNT;
+    }
+
+    /** 生成ID， 节点号未分配或租约已过期时抛出IllegalStateException **/
+    public static long nextId(int shard) {
+
+        WorkerLease lease = workerLease;
+        if(lease == null) {
+            throw new IllegalStateException("订单号生成器节点号未分配");
+        }
+
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+
+        // 同一毫秒内递增序号， 序号溢出时进位到时间戳； 时钟回拨时沿用上一次的时间戳
+        long state = SHARD_STATES[shard].accumulateAndGet(now, (prev, cur) -> Math.max(prev + 1, cur));
+
+        long timestamp = state >>> SEQUENCE_BITS;
+        if(timestamp + EPOCH >= lease.expireAt) { // 租约过期后该节点号可能已被其他节点租用
+            throw new IllegalStateException("订单号生成器节点号租约已过期, workerId=" + lease.workerId);
+        }
+
+        long sequence = state & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << TIMESTAMP_SHIFT) | ((long) lease.workerId << WORKER_ID_SHIFT) | ((long) shard << SHARD_SHIFT) | sequence;
+    }
+
+    /** 生成订单号 **/
+    public static String nextOrderId(String prefix, int shard) {
+
+        String id = Long.toString(nextId(shard));
+
+        StringBuilder sb = new StringBuilder(prefix.length() + 1 + ID_DIGITS).append(prefix).append(FORMAT_VERSION);
+        for (int i = id.length(); i < ID_DIGITS; i++) {
+            sb.append('0');
+        }
+        return sb.append(id).toString();
+    }
+
+    /** 解析订单号中的ID， 非本生成器生成的订单号返回null **/
+    public static Long parseId(String orderId, int prefixLength) {
+
+        if(orderId == null || orderId.length() != prefixLength + 1 + ID_DIGITS || orderId.charAt(prefixLength) != FORMAT_VERSION) {
+            return null;
+        }
+        try {
+            return Long.parseLong(orderId.substring(prefixLength + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** 是否为本生成器生成的ID （区分历史数据的自增ID） **/
+    public static boolean isGenerated(long id) {
+        return id >= MIN_GENERATED_ID;
+    }
+
+    /** ID中的生成时间 **/
+    public static Date parseTime(long id) {
+        return new Date((id >>> TIMESTAMP_SHIFT) + EPOCH);
+    }
+
+    /** ID中的节点号 **/
+    public static int parseWorkerId(long id) {
+        return (int) ((id >>> WORKER_ID_SHIFT) & (MAX_WORKER_COUNT - 1));
+    }
+
+    /** ID中的分片号 **/
+    public static int parseShard(long id) {
+        return (int) ((id >>> SHARD_SHIFT) & (SHARD_COUNT - 1));
+    }
+
+    /** 已分配的最大时间戳 (毫秒)， 序号借用未来时间时大于当前时间 **/
+    public static long getMaxIssuedTime() {
+
+        long max = 0;
+        for (AtomicLong state : SHARD_STATES) {
+            max = Math.max(max, state.get() >>> SEQUENCE_BITS);
+        }
+        return max == 0 ? 0 : max + EPOCH;
+    }
+
+    /** 节点号及租约到期时间 **/
+    private static class WorkerLease {
+
+        private final int workerId;
+        private final long expireAt;
+
+        WorkerLease(int workerId, long expireAt) {
+            this.workerId = workerId;
+            this.expireAt = expireAt;
+        }
+    }
+
+}
@@ -17,16 +17,12 @@ package com.jeequan.jeepay.core.utils;
 
 import cn.hutool.core.date.DatePattern;
 import cn.hutool.core.date.DateUtil;
-import com.baomidou.mybatisplus.core.incrementer.IdentifierGenerator;
-import com.baomidou.mybatisplus.core.toolkit.IdWorker;
-import org.springframework.context.annotation.Bean;
-import org.springframework.stereotype.Component;
 
 import java.util.Date;
-import java.util.concurrent.atomic.AtomicLong;
 
 /*
 * 序列号生成 工具类
+* 订单号由 OrderIdGenerator 生成， 支付/转账订单号中包含商户号对应的分片号， 退款订单号使用所属支付订单的分片号。
 *
 * @author terrfly
 * @author jmdhappy
@@ -35,81 +31,87 @@ import java.util.concurrent.atomic.AtomicLong;
 */
 public class SeqKit {
 
-	private static final AtomicLong PAY_ORDER_SEQ = new AtomicLong(0L);
-	private static final AtomicLong REFUND_ORDER_SEQ = new AtomicLong(0L);
-	private static final AtomicLong MHO_ORDER_SEQ = new AtomicLong(0L);
-	private static final AtomicLong TRANSFER_ID_SEQ = new AtomicLong(0L);
-	private static final AtomicLong DIVISION_BATCH_ID_SEQ = new AtomicLong(0L);
-
 	private static final String PAY_ORDER_SEQ_PREFIX = "P";
 	private static final String REFUND_ORDER_SEQ_PREFIX = "R";
 	private static final String MHO_ORDER_SEQ_PREFIX = "M";
 	private static final String TRANSFER_ID_SEQ_PREFIX = "T";
 	private static final String DIVISION_BATCH_ID_SEQ_PREFIX = "D";
 
-	/** 是否使用MybatisPlus生成分布式ID **/
-	private static final boolean IS_USE_MP_ID = true;
-
 	/** 生成支付订单号 **/
-	public static String genPayOrderId() {
-		if(IS_USE_MP_ID) {
-			return PAY_ORDER_SEQ_PREFIX + IdWorker.getIdStr();
-		}
-		return String.format("%s%s%04d",PAY_ORDER_SEQ_PREFIX,
-				DateUtil.format(new Date(), DatePattern.PURE_DATETIME_MS_PATTERN),
-				(int) PAY_ORDER_SEQ.getAndIncrement() % 10000);
+	public static String genPayOrderId(String mchNo) {
+		return OrderIdGenerator.nextOrderId(PAY_ORDER_SEQ_PREFIX, OrderIdGenerator.shardOf(mchNo));
 	}
 
-	/** 生成退款订单号 **/
-	public static String genRefundOrderId() {
-		if(IS_USE_MP_ID) {
-			return REFUND_ORDER_SEQ_PREFIX + IdWorker.getIdStr();
-		}
-		return String.format("%s%s%04d",REFUND_ORDER_SEQ_PREFIX,
-				DateUtil.format(new Date(), DatePattern.PURE_DATETIME_MS_PATTERN),
-				(int) REFUND_ORDER_SEQ.getAndIncrement() % 10000);
+	/** 生成退款订单号 （与支付订单位于同一分片， 历史支付订单使用分片0） **/
+	public static String genRefundOrderId(String payOrderId) {
+		Integer shard = parseOrderIdShard(payOrderId);
+		return OrderIdGenerator.nextOrderId(REFUND_ORDER_SEQ_PREFIX, shard == null ? 0 : shard);
 	}
 
 
 	/** 模拟生成商户订单号 **/
 	public static String genMhoOrderId() {
-		if(IS_USE_MP_ID) {
-			return MHO_ORDER_SEQ_PREFIX + IdWorker.getIdStr();
-		}
-		return String.format("%s%s%04d", MHO_ORDER_SEQ_PREFIX,
-				DateUtil.format(new Date(), DatePattern.PURE_DATETIME_MS_PATTERN),
-				(int) MHO_ORDER_SEQ.getAndIncrement() % 10000);
+		return OrderIdGenerator.nextOrderId(MHO_ORDER_SEQ_PREFIX, 0);
 	}
 
-	/** 模拟生成商户订单号 **/
-	public static String genTransferId() {
-		if(IS_USE_MP_ID) {
-			return TRANSFER_ID_SEQ_PREFIX + IdWorker.getIdStr();
-		}
-		return String.format("%s%s%04d", TRANSFER_ID_SEQ_PREFIX,
-				DateUtil.format(new Date(), DatePattern.PURE_DATETIME_MS_PATTERN),
-				(int) TRANSFER_ID_SEQ.getAndIncrement() % 10000);
+	/** 生成转账订单号 **/
+	public static String genTransferId(String mchNo) {
+		return OrderIdGenerator.nextOrderId(TRANSFER_ID_SEQ_PREFIX, OrderIdGenerator.shardOf(mchNo));
 	}
 
 	/** 模拟生成分账批次号 **/
 	public static String genDivisionBatchId() {
-		if(IS_USE_MP_ID) {
-			return DIVISION_BATCH_ID_SEQ_PREFIX + IdWorker.getIdStr();
+		return OrderIdGenerator.nextOrderId(DIVISION_BATCH_ID_SEQ_PREFIX, 0);
+	}
+
+	/** 生成订单附属记录ID (商户通知记录、分账记录)， 与所属订单位于同一分片 **/
+	public static long genOrderRecordId(String orderId) {
+		Integer shard = parseOrderIdShard(orderId);
+		return OrderIdGenerator.nextId(shard == null ? 0 : shard);
+	}
+
+	/** MybatisPlus生成的分布式ID(雪花算法) 的起始时间戳 **/
+	private static final long MP_ID_TWEPOCH = 1288834974657L;
+
+	/** 解析订单号中的生成时间， 无法解析时返回null **/
+	public static Date parseOrderIdTime(String orderId) {
+
+		if(orderId == null || orderId.length() < 2) {
+			return null;
+		}
+
+		Long id = OrderIdGenerator.parseId(orderId, 1);
+		if(id != null) {
+			return OrderIdGenerator.parseTime(id);
+		}
+
+		// 历史订单号
+		String seq = orderId.substring(1);
+		try {
+			if(seq.length() == 21) { // yyyyMMddHHmmssSSS + 4位序号
+				return DateUtil.parse(seq.substring(0, 17), DatePattern.PURE_DATETIME_MS_PATTERN);
+			}
+			return new Date((Long.parseLong(seq) >> 22) + MP_ID_TWEPOCH);
+		} catch (Exception e) {
+			return null;
 		}
-		return String.format("%s%s%04d", DIVISION_BATCH_ID_SEQ_PREFIX,
-				DateUtil.format(new Date(), DatePattern.PURE_DATETIME_MS_PATTERN),
-				(int) DIVISION_BATCH_ID_SEQ.getAndIncrement() % 10000);
+	}
+
+	/** 解析订单号中的分片号， 历史订单号 (不含分片号) 返回null **/
+	public static Integer parseOrderIdShard(String orderId) {
+
+		Long id = OrderIdGenerator.parseId(orderId, 1);
+		return id == null ? null : OrderIdGenerator.parseShard(id);
 	}
 
 	public static void main(String[] args) throws Exception {
-		System.out.println(genTransferId());
-		System.out.println(genRefundOrderId());
+		System.out.println(genTransferId("M1623984572"));
+		System.out.println(genRefundOrderId(genPayOrderId("M1623984572")));
 		Thread.sleep(1000);
 		System.out.println(genMhoOrderId());
-		System.out.println(genTransferId());
+		System.out.println(genTransferId("M1623984572"));
 		Thread.sleep(1000);
 		System.out.println(genDivisionBatchId());
 	}
 
 }
-
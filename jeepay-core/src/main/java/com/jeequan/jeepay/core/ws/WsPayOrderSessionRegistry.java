@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.core.ws;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+* 支付订单 ws连接注册表 （收银台、商户系统支付测试页面共用）
+*
+* 连接按订单号注册 （原子操作， 每个订单限制最大连接数）， 消息异步发送， 每个连接限制待发送的消息数量；
+* 空闲连接由容器关闭， 超出订单最长有效期的连接定时清理。
+* 仅推送到本节点持有的连接， 跨节点推送由调用方发送PayOrderWsPushMQ广播消息， 各节点收到后调用sendMsgByOrderId。
+*/
+@Slf4j
+public class WsPayOrderSessionRegistry {
+
+    /** 每个连接最多待发送的消息数量， 超出后视为慢客户端并关闭连接 **/
+    private static final int MAX_PENDING_MSG = 16;
+
+    /** 连接最长空闲时间(毫秒)， 超出后由容器关闭 **/
+    private static final long MAX_IDLE_TIMEOUT = 30 * 60 * 1000L;
+
+    /** 连接最长存活时间(毫秒)， 与订单最长有效期一致， 超出后订单已失效 **/
+    private static final long MAX_SESSION_LIFETIME = 2 * 60 * 60 * 1000L;
+
+    /** 清理过期连接的间隔(秒) **/
+    private static final int EVICT_INTERVAL_SECONDS = 60;
+
+    /** 每个订单最多的监听客户端数量 **/
+    private final int maxSessionPerOrder;
+
+    /** 消息发送完成后是否关闭连接 （仅需推送一次的场景， 如收银台推送订单终态） **/
+    private final boolean closeAfterSend;
+
+    //当前在线客户端 数量
+    private final AtomicInteger onlineClientSize = new AtomicInteger(0);
+
+    // payOrderId 与 连接 存储关系
+    private final Map<String, Set<WsClient>> wsOrderIdMap = new ConcurrentHashMap<>();
+
+    // session 与 连接 存储关系
+    private final Map<Session, WsClient> wsSessionMap = new ConcurrentHashMap<>();
+
+    public WsPayOrderSessionRegistry(String name, int maxSessionPerOrder, boolean closeAfterSend){
+
+        this.maxSessionPerOrder = maxSessionPerOrder;
+        this.closeAfterSend = closeAfterSend;
+
+        ScheduledExecutorService evictExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(name + "-evict-", true));
+        evictExecutor.scheduleWithFixedDelay(this::evictExpired, EVICT_INTERVAL_SECONDS, EVICT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** 注册连接， 超出订单最大连接数时关闭连接并返回false **/
+    public boolean register(String payOrderId, String cid, Session session){
+
+        session.setMaxIdleTimeout(MAX_IDLE_TIMEOUT);
+
+        WsClient client = new WsClient(payOrderId, cid, session);
+
+        boolean[] accepted = {false};
+        wsOrderIdMap.compute(payOrderId, (k, clientSet) -> {
+            if(clientSet == null) {
+                clientSet = ConcurrentHashMap.newKeySet();
+            }
+            if(clientSet.size() < maxSessionPerOrder){
+                accepted[0] = clientSet.add(client);
+            }
+            return clientSet;
+        });
+
+        if(!accepted[0]){
+            log.info("cid[{}],payOrderId[{}]监听客户端数量超限", cid, payOrderId);
+            client.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "too many clients"));
+            return false;
+        }
+
+        wsSessionMap.put(session, client);
+        onlineClientSize.incrementAndGet(); //在线数加1
+        log.info("cid[{}],payOrderId[{}]连接开启监听！当前在线人数为{}", cid, payOrderId, onlineClientSize.get());
+        return true;
+    }
+
+    /** 连接关闭时移除 **/
+    public void unregister(Session session){
+
+        WsClient client = wsSessionMap.get(session);
+        if(client != null && unregister(client)){
+            log.info("cid[{}],payOrderId[{}]连接关闭！当前在线人数为{}", client.cid, client.payOrderId, onlineClientSize.get());
+        }
+    }
+
+    /** 当前节点是否有该订单的监听客户端 **/
+    public boolean hasSubscriber(String payOrderId){
+        return wsOrderIdMap.containsKey(payOrderId);
+    }
+
+    /**
+     * 根据订单ID,推送消息 （仅推送到本节点持有的连接）
+     * 捕捉所有的异常，避免影响业务。
+     */
+    public void sendMsgByOrderId(String payOrderId, String msg){
+
+        try {
+            Set<WsClient> clientSet = wsOrderIdMap.get(payOrderId);
+            if(clientSet == null || clientSet.isEmpty()){
+                return ;
+            }
+
+            log.info("推送ws消息到浏览器, payOrderId={}，msg={}", payOrderId, msg);
+
+            for (WsClient client : clientSet) {
+                try {
+                    client.sendMessage(msg);
+                } catch (Exception e) {
+                    log.info("推送设备消息时异常，payOrderId={}, cid={}", payOrderId, client.cid, e);
+                }
+            }
+        } catch (Exception e) {
+            log.info("推送消息时异常，payOrderId={}", payOrderId, e);
+        }
+    }
+
+    public int getOnlineClientSize() {
+        return onlineClientSize.get();
+    }
+
+
+    /** 从注册表中移除， 返回是否移除成功 **/
+    private boolean unregister(WsClient client){
+
+        wsSessionMap.remove(client.session, client);
+
+        boolean[] removed = {false};
+        wsOrderIdMap.computeIfPresent(client.payOrderId, (k, clientSet) -> {
+            removed[0] = clientSet.remove(client);
+            return clientSet.isEmpty() ? null : clientSet;
+        });
+
+        if(removed[0]){
+            onlineClientSize.decrementAndGet(); //在线数减1
+        }
+        return removed[0];
+    }
+
+    /** 清理已断开 或 超出订单最长有效期的连接 **/
+    private void evictExpired(){
+
+        try {
+            long expiredTime = System.currentTimeMillis() - MAX_SESSION_LIFETIME;
+            int evictCount = 0;
+
+            for (Set<WsClient> clientSet : wsOrderIdMap.values()) {
+                for (WsClient client : clientSet) {
+                    if(!client.session.isOpen() || client.openTime < expiredTime){
+                        client.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "order expired"));
+                        evictCount++;
+                    }
+                }
+            }
+
+            if(evictCount > 0){
+                log.info("清理过期ws连接{}个， 当前在线人数为{}", evictCount, onlineClientSize.get());
+            }
+        } catch (Exception e) {
+            log.error("清理过期ws连接异常", e);
+        }
+    }
+
+    /** 单个ws连接 **/
+    private class WsClient {
+
+        private final String payOrderId;
+        private final String cid;
+        private final Session session;
+        private final long openTime = System.currentTimeMillis();
+
+        //待发送的消息 & 数量 & 是否正在发送 （同一连接同时只能有一个异步发送）
+        private final Queue<String> pendingMsgQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingMsgSize = new AtomicInteger(0);
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+
+        WsClient(String payOrderId, String cid, Session session){
+            this.payOrderId = payOrderId;
+            this.cid = cid;
+            this.session = session;
+        }
+
+        /** 异步发送， 待发送的消息超出上限时关闭连接， 避免慢客户端占用内存 **/
+        void sendMessage(String message){
+
+            if(pendingMsgSize.incrementAndGet() > MAX_PENDING_MSG){
+                pendingMsgSize.decrementAndGet();
+                log.info("cid[{}],payOrderId[{}]待发送消息过多， 关闭连接", cid, payOrderId);
+                close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "slow consumer"));
+                return ;
+            }
+
+            pendingMsgQueue.offer(message);
+            sendNext();
+        }
+
+        /** 发送队列中的下一条消息， 上一条发送完成后回调继续发送 **/
+        private void sendNext(){
+
+            if(!sending.compareAndSet(false, true)){
+                return ;
+            }
+
+            String message = pendingMsgQueue.poll();
+            if(message == null){
+                sending.set(false);
+
+                // 释放标识期间可能有新消息入队
+                if(!pendingMsgQueue.isEmpty()){
+                    sendNext();
+                }
+                return ;
+            }
+
+            try {
+                session.getAsyncRemote().sendText(message, result -> {
+                    pendingMsgSize.decrementAndGet();
+                    if(!result.isOK()){
+                        log.info("推送消息失败，payOrderId={}, cid={}", payOrderId, cid, result.getException());
+                    }
+                    sending.set(false);
+
+                    if(closeAfterSend){
+                        close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "done"));
+                        return ;
+                    }
+                    sendNext();
+                });
+            } catch (Exception e) { // 连接已关闭等
+                pendingMsgSize.decrementAndGet();
+                sending.set(false);
+                log.info("推送消息时异常，payOrderId={}, cid={}", payOrderId, cid, e);
+                close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "send error"));
+            }
+        }
+
+        /** 关闭连接 （同时从注册表中移除， 不依赖容器的关闭回调） **/
+        void close(CloseReason closeReason){
+
+            unregister(this);
+            try {
+                if(session.isOpen()){
+                    session.close(closeReason);
+                }
+            } catch (Exception e) {
+                log.info("关闭ws连接异常，payOrderId={}, cid={}", payOrderId, cid);
+            }
+        }
+    }
+
+}
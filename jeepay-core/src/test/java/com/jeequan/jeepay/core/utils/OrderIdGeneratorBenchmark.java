@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.core.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+* 订单号生成器性能测试： java OrderIdGeneratorBenchmark [线程数] [每线程数量]
+*/
+public class OrderIdGeneratorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int countPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+        OrderIdGenerator.setWorkerId(0);
+
+        for (int round = 0; round < 3; round++) { // 前两轮为预热
+            for (boolean singleShard : new boolean[]{true, false}) {
+
+                CountDownLatch latch = new CountDownLatch(threadCount);
+                LongAdder checksum = new LongAdder();
+                long start = System.nanoTime();
+                for (int t = 0; t < threadCount; t++) {
+                    int threadNo = t;
+                    new Thread(() -> {
+                        long sum = 0;
+                        for (int i = 0; i < countPerThread; i++) {
+                            sum += OrderIdGenerator.nextOrderId("P", singleShard ? 0 : (threadNo + i) & (OrderIdGenerator.SHARD_COUNT - 1)).length();
+                        }
+                        checksum.add(sum);
+                        latch.countDown();
+                    }).start();
+                }
+                latch.await();
+
+                double seconds = (System.nanoTime() - start) / 1e9;
+                long total = (long) threadCount * countPerThread;
+                System.out.printf("round=%d, threads=%d, shards=%s, total=%d, %.2f ms, %.0f ids/s, checksum=%d%n",
+                        round, threadCount, singleShard ? "1" : String.valueOf(OrderIdGenerator.SHARD_COUNT), total, seconds * 1000, total / seconds, checksum.sum());
+            }
+        }
+    }
+
+}
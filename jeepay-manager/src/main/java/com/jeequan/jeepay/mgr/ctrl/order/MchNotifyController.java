@@ -159,7 +159,7 @@ public class MchNotifyController extends CommonCtrl {
         }
 
         //更新通知中
-        mchNotifyService.getBaseMapper().updateIngAndAddNotifyCountLimit(notifyId);
+        mchNotifyService.updateIngAndAddNotifyCountLimit(notifyId);
 
         //调起MQ重发
         mqSender.send(PayOrderMchNotifyMQ.build(notifyId));
@@ -20,6 +20,8 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.jeequan.jeepay.components.mq.model.ResetIsvMchAppInfoConfigMQ;
+import com.jeequan.jeepay.components.mq.vender.IMQSender;
 import com.jeequan.jeepay.core.aop.MethodLog;
 import com.jeequan.jeepay.core.constants.ApiCodeEnum;
 import com.jeequan.jeepay.core.constants.CS;
@@ -60,6 +62,7 @@ public class MchPayPassageConfigController extends CommonCtrl {
     @Autowired private MchPayPassageService mchPayPassageService;
     @Autowired private PayWayService payWayService;
     @Autowired private MchInfoService mchInfoService;
+    @Autowired private IMQSender mqSender;
 
     /**
      * @Author: ZhuXiao
@@ -192,6 +195,11 @@ public class MchPayPassageConfigController extends CommonCtrl {
         try {
             List<MchPayPassage> mchPayPassageList = JSONArray.parseArray(reqParams, MchPayPassage.class);
             mchPayPassageService.saveOrUpdateBatchSelf(mchPayPassageList, getCurrentMchNo());
+
+            // 推送mq到目前节点进行更新数据
+            if(!CollectionUtils.isEmpty(mchPayPassageList)){
+                mqSender.send(ResetIsvMchAppInfoConfigMQ.build(ResetIsvMchAppInfoConfigMQ.RESET_TYPE_MCH_APP, null, getCurrentMchNo(), mchPayPassageList.get(0).getAppId()));
+            }
             return ApiRes.ok();
         }catch (Exception e) {
             return ApiRes.fail(ApiCodeEnum.SYSTEM_ERROR);
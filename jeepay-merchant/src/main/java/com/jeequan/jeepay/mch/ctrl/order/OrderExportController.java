@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.mch.ctrl.order;
+
+import com.alibaba.fastjson.JSONObject;
+import com.jeequan.jeepay.components.oss.constant.OssSavePlaceEnum;
+import com.jeequan.jeepay.components.oss.service.IOssService;
+import com.jeequan.jeepay.core.constants.ApiCodeEnum;
+import com.jeequan.jeepay.core.exception.BizException;
+import com.jeequan.jeepay.core.model.ApiRes;
+import com.jeequan.jeepay.core.utils.ExportWriter;
+import com.jeequan.jeepay.mch.ctrl.CommonCtrl;
+import com.jeequan.jeepay.service.impl.OrderExportService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiImplicitParam;
+import io.swagger.annotations.ApiImplicitParams;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/*
+* 订单数据导出
+* 同步导出： 流式写入响应输出流；  异步导出： 生成文件后上传至文件存储服务， 通过任务ID查询进度并下载。
+* 查询条件与各订单列表接口一致， 导出逻辑见OrderExportService。
+*/
+@Api(tags = "订单管理（数据导出）")
+@RestController
+@RequestMapping("/api/orderExport")
+public class OrderExportController extends CommonCtrl {
+
+    @Autowired private OrderExportService orderExportService;
+    @Autowired private IOssService ossService;
+
+    /** 同步导出 **/
+    @ApiOperation("导出订单数据（同步下载）")
+    @ApiImplicitParams({
+            @ApiImplicitParam(name = "iToken", value = "用户身份凭证", required = true, paramType = "header"),
+            @ApiImplicitParam(name = "orderType", value = "订单类型: payOrder-支付订单, refundOrder-退款订单, transferOrder-转账订单", required = true),
+            @ApiImplicitParam(name = "format", value = "导出格式: csv, xlsx", defaultValue = "csv")
+    })
+    @PreAuthorize("hasAnyAuthority('ENT_ORDER_LIST', 'ENT_REFUND_LIST', 'ENT_TRANSFER_ORDER_LIST')")
+    @GetMapping("/{orderType}")
+    public void export(@PathVariable("orderType") String orderType) throws IOException {
+
+        String format = getValStringDefault("format", ExportWriter.FORMAT_CSV);
+        orderExportService.exportSync(buildCondition(orderType), format, this::getDownloadOutputStream);
+    }
+
+    /** 提交异步导出任务 **/
+    @ApiOperation("提交订单导出任务（异步）")
+    @ApiImplicitParams({
+            @ApiImplicitParam(name = "iToken", value = "用户身份凭证", required = true, paramType = "header"),
+            @ApiImplicitParam(name = "orderType", value = "订单类型: payOrder-支付订单, refundOrder-退款订单, transferOrder-转账订单", required = true),
+            @ApiImplicitParam(name = "format", value = "导出格式: csv, xlsx", defaultValue = "csv")
+    })
+    @PreAuthorize("hasAnyAuthority('ENT_ORDER_LIST', 'ENT_REFUND_LIST', 'ENT_TRANSFER_ORDER_LIST')")
+    @PostMapping("/{orderType}/jobs")
+    public ApiRes submitJob(@PathVariable("orderType") String orderType) {
+
+        String format = getValStringDefault("format", ExportWriter.FORMAT_CSV);
+
+        String jobId = orderExportService.submitJob(getOwnerId(), buildCondition(orderType), format,
+                (file, saveDirAndFileName) -> ossService.upload2PreviewUrl(OssSavePlaceEnum.PRIVATE, file, saveDirAndFileName));
+        return ApiRes.ok(jobId);
+    }
+
+    /** 查询导出任务 **/
+    @ApiOperation("查询订单导出任务")
+    @ApiImplicitParams({
+            @ApiImplicitParam(name = "iToken", value = "用户身份凭证", required = true, paramType = "header"),
+            @ApiImplicitParam(name = "jobId", value = "任务ID", required = true)
+    })
+    @PreAuthorize("hasAnyAuthority('ENT_ORDER_LIST', 'ENT_REFUND_LIST', 'ENT_TRANSFER_ORDER_LIST')")
+    @GetMapping("/jobs/{jobId}")
+    public ApiRes getJob(@PathVariable("jobId") String jobId) {
+
+        JSONObject job = orderExportService.getJob(jobId, getOwnerId());
+        if(job == null){
+            return ApiRes.fail(ApiCodeEnum.SYS_OPERATION_FAIL_SELETE);
+        }
+        job.remove("fileKey");
+        return ApiRes.ok(job);
+    }
+
+    /** 下载导出文件 **/
+    @ApiOperation("下载订单导出文件")
+    @ApiImplicitParams({
+            @ApiImplicitParam(name = "iToken", value = "用户身份凭证", required = true, paramType = "header"),
+            @ApiImplicitParam(name = "jobId", value = "任务ID", required = true)
+    })
+    @PreAuthorize("hasAnyAuthority('ENT_ORDER_LIST', 'ENT_REFUND_LIST', 'ENT_TRANSFER_ORDER_LIST')")
+    @GetMapping("/jobs/{jobId}/file")
+    public void downloadFile(@PathVariable("jobId") String jobId) throws IOException {
+
+        orderExportService.downloadJobFile(jobId, getOwnerId(),
+                (fileKey, file) -> ossService.downloadFile(OssSavePlaceEnum.PRIVATE, fileKey, file.getAbsolutePath()), this::getDownloadOutputStream);
+    }
+
+    /** 查询条件， 与列表接口一致 **/
+    private OrderExportService.ExportQuery buildCondition(String orderType){
+
+        checkAuthority(OrderExportService.getListEntId(orderType));
+        return orderExportService.buildCondition(orderType, getCurrentMchNo(), getReqParamJSON());
+    }
+
+    private void checkAuthority(String entId){
+        if(getCurrentUser().getAuthorities().stream().noneMatch(authority -> entId.equals(authority.getAuthority()))){
+            throw new BizException(ApiCodeEnum.SYS_PERMISSION_ERROR);
+        }
+    }
+
+    private String getOwnerId(){
+        return String.valueOf(getCurrentUser().getSysUser().getSysUserId());
+    }
+
+}
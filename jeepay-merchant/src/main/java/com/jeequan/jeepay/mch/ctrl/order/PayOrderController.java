@@ -78,6 +78,8 @@ public class PayOrderController extends CommonCtrl {
             @ApiImplicitParam(name = "iToken", value = "用户身份凭证", required = true, paramType = "header"),
             @ApiImplicitParam(name = "pageNumber", value = "分页页码", dataType = "int", defaultValue = "1"),
             @ApiImplicitParam(name = "pageSize", value = "分页条数", dataType = "int", defaultValue = "20"),
+            @ApiImplicitParam(name = "cursor", value = "游标分页： 上一页返回的nextCursor， 首页传空值； 不传则按页码分页"),
+            @ApiImplicitParam(name = "countMode", value = "总数统计方式： estimate-预估(最多统计10000条)， 不传则统计全部"),
             @ApiImplicitParam(name = "createdStart", value = "日期格式字符串（yyyy-MM-dd HH:mm:ss），时间范围查询--开始时间，查询范围：大于等于此时间"),
             @ApiImplicitParam(name = "createdEnd", value = "日期格式字符串（yyyy-MM-dd HH:mm:ss），时间范围查询--结束时间，查询范围：小于等于此时间"),
             @ApiImplicitParam(name = "unionOrderId", value = "支付/商户/渠道订单号"),
@@ -132,7 +134,7 @@ public class PayOrderController extends CommonCtrl {
     @PreAuthorize("hasAuthority('ENT_PAY_ORDER_VIEW')")
     @GetMapping("/{payOrderId}")
     public ApiRes detail(@PathVariable("payOrderId") String payOrderId) {
-        PayOrder payOrder = payOrderService.getById(payOrderId);
+        PayOrder payOrder = payOrderService.getByIdWithArchive(payOrderId);
         if (payOrder == null) {
             return ApiRes.fail(ApiCodeEnum.SYS_OPERATION_FAIL_SELETE);
         }
@@ -16,6 +16,8 @@
 package com.jeequan.jeepay.mch.ctrl.paytest;
 
 import com.alibaba.fastjson.JSONObject;
+import com.jeequan.jeepay.components.mq.model.PayOrderWsPushMQ;
+import com.jeequan.jeepay.components.mq.vender.IMQSender;
 import com.jeequan.jeepay.core.entity.MchApp;
 import com.jeequan.jeepay.mch.ctrl.CommonCtrl;
 import com.jeequan.jeepay.mch.websocket.server.WsPayOrderServer;
@@ -44,6 +46,7 @@ import java.io.IOException;
 public class PaytestNotifyController extends CommonCtrl {
 
     @Autowired private MchAppService mchAppService;
+    @Autowired private IMQSender mqSender;
 
     @ApiOperation("支付回调信息")
     @ApiImplicitParams({
@@ -77,8 +80,14 @@ public class PaytestNotifyController extends CommonCtrl {
         msg.put("errCode", params.getString("errCode"));
         msg.put("errMsg", params.getString("errMsg"));
 
-        //推送到前端
-        WsPayOrderServer.sendMsgByOrderId(params.getString("payOrderId"), msg.toJSONString());
+        //推送到前端 （广播到全部节点， 由持有ws连接的节点推送）
+        String payOrderId = params.getString("payOrderId");
+        try {
+            mqSender.send(PayOrderWsPushMQ.build(PayOrderWsPushMQ.ENDPOINT_PAYTEST, payOrderId, msg.toJSONString()));
+        } catch (Exception e) {
+            logger.error("ws推送消息发送异常， 仅推送到当前节点, payOrderId={}", payOrderId, e);
+            WsPayOrderServer.sendMsgByOrderId(payOrderId, msg.toJSONString());
+        }
 
         response.getWriter().print("SUCCESS");
     }
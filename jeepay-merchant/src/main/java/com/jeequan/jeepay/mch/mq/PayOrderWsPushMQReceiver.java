@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.mch.mq;
+
+import com.jeequan.jeepay.components.mq.model.PayOrderWsPushMQ;
+import com.jeequan.jeepay.mch.websocket.server.WsPayOrderServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+* 接收MQ消息
+* 业务： 支付订单ws消息推送 （支付测试）， 推送到本节点持有的ws连接
+*/
+@Slf4j
+@Component
+public class PayOrderWsPushMQReceiver implements PayOrderWsPushMQ.IMQReceiver {
+
+    @Override
+    public void receive(PayOrderWsPushMQ.MsgPayload payload) {
+
+        if(!PayOrderWsPushMQ.ENDPOINT_PAYTEST.equals(payload.getEndpoint()) || payload.getMsgMap() == null){
+            return ;
+        }
+        payload.getMsgMap().forEach(WsPayOrderServer::sendMsgByOrderId);
+    }
+}
@@ -21,6 +21,7 @@ import com.alibaba.fastjson.serializer.SerializeConfig;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.fastjson.serializer.SimpleDateFormatSerializer;
 import com.jeequan.jeepay.pay.config.SystemYmlConfig;
+import com.jeequan.jeepay.pay.service.ConfigContextService;
 import com.jeequan.jeepay.service.impl.SysConfigService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
@@ -42,6 +43,7 @@ import java.util.Date;
 public class InitRunner implements CommandLineRunner {
 
     @Autowired private SystemYmlConfig systemYmlConfig;
+    @Autowired private ConfigContextService configContextService;
 
 
     @Override
@@ -57,5 +59,9 @@ public class InitRunner implements CommandLineRunner {
         //解决json 序列化时候的  $ref：问题
         JSON.DEFAULT_GENERATE_FEATURE |= SerializerFeature.DisableCircularReferenceDetect.getMask();
 
+        // 预热 已启用的 服务商/商户/商户应用 配置信息 （同步执行， 完成后spring boot才会将应用标记为ReadinessState.ACCEPTING_TRAFFIC）
+        Integer warmUpThreads = systemYmlConfig.getCacheWarmUpThreads();
+        configContextService.initAllConfigContext(warmUpThreads == null ? Runtime.getRuntime().availableProcessors() : warmUpThreads);
+
     }
 }
@@ -20,6 +20,7 @@ import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.payorder.UnifiedOrderRQ;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
 import com.jeequan.jeepay.pay.util.ChannelCertConfigKitBean;
 import com.jeequan.jeepay.service.impl.SysConfigService;
@@ -37,6 +38,7 @@ public abstract class AbstractPaymentService implements IPaymentService{
     @Autowired protected SysConfigService sysConfigService;
     @Autowired protected ChannelCertConfigKitBean channelCertConfigKitBean;
     @Autowired protected ConfigContextQueryService configContextQueryService;
+    @Autowired protected ChannelServiceRegistry channelServiceRegistry;
 
     @Override
     public String customPayOrderId(UnifiedOrderRQ bizRQ, PayOrder payOrder, MchAppConfigContext mchAppConfigContext){
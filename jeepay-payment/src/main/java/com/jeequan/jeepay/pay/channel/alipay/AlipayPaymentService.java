@@ -21,7 +21,6 @@ import com.jeequan.jeepay.pay.channel.AbstractPaymentService;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.AbstractRS;
 import com.jeequan.jeepay.pay.rqrs.payorder.UnifiedOrderRQ;
-import com.jeequan.jeepay.pay.util.PaywayUtil;
 import org.springframework.stereotype.Service;
 
 /*
@@ -47,12 +46,12 @@ public class AlipayPaymentService extends AbstractPaymentService {
 
     @Override
     public String preCheck(UnifiedOrderRQ rq, PayOrder payOrder) {
-        return PaywayUtil.getRealPaywayService(this, payOrder.getWayCode()).preCheck(rq, payOrder);
+        return channelServiceRegistry.getPaywayService(getIfCode(), payOrder.getWayCode(), null).preCheck(rq, payOrder);
     }
 
     @Override
     public AbstractRS pay(UnifiedOrderRQ rq, PayOrder payOrder, MchAppConfigContext mchAppConfigContext) throws Exception {
-        return PaywayUtil.getRealPaywayService(this, payOrder.getWayCode()).pay(rq, payOrder, mchAppConfigContext);
+        return channelServiceRegistry.getPaywayService(getIfCode(), payOrder.getWayCode(), null).pay(rq, payOrder, mchAppConfigContext);
     }
 
 }
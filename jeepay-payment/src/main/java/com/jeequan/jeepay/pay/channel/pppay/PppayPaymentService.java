@@ -7,7 +7,6 @@ import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.AbstractRS;
 import com.jeequan.jeepay.pay.rqrs.payorder.UnifiedOrderRQ;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
-import com.jeequan.jeepay.pay.util.PaywayUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -36,12 +35,12 @@ public class PppayPaymentService extends AbstractPaymentService {
 
     @Override
     public String preCheck(UnifiedOrderRQ bizRQ, PayOrder payOrder) {
-        return PaywayUtil.getRealPaywayService(this, payOrder.getWayCode()).preCheck(bizRQ, payOrder);
+        return channelServiceRegistry.getPaywayService(getIfCode(), payOrder.getWayCode(), null).preCheck(bizRQ, payOrder);
     }
 
     @Override
     public AbstractRS pay(UnifiedOrderRQ bizRQ, PayOrder payOrder, MchAppConfigContext mchAppConfigContext) throws
             Exception {
-        return PaywayUtil.getRealPaywayService(this, payOrder.getWayCode()).pay(bizRQ, payOrder, mchAppConfigContext);
+        return channelServiceRegistry.getPaywayService(getIfCode(), payOrder.getWayCode(), null).pay(bizRQ, payOrder, mchAppConfigContext);
     }
 }
@@ -20,12 +20,7 @@ import com.github.binarywang.wxpay.bean.notify.SignatureHeader;
 import com.github.binarywang.wxpay.bean.notify.WxPayNotifyResponse;
 import com.github.binarywang.wxpay.bean.notify.WxPayRefundNotifyResult;
 import com.github.binarywang.wxpay.bean.notify.WxPayRefundNotifyV3Result;
-import com.github.binarywang.wxpay.config.WxPayConfig;
 import com.github.binarywang.wxpay.service.WxPayService;
-import com.github.binarywang.wxpay.v3.auth.AutoUpdateCertificatesVerifier;
-import com.github.binarywang.wxpay.v3.auth.PrivateKeySigner;
-import com.github.binarywang.wxpay.v3.auth.WxPayCredentials;
-import com.github.binarywang.wxpay.v3.util.PemUtils;
 import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.entity.RefundOrder;
 import com.jeequan.jeepay.core.exception.BizException;
@@ -46,9 +41,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.FileInputStream;
 import java.math.BigDecimal;
-import java.security.PrivateKey;
 
 /*
  * 微信支付 退款回调接口实现类
@@ -62,6 +55,7 @@ import java.security.PrivateKey;
 public class WxpayChannelRefundNoticeService extends AbstractChannelRefundNoticeService {
 
     @Autowired RefundOrderService refundOrderService;
+    @Autowired private WxpayV3CertService wxpayV3CertService;
 
     @Override
     public String getIfCode() {
@@ -185,14 +179,8 @@ public class WxpayChannelRefundNoticeService extends AbstractChannelRefundNotice
         log.info("\n【请求头信息】：{}\n【加密数据】：{}", header.toString(), params);
 
         WxPayService wxPayService = configContextQueryService.getWxServiceWrapper(mchAppConfigContext).getWxPayService();
-        WxPayConfig wxPayConfig = wxPayService.getConfig();
-        // 自动获取微信平台证书
-        PrivateKey privateKey = PemUtils.loadPrivateKey(new FileInputStream(wxPayConfig.getPrivateKeyPath()));
-        AutoUpdateCertificatesVerifier verifier = new AutoUpdateCertificatesVerifier(
-                new WxPayCredentials(wxPayConfig.getMchId(), new PrivateKeySigner(wxPayConfig.getCertSerialNo(), privateKey)),
-                wxPayConfig.getApiV3Key().getBytes("utf-8"));
-        wxPayConfig.setVerifier(verifier);
-        wxPayService.setConfig(wxPayConfig);
+        // 使用缓存的平台证书验签器
+        wxpayV3CertService.applyTo(wxPayService.getConfig());
 
         WxPayRefundNotifyV3Result result = wxPayService.parseRefundNotifyV3Result(params, header);
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.channel.wxpay;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.v3.WxPayV3HttpClientBuilder;
+import com.github.binarywang.wxpay.v3.auth.*;
+import com.github.binarywang.wxpay.v3.util.PemUtils;
+import com.jeequan.jeepay.core.exception.BizException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/*
+* 微信V3 商户私钥 & 平台证书验签器 缓存
+* 按微信商户号缓存私钥、平台证书验签器及V3请求客户端， 支付下单、回调验签（支付/退款）、转账共用；
+* 平台证书由后台线程定时重新下载后替换， 业务线程不再读取私钥文件及下载平台证书。
+* 商户号的证书配置（证书序列号、私钥路径、APIv3密钥）变化时自动重建， 收到[服务商/应用配置]重置消息时失效对应的微信商户号；
+* 同一配置并发请求时仅创建一次 （读取私钥、下载平台证书在map的锁外执行）， 长时间未使用的缓存由后台线程清理。
+*/
+@Slf4j
+@Service
+public class WxpayV3CertService {
+
+    /** 平台证书后台刷新间隔(分钟) **/
+    private static final int REFRESH_MINUTES = 60;
+
+    /** 验签器自身的更新间隔(分钟)， 仅在后台刷新持续失败时由业务线程触发更新 **/
+    private static final int VERIFIER_FALLBACK_MINUTES = REFRESH_MINUTES * 3;
+
+    /** 缓存未被使用超出该时间(毫秒)后清理 **/
+    private static final long IDLE_EVICT_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /** <微信商户号, 证书缓存> **/
+    private final Map<String, CertHolder> holderMap = new ConcurrentHashMap<>();
+
+    /** <微信商户号|配置指纹, 创建中的证书缓存> **/
+    private final Map<String, CompletableFuture<CertHolder>> loadingMap = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService refreshExecutor;
+
+    @PostConstruct
+    public void init(){
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("wxpay-v3-cert-", true));
+        refreshExecutor.scheduleWithFixedDelay(this::refreshAll, REFRESH_MINUTES, REFRESH_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy(){
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 将缓存的验签器及V3请求客户端设置到微信配置中 （已设置时直接返回）
+     * 需在V3接口调用 或 回调验签前执行。
+     **/
+    public void applyTo(WxPayConfig wxPayConfig){
+
+        CertHolder holder = getHolder(wxPayConfig);
+        if(wxPayConfig.getVerifier() != holder.verifier){
+            wxPayConfig.setVerifier(holder.verifier);
+        }
+        if(wxPayConfig.getApiV3HttpClient() != holder.apiV3HttpClient){
+            wxPayConfig.setApiV3HttpClient(holder.apiV3HttpClient);
+        }
+    }
+
+    /** 获取商户私钥 （调起支付时计算paySign） **/
+    public PrivateKey getPrivateKey(WxPayConfig wxPayConfig){
+        return getHolder(wxPayConfig).privateKey;
+    }
+
+    /** 配置信息变更， 失效该微信商户号的缓存 （需在重建配置前调用， 已缓存在配置中的验签器仍可正常使用） **/
+    public void invalidate(String mchId){
+        if(mchId != null && holderMap.remove(mchId) != null){
+            log.info("微信V3证书缓存已重置, mchId={}", mchId);
+        }
+    }
+
+
+    private CertHolder getHolder(WxPayConfig wxPayConfig){
+
+        if(StringUtils.isAnyBlank(wxPayConfig.getMchId(), wxPayConfig.getCertSerialNo(), wxPayConfig.getPrivateKeyPath(), wxPayConfig.getApiV3Key())){
+            throw new BizException("微信V3参数未配置");
+        }
+
+        String fingerprint = wxPayConfig.getCertSerialNo() + "|" + wxPayConfig.getPrivateKeyPath() + "|" + wxPayConfig.getApiV3Key();
+
+        CertHolder holder = getCachedHolder(wxPayConfig.getMchId(), fingerprint);
+        if(holder != null){
+            return holder;
+        }
+
+        // 同一配置仅创建一次， 其他线程等待创建结果
+        String loadKey = wxPayConfig.getMchId() + "|" + fingerprint;
+        CompletableFuture<CertHolder> future = new CompletableFuture<>();
+        CompletableFuture<CertHolder> loading = loadingMap.putIfAbsent(loadKey, future);
+        if(loading != null){
+            return joinLoading(loading);
+        }
+
+        try {
+            // 上一次创建可能刚刚完成
+            holder = getCachedHolder(wxPayConfig.getMchId(), fingerprint);
+            if(holder == null){
+                holder = new CertHolder(wxPayConfig, fingerprint);
+                holderMap.put(wxPayConfig.getMchId(), holder);
+            }
+            future.complete(holder);
+            return holder;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingMap.remove(loadKey, future);
+        }
+    }
+
+    private CertHolder getCachedHolder(String mchId, String fingerprint){
+
+        CertHolder holder = holderMap.get(mchId);
+        if(holder == null || !holder.fingerprint.equals(fingerprint)){
+            return null;
+        }
+        holder.lastAccessTime = System.currentTimeMillis();
+        return holder;
+    }
+
+    private CertHolder joinLoading(CompletableFuture<CertHolder> loading){
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BizException("微信V3证书初始化异常");
+        }
+    }
+
+    /** 后台重新下载平台证书， 并清理长时间未使用的缓存 **/
+    private void refreshAll(){
+
+        long idleTime = System.currentTimeMillis() - IDLE_EVICT_MILLIS;
+        holderMap.forEach((mchId, holder) -> {
+
+            if(holder.lastAccessTime < idleTime){
+                holderMap.remove(mchId, holder);
+                log.info("微信V3证书缓存长时间未使用已清理, mchId={}", mchId);
+                return ;
+            }
+
+            try {
+                holder.verifier.refresh();
+            } catch (Exception e) {
+                log.error("微信平台证书刷新异常, mchId={}", mchId, e);
+            }
+        });
+    }
+
+    /** 商户号的证书缓存 **/
+    private static class CertHolder {
+
+        private final String fingerprint;
+        private final PrivateKey privateKey;
+        private final RefreshableVerifier verifier;
+        private final CloseableHttpClient apiV3HttpClient;
+        private volatile long lastAccessTime = System.currentTimeMillis();
+
+        CertHolder(WxPayConfig wxPayConfig, String fingerprint){
+
+            this.fingerprint = fingerprint;
+
+            try (InputStream is = new FileInputStream(wxPayConfig.getPrivateKeyPath())) {
+                this.privateKey = PemUtils.loadPrivateKey(is);
+            } catch (Exception e) {
+                log.error("读取微信商户私钥异常, mchId={}", wxPayConfig.getMchId(), e);
+                throw new BizException("读取微信商户私钥异常");
+            }
+
+            Credentials credentials = new WxPayCredentials(wxPayConfig.getMchId(), new PrivateKeySigner(wxPayConfig.getCertSerialNo(), privateKey));
+            this.verifier = new RefreshableVerifier(credentials, wxPayConfig.getApiV3Key().getBytes(StandardCharsets.UTF_8));
+
+            this.apiV3HttpClient = WxPayV3HttpClientBuilder.create()
+                    .withMerchant(wxPayConfig.getMchId(), wxPayConfig.getCertSerialNo(), privateKey)
+                    .withValidator(new WxPayValidator(verifier))
+                    .build();
+        }
+    }
+
+    /** 可替换的验签器： 刷新时创建新的验签器 （创建时下载平台证书）， 成功后再替换， 验签线程不会被阻塞 **/
+    private static class RefreshableVerifier implements Verifier {
+
+        private final Credentials credentials;
+        private final byte[] apiV3Key;
+        private volatile Verifier delegate;
+
+        RefreshableVerifier(Credentials credentials, byte[] apiV3Key){
+            this.credentials = credentials;
+            this.apiV3Key = apiV3Key;
+            this.delegate = newVerifier();
+        }
+
+        void refresh(){
+            this.delegate = newVerifier();
+        }
+
+        private Verifier newVerifier(){
+            return new AutoUpdateCertificatesVerifier(credentials, apiV3Key, VERIFIER_FALLBACK_MINUTES);
+        }
+
+        @Override
+        public boolean verify(String serialNumber, byte[] message, String signature) {
+            return delegate.verify(serialNumber, message, signature);
+        }
+
+        @Override
+        public X509Certificate getValidCertificate() {
+            return delegate.getValidCertificate();
+        }
+    }
+
+}
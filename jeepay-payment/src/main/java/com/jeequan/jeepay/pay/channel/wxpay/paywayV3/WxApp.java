@@ -22,11 +22,11 @@ import com.github.binarywang.wxpay.bean.result.enums.TradeTypeEnum;
 import com.github.binarywang.wxpay.constant.WxPayConstants;
 import com.github.binarywang.wxpay.exception.WxPayException;
 import com.github.binarywang.wxpay.service.WxPayService;
-import com.github.binarywang.wxpay.v3.util.PemUtils;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.model.params.wxpay.WxpayIsvsubMchParams;
 import com.jeequan.jeepay.core.model.params.wxpay.WxpayNormalMchParams;
 import com.jeequan.jeepay.pay.channel.wxpay.WxpayPaymentService;
+import com.jeequan.jeepay.pay.channel.wxpay.WxpayV3CertService;
 import com.jeequan.jeepay.pay.channel.wxpay.kits.WxpayKit;
 import com.jeequan.jeepay.pay.channel.wxpay.kits.WxpayV3Util;
 import com.jeequan.jeepay.pay.channel.wxpay.model.WxpayV3OrderRequestModel;
@@ -38,12 +38,9 @@ import com.jeequan.jeepay.pay.rqrs.payorder.UnifiedOrderRQ;
 import com.jeequan.jeepay.pay.rqrs.payorder.payway.WxAppOrderRS;
 import com.jeequan.jeepay.pay.util.ApiResBuilder;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-
 /*
  * 微信 app支付
  *
@@ -54,6 +51,8 @@ import java.io.IOException;
 @Service("wxpayPaymentByAppV3Service") //Service Name需保持全局唯一性
 public class WxApp extends WxpayPaymentService {
 
+    @Autowired private WxpayV3CertService wxpayV3CertService;
+
     @Override
     public String preCheck(UnifiedOrderRQ rq, PayOrder payOrder) {
         return null;
@@ -91,30 +90,15 @@ public class WxApp extends WxpayPaymentService {
                         WxPayUnifiedOrderV3Result wxPayUnifiedOrderV3Result = new WxPayUnifiedOrderV3Result();
                         wxPayUnifiedOrderV3Result.setPrepayId(wxRes.getString("prepay_id"));
 
-                        try {
-
-                            FileInputStream fis = new FileInputStream(wxPayService.getConfig().getPrivateKeyPath());
-
-                            WxPayUnifiedOrderV3Result.AppResult appResult =
-                                    wxPayUnifiedOrderV3Result.getPayInfo(TradeTypeEnum.APP, resultAppId, resultMchId,
-                                            PemUtils.loadPrivateKey(fis));
-
-                            JSONObject jsonRes = (JSONObject) JSON.toJSON(appResult);
-                            jsonRes.put("package", jsonRes.getString("packageValue"));
-                            jsonRes.remove("packageValue");
+                        WxPayUnifiedOrderV3Result.AppResult appResult =
+                                wxPayUnifiedOrderV3Result.getPayInfo(TradeTypeEnum.APP, resultAppId, resultMchId,
+                                        wxpayV3CertService.getPrivateKey(wxPayService.getConfig()));
 
-                            try {
-                                fis.close();
-                            } catch (IOException e) {
-                            }
+                        JSONObject jsonRes = (JSONObject) JSON.toJSON(appResult);
+                        jsonRes.put("package", jsonRes.getString("packageValue"));
+                        jsonRes.remove("packageValue");
 
-                            return JSON.toJSONString(jsonRes);
-
-                        } catch (FileNotFoundException e) {
-
-                            return null;
-
-                        }
+                        return JSON.toJSONString(jsonRes);
                     }
             );
 
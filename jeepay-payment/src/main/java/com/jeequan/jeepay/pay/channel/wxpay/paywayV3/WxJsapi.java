@@ -22,11 +22,11 @@ import com.github.binarywang.wxpay.bean.result.enums.TradeTypeEnum;
 import com.github.binarywang.wxpay.constant.WxPayConstants;
 import com.github.binarywang.wxpay.exception.WxPayException;
 import com.github.binarywang.wxpay.service.WxPayService;
-import com.github.binarywang.wxpay.v3.util.PemUtils;
 import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.model.params.wxpay.WxpayIsvsubMchParams;
 import com.jeequan.jeepay.pay.channel.wxpay.WxpayPaymentService;
+import com.jeequan.jeepay.pay.channel.wxpay.WxpayV3CertService;
 import com.jeequan.jeepay.pay.channel.wxpay.kits.WxpayKit;
 import com.jeequan.jeepay.pay.channel.wxpay.kits.WxpayV3Util;
 import com.jeequan.jeepay.pay.channel.wxpay.model.WxpayV3OrderRequestModel;
@@ -39,12 +39,9 @@ import com.jeequan.jeepay.pay.rqrs.payorder.payway.WxJsapiOrderRQ;
 import com.jeequan.jeepay.pay.rqrs.payorder.payway.WxJsapiOrderRS;
 import com.jeequan.jeepay.pay.util.ApiResBuilder;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-
 /*
  * 微信 jsapi支付
  *
@@ -55,6 +52,8 @@ import java.io.IOException;
 @Service("wxpayPaymentByJsapiV3Service") //Service Name需保持全局唯一性
 public class WxJsapi extends WxpayPaymentService {
 
+    @Autowired private WxpayV3CertService wxpayV3CertService;
+
     @Override
     public String preCheck(UnifiedOrderRQ rq, PayOrder payOrder) {
         // 使用的是V2接口的预先校验
@@ -110,29 +109,15 @@ public class WxJsapi extends WxpayPaymentService {
 
                         WxPayUnifiedOrderV3Result wxPayUnifiedOrderV3Result = new WxPayUnifiedOrderV3Result();
                         wxPayUnifiedOrderV3Result.setPrepayId(wxRes.getString("prepay_id"));
-                        try {
-
-                            FileInputStream fis = new FileInputStream(wxPayService.getConfig().getPrivateKeyPath());
-
-                            WxPayUnifiedOrderV3Result.JsapiResult jsapiResult =
-                                    wxPayUnifiedOrderV3Result.getPayInfo(TradeTypeEnum.JSAPI, resultAppId, null,
-                                            PemUtils.loadPrivateKey(fis));
+                        WxPayUnifiedOrderV3Result.JsapiResult jsapiResult =
+                                wxPayUnifiedOrderV3Result.getPayInfo(TradeTypeEnum.JSAPI, resultAppId, null,
+                                        wxpayV3CertService.getPrivateKey(wxPayService.getConfig()));
 
-                            JSONObject jsonRes = (JSONObject)JSON.toJSON(jsapiResult);
-                            jsonRes.put("package", jsonRes.getString("packageValue"));
-                            jsonRes.remove("packageValue");
+                        JSONObject jsonRes = (JSONObject)JSON.toJSON(jsapiResult);
+                        jsonRes.put("package", jsonRes.getString("packageValue"));
+                        jsonRes.remove("packageValue");
 
-                            try {
-                                fis.close();
-                            } catch (IOException e) {
-                            }
-
-                            return JSON.toJSONString(jsonRes);
-
-                        } catch (FileNotFoundException e) {
-                            return null;
-
-                        }
+                        return JSON.toJSONString(jsonRes);
                     }
             );
 
@@ -22,15 +22,20 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.security.*;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 银联接口签名工具类
+ * 证书私钥按 (文件路径, 修改时间) 缓存， 公钥按公钥串缓存， Signature对象按线程复用， 签名及验签时无需读取证书文件。
  *
  * @author terrfly
  * @modify pangxiaoyu
@@ -45,6 +50,19 @@ public class YsfSignUtils {
 
     private static final String CERTIFICATE_TYPE_X509 = "X.509"; //公钥证书类型
 
+    /** 公钥缓存的最大数量 （超出后清空） **/
+    private static final int PUBLIC_KEY_CACHE_MAX_SIZE = 1000;
+
+    /** <证书文件路径, 私钥> **/
+    private static final Map<String, CachedPrivateKey> PRIVATE_KEY_CACHE = new ConcurrentHashMap<>();
+
+    /** <公钥串, 公钥> **/
+    private static final Map<String, PublicKey> PUBLIC_KEY_CACHE = new ConcurrentHashMap<>();
+
+    /** 签名 / 验签 Signature对象 （非线程安全， 按线程复用） **/
+    private static final ThreadLocal<Signature> SIGN_SIGNATURE = ThreadLocal.withInitial(() -> newSignature(KEYSTORE_PROVIDER_BC));
+    private static final ThreadLocal<Signature> VERIFY_SIGNATURE = ThreadLocal.withInitial(() -> newSignature(null));
+
     private static final Logger logger = LoggerFactory.getLogger(YsfSignUtils.class);
     static {
         try {
@@ -76,7 +94,7 @@ public class YsfSignUtils {
             PrivateKey privateKey = getSignCertPrivateKey(privateKeyFilePath, certPwd);
 
             //3. 使用 SHA-256算法 进行签名
-            Signature st = Signature.getInstance(ALGORITHM_SHA256WITHRSA, KEYSTORE_PROVIDER_BC);
+            Signature st = SIGN_SIGNATURE.get();
             st.initSign(privateKey);
             st.update(signDigest);
             byte[] result = st.sign();
@@ -106,11 +124,9 @@ public class YsfSignUtils {
             byte[] signDigest = sha256X16(stringData, "UTF-8");
 
             //构造公钥证书
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            byte[] encodedKey = Base64.decodeBase64(ysfpayPublicKey);
-            PublicKey pubKey = keyFactory.generatePublic(new X509EncodedKeySpec(encodedKey));
+            PublicKey pubKey = getPublicKey(ysfpayPublicKey);
 
-            Signature st = Signature.getInstance(ALGORITHM_SHA256WITHRSA);
+            Signature st = VERIFY_SIGNATURE.get();
             st.initVerify(pubKey); //公钥
             st.update(signDigest);
             return st.verify(Base64.decodeBase64(signature.getBytes("UTF-8")));
@@ -135,11 +151,9 @@ public class YsfSignUtils {
             byte[] signDigest = sha256X16(stringData, "UTF-8");
 
             //构造公钥证书
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            byte[] encodedKey = Base64.decodeBase64(ysfpayPublicKey);
-            PublicKey pubKey = keyFactory.generatePublic(new X509EncodedKeySpec(encodedKey));
+            PublicKey pubKey = getPublicKey(ysfpayPublicKey);
 
-            Signature st = Signature.getInstance(ALGORITHM_SHA256WITHRSA);
+            Signature st = VERIFY_SIGNATURE.get();
             st.initVerify(pubKey); //公钥
             st.update(signDigest);
             return st.verify(Base64.decodeBase64(signature.getBytes("UTF-8")));
@@ -249,8 +263,44 @@ public class YsfSignUtils {
         return sha256StrBuff.toString().toLowerCase().getBytes(encoding);
     }
 
-    /** 获取证书私钥 **/
+    /** 获取公钥 （缓存） **/
+    private static PublicKey getPublicKey(String ysfpayPublicKey) throws Exception {
+
+        PublicKey pubKey = PUBLIC_KEY_CACHE.get(ysfpayPublicKey);
+        if(pubKey != null){
+            return pubKey;
+        }
+
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        byte[] encodedKey = Base64.decodeBase64(ysfpayPublicKey);
+        pubKey = keyFactory.generatePublic(new X509EncodedKeySpec(encodedKey));
+
+        if(PUBLIC_KEY_CACHE.size() >= PUBLIC_KEY_CACHE_MAX_SIZE){
+            PUBLIC_KEY_CACHE.clear();
+        }
+        PUBLIC_KEY_CACHE.put(ysfpayPublicKey, pubKey);
+        return pubKey;
+    }
+
+    /** 获取证书私钥 （缓存， 证书文件或密码变化时重新读取） **/
     private static PrivateKey getSignCertPrivateKey(String pfxkeyfile, String keypwd) {
+
+        long lastModified = new File(pfxkeyfile).lastModified();
+
+        CachedPrivateKey cached = PRIVATE_KEY_CACHE.get(pfxkeyfile);
+        if(cached != null && cached.lastModified == lastModified && Objects.equals(cached.keypwd, keypwd)){
+            return cached.privateKey;
+        }
+
+        PrivateKey privateKey = loadSignCertPrivateKey(pfxkeyfile, keypwd);
+        if(privateKey != null){
+            PRIVATE_KEY_CACHE.put(pfxkeyfile, new CachedPrivateKey(privateKey, lastModified, keypwd));
+        }
+        return privateKey;
+    }
+
+    /** 读取证书私钥 **/
+    private static PrivateKey loadSignCertPrivateKey(String pfxkeyfile, String keypwd) {
         FileInputStream fis = null;
 
         try {
@@ -281,4 +331,26 @@ public class YsfSignUtils {
         }
     }
 
+    private static Signature newSignature(String provider) {
+        try {
+            return provider == null ? Signature.getInstance(ALGORITHM_SHA256WITHRSA) : Signature.getInstance(ALGORITHM_SHA256WITHRSA, provider);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** 已缓存的私钥 **/
+    private static class CachedPrivateKey {
+
+        private final PrivateKey privateKey;
+        private final long lastModified;
+        private final String keypwd;
+
+        CachedPrivateKey(PrivateKey privateKey, long lastModified, String keypwd){
+            this.privateKey = privateKey;
+            this.lastModified = lastModified;
+            this.keypwd = keypwd;
+        }
+    }
+
 }
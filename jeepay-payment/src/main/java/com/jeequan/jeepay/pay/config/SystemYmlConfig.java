@@ -37,4 +37,19 @@ public class SystemYmlConfig {
 	/** 是否内存缓存配置信息: true表示开启如支付网关地址/商户应用配置/服务商配置等， 开启后需检查MQ的广播模式是否正常； false表示直接查询DB.  **/
 	private Boolean cacheConfig;
 
+	/** 启动时预热配置信息的并行线程数 （仅cacheConfig=true时生效）， 不配置则使用CPU核数  **/
+	private Integer cacheWarmUpThreads;
+
+	/** 订单归档： 热表保留的天数， 创建时间超出该天数且不会再变更的订单移至月度归档表； 不配置或<=0表示不归档  **/
+	private Integer orderArchiveKeepDays;
+
+	/** 订单归档： 可退款订单(支付成功、部分退款)在热表保留的天数， 需大于渠道允许退款的期限， 不配置则默认365  **/
+	private Integer orderArchiveRefundableKeepDays;
+
+	/** 订单归档： 每批次归档条数， 不配置则默认500  **/
+	private Integer orderArchiveBatchSize;
+
+	/** 订单归档： 批次间隔(毫秒)， 用于控制对数据库的压力， 不配置则默认200  **/
+	private Integer orderArchiveBatchIntervalMs;
+
 }
@@ -15,7 +15,6 @@
  */
 package com.jeequan.jeepay.pay.ctrl;
 
-import com.alibaba.fastjson.JSONObject;
 import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.ctrls.AbstractCtrl;
 import com.jeequan.jeepay.core.entity.MchApp;
@@ -29,6 +28,9 @@ import com.jeequan.jeepay.pay.service.ValidateService;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /*
 * api 抽象接口， 公共函数
 *
@@ -93,10 +95,10 @@ public abstract class ApiController extends AbstractCtrl {
         // 验签
         String appSecret = mchApp.getAppSecret();
 
-        // 转换为 JSON
-        JSONObject bizReqJSON = (JSONObject)JSONObject.toJSON(bizRQ);
-        bizReqJSON.remove("sign");
-        if(!sign.equalsIgnoreCase(JeepayKit.getSign(bizReqJSON, appSecret))){
+        // 使用原始请求参数验签 （请求参数仅解析一次， 已缓存在当前请求上下文中）， 无需将RQ对象再次转换为JSON
+        Map<String, Object> signParams = new HashMap<>(getReqParamJSON());
+        signParams.remove("sign");
+        if(!sign.equalsIgnoreCase(JeepayKit.getSign(signParams, appSecret, bizRQ.getSignType()))){
              throw new BizException("验签失败");
         }
 
@@ -36,9 +36,11 @@ import com.jeequan.jeepay.pay.rqrs.payorder.UnifiedOrderRQ;
 import com.jeequan.jeepay.pay.rqrs.payorder.UnifiedOrderRS;
 import com.jeequan.jeepay.pay.rqrs.payorder.payway.QrCashierOrderRQ;
 import com.jeequan.jeepay.pay.rqrs.payorder.payway.QrCashierOrderRS;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
+import com.jeequan.jeepay.pay.service.MchPayPassageRouteService;
+import com.jeequan.jeepay.pay.service.PayOrderExpiredService;
 import com.jeequan.jeepay.pay.service.PayOrderProcessService;
-import com.jeequan.jeepay.service.impl.MchPayPassageService;
 import com.jeequan.jeepay.service.impl.PayOrderService;
 import com.jeequan.jeepay.service.impl.SysConfigService;
 import lombok.extern.slf4j.Slf4j;
@@ -59,12 +61,14 @@ import java.util.Date;
 @Slf4j
 public abstract class AbstractPayOrderController extends ApiController {
 
-    @Autowired private MchPayPassageService mchPayPassageService;
+    @Autowired private MchPayPassageRouteService mchPayPassageRouteService;
     @Autowired private PayOrderService payOrderService;
     @Autowired private ConfigContextQueryService configContextQueryService;
     @Autowired private PayOrderProcessService payOrderProcessService;
+    @Autowired private PayOrderExpiredService payOrderExpiredService;
     @Autowired private SysConfigService sysConfigService;
     @Autowired private IMQSender mqSender;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
 
     /** 统一下单 (新建订单模式) **/
@@ -110,7 +114,7 @@ public abstract class AbstractPayOrderController extends ApiController {
             String appId = bizRQ.getAppId();
 
             // 只有新订单模式，进行校验
-            if(isNewOrder && payOrderService.count(PayOrder.gw().eq(PayOrder::getMchNo, mchNo).eq(PayOrder::getMchOrderNo, bizRQ.getMchOrderNo())) > 0){
+            if(isNewOrder && payOrderService.existsMchOrderNo(mchNo, bizRQ.getMchOrderNo())){
                 throw new BizException("商户订单["+bizRQ.getMchOrderNo()+"]已存在");
             }
 
@@ -138,6 +142,7 @@ public abstract class AbstractPayOrderController extends ApiController {
                 String payOrderId = payOrder.getPayOrderId();
                 //订单入库 订单状态： 生成状态  此时没有和任何上游渠道产生交互。
                 payOrderService.save(payOrder);
+                payOrderExpiredService.register(payOrder.getPayOrderId(), payOrder.getExpiredTime());
 
                 QrCashierOrderRS qrCashierOrderRS = new QrCashierOrderRS();
                 QrCashierOrderRQ qrCashierOrderRQ = (QrCashierOrderRQ)bizRQ;
@@ -155,8 +160,8 @@ public abstract class AbstractPayOrderController extends ApiController {
                 return packageApiResByPayOrder(bizRQ, qrCashierOrderRS, payOrder);
             }
 
-            // 根据支付方式， 查询出 该商户 可用的支付接口
-            MchPayPassage mchPayPassage = mchPayPassageService.findMchPayPassage(mchAppConfigContext.getMchNo(), mchAppConfigContext.getAppId(), wayCode);
+            // 根据支付方式， 选择 该商户 可用的支付接口
+            MchPayPassage mchPayPassage = mchPayPassageRouteService.selectPassage(mchAppConfigContext.getMchNo(), mchAppConfigContext.getAppId(), wayCode);
             if(mchPayPassage == null){
                 throw new BizException("商户应用不支持该支付方式");
             }
@@ -191,10 +196,24 @@ public abstract class AbstractPayOrderController extends ApiController {
                 }
                 //订单入库 订单状态： 生成状态  此时没有和任何上游渠道产生交互。
                 payOrderService.save(payOrder);
+                payOrderExpiredService.register(payOrder.getPayOrderId(), payOrder.getExpiredTime());
             }
 
-            //调起上游支付接口
-            bizRS = (UnifiedOrderRS) paymentService.pay(bizRQ, payOrder, mchAppConfigContext);
+            //调起上游支付接口， 并记录通道调用结果
+            long startTime = System.currentTimeMillis();
+            boolean channelSuccess = false;
+            try {
+                bizRS = (UnifiedOrderRS) paymentService.pay(bizRQ, payOrder, mchAppConfigContext);
+                channelSuccess = bizRS.getChannelRetMsg() == null || bizRS.getChannelRetMsg().getChannelState() != ChannelRetMsg.ChannelState.SYS_ERROR;
+            } catch (BizException e) {
+                channelSuccess = true;
+                throw e;
+            } catch (ChannelException e) {
+                channelSuccess = e.getChannelRetMsg().getChannelState() != ChannelRetMsg.ChannelState.SYS_ERROR;
+                throw e;
+            } finally {
+                mchPayPassageRouteService.record(mchAppConfigContext.getAppId(), ifCode, System.currentTimeMillis() - startTime, channelSuccess);
+            }
 
             //处理上游返回数据
             this.processChannelMsg(bizRS.getChannelRetMsg(), payOrder);
@@ -225,7 +244,7 @@ public abstract class AbstractPayOrderController extends ApiController {
     private PayOrder genPayOrder(UnifiedOrderRQ rq, MchInfo mchInfo, MchApp mchApp, String ifCode, MchPayPassage mchPayPassage){
 
         PayOrder payOrder = new PayOrder();
-        payOrder.setPayOrderId(SeqKit.genPayOrderId()); //生成订单ID
+        payOrder.setPayOrderId(SeqKit.genPayOrderId(mchInfo.getMchNo())); //生成订单ID
         payOrder.setMchNo(mchInfo.getMchNo()); //商户号
         payOrder.setIsvNo(mchInfo.getIsvNo()); //服务商号
         payOrder.setMchName(mchInfo.getMchShortName()); //商户名称（简称）
@@ -280,7 +299,7 @@ public abstract class AbstractPayOrderController extends ApiController {
 
         // 接口代码
         String ifCode = mchPayPassage.getIfCode();
-        IPaymentService paymentService = SpringBeansUtil.getBean(ifCode + "PaymentService", IPaymentService.class);
+        IPaymentService paymentService = channelServiceRegistry.getPaymentService(ifCode);
         if(paymentService == null){
             throw new BizException("无此支付通道接口");
         }
@@ -335,6 +354,9 @@ public abstract class AbstractPayOrderController extends ApiController {
 
             this.updateInitOrderStateThrowException(PayOrder.STATE_FAIL, payOrder, channelRetMsg);
 
+            //推送到收银台页面
+            payOrderProcessService.pushOrderStateChange(payOrderId, PayOrder.STATE_FAIL);
+
         // 上游处理中 || 未知 || 上游接口返回异常  订单为支付中状态
         }else if( ChannelRetMsg.ChannelState.WAITING == channelRetMsg.getChannelState() ||
                   ChannelRetMsg.ChannelState.UNKNOWN == channelRetMsg.getChannelState() ||
@@ -20,10 +20,10 @@ import com.jeequan.jeepay.core.ctrls.AbstractCtrl;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.exception.ResponseException;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.pay.channel.IChannelNoticeService;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
 import com.jeequan.jeepay.pay.service.ConfigContextService;
 import com.jeequan.jeepay.pay.service.PayMchNotifyService;
@@ -57,6 +57,7 @@ public class ChannelNoticeController extends AbstractCtrl {
     @Autowired private ConfigContextQueryService configContextQueryService;
     @Autowired private PayMchNotifyService payMchNotifyService;
     @Autowired private PayOrderProcessService payOrderProcessService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
     /**
      * 同步通知入口
@@ -78,7 +79,7 @@ public class ChannelNoticeController extends AbstractCtrl {
             }
 
             //查询支付接口是否存在
-            IChannelNoticeService payNotifyService = SpringBeansUtil.getBean(ifCode + "ChannelNoticeService", IChannelNoticeService.class);
+            IChannelNoticeService payNotifyService = channelServiceRegistry.getService(ifCode, IChannelNoticeService.class);
 
             // 支付通道接口实现不存在
             if(payNotifyService == null){
@@ -178,7 +179,7 @@ public class ChannelNoticeController extends AbstractCtrl {
             }
 
             //查询支付接口是否存在
-            IChannelNoticeService payNotifyService = SpringBeansUtil.getBean(ifCode + "ChannelNoticeService", IChannelNoticeService.class);
+            IChannelNoticeService payNotifyService = channelServiceRegistry.getService(ifCode, IChannelNoticeService.class);
 
             // 支付通道接口实现不存在
             if(payNotifyService == null){
@@ -249,6 +250,8 @@ public class ChannelNoticeController extends AbstractCtrl {
             //订单支付成功 其他业务逻辑
             if(notifyResult.getChannelState() == ChannelRetMsg.ChannelState.CONFIRM_SUCCESS){
                 payOrderProcessService.confirmSuccess(payOrder);
+            }else if(notifyResult.getChannelState() == ChannelRetMsg.ChannelState.CONFIRM_FAIL){
+                payOrderProcessService.pushOrderStateChange(payOrderId, PayOrder.STATE_FAIL);
             }
 
             log.info("===== {}, 订单通知完成。 payOrderId={}, parseState = {} =====", logPrefix, payOrderId, notifyResult.getChannelState());
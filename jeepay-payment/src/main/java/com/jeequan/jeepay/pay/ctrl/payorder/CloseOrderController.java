@@ -18,14 +18,15 @@ package com.jeequan.jeepay.pay.ctrl.payorder;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.model.ApiRes;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.pay.channel.IPayOrderCloseService;
 import com.jeequan.jeepay.pay.ctrl.ApiController;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
 import com.jeequan.jeepay.pay.rqrs.payorder.ClosePayOrderRQ;
 import com.jeequan.jeepay.pay.rqrs.payorder.ClosePayOrderRS;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
+import com.jeequan.jeepay.pay.service.PayOrderProcessService;
 import com.jeequan.jeepay.service.impl.PayOrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -46,6 +47,8 @@ public class CloseOrderController extends ApiController {
 
     @Autowired private PayOrderService payOrderService;
     @Autowired private ConfigContextQueryService configContextQueryService;
+    @Autowired private PayOrderProcessService payOrderProcessService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
     /**
      * @author: xiaoyu
@@ -75,7 +78,9 @@ public class CloseOrderController extends ApiController {
 
         // 订单生成状态  直接修改订单状态
         if (payOrder.getState() == PayOrder.STATE_INIT) {
-            payOrderService.updateInit2Close(payOrder.getPayOrderId());
+            if(payOrderService.updateInit2Close(payOrder.getPayOrderId())){
+                payOrderProcessService.pushOrderStateChange(payOrder.getPayOrderId(), PayOrder.STATE_CLOSED);
+            }
             bizRes.setChannelRetMsg(ChannelRetMsg.confirmSuccess(null));
             return ApiRes.okWithSign(bizRes, configContextQueryService.queryMchApp(rq.getMchNo(), rq.getAppId()).getAppSecret());
         }
@@ -85,7 +90,7 @@ public class CloseOrderController extends ApiController {
             String payOrderId = payOrder.getPayOrderId();
 
             //查询支付接口是否存在
-            IPayOrderCloseService closeService = SpringBeansUtil.getBean(payOrder.getIfCode() + "PayOrderCloseService", IPayOrderCloseService.class);
+            IPayOrderCloseService closeService = channelServiceRegistry.getService(payOrder.getIfCode(), IPayOrderCloseService.class);
 
             // 支付通道接口实现不存在
             if(closeService == null){
@@ -106,7 +111,9 @@ public class CloseOrderController extends ApiController {
 
             // 关闭订单 成功
             if(channelRetMsg.getChannelState() == ChannelRetMsg.ChannelState.CONFIRM_SUCCESS) {
-                payOrderService.updateIng2Close(payOrderId);
+                if(payOrderService.updateIng2Close(payOrderId)){
+                    payOrderProcessService.pushOrderStateChange(payOrderId, PayOrder.STATE_CLOSED);
+                }
             }else {
                 return ApiRes.customFail(channelRetMsg.getChannelErrMsg());
             }
@@ -57,7 +57,7 @@ public class QueryOrderController extends ApiController {
             throw new BizException("mchOrderNo 和 payOrderId不能同时为空");
         }
 
-        PayOrder payOrder = payOrderService.queryMchOrder(rq.getMchNo(), rq.getPayOrderId(), rq.getMchOrderNo());
+        PayOrder payOrder = payOrderService.queryMchOrderWithArchive(rq.getMchNo(), rq.getPayOrderId(), rq.getMchOrderNo());
         if(payOrder == null){
             throw new BizException("订单不存在");
         }
@@ -20,12 +20,12 @@ import com.alibaba.fastjson.JSONObject;
 import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.utils.JeepayKit;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.core.utils.StringKit;
 import com.jeequan.jeepay.pay.channel.IChannelUserService;
 import com.jeequan.jeepay.pay.ctrl.payorder.AbstractPayOrderController;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.ChannelUserIdRQ;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
 import com.jeequan.jeepay.pay.service.ConfigContextService;
 import com.jeequan.jeepay.service.impl.SysConfigService;
@@ -48,6 +48,7 @@ public class ChannelUserIdController extends AbstractPayOrderController {
 
     @Autowired private ConfigContextQueryService configContextQueryService;
     @Autowired private SysConfigService sysConfigService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
     /**  重定向到微信地址  **/
     @RequestMapping("/jump")
@@ -59,7 +60,7 @@ public class ChannelUserIdController extends AbstractPayOrderController {
         String ifCode = "AUTO".equalsIgnoreCase(rq.getIfCode()) ? getIfCodeByUA() : rq.getIfCode();
 
         // 获取接口
-        IChannelUserService channelUserService = SpringBeansUtil.getBean(ifCode + "ChannelUserService", IChannelUserService.class);
+        IChannelUserService channelUserService = channelServiceRegistry.getService(ifCode, IChannelUserService.class);
 
         if(channelUserService == null){
             throw new BizException("不支持的客户端");
@@ -100,7 +101,7 @@ public class ChannelUserIdController extends AbstractPayOrderController {
         String redirectUrl = callbackData.getString("redirectUrl");
 
         // 获取接口
-        IChannelUserService channelUserService = SpringBeansUtil.getBean(ifCode + "ChannelUserService", IChannelUserService.class);
+        IChannelUserService channelUserService = channelServiceRegistry.getService(ifCode, IChannelUserService.class);
 
         if(channelUserService == null){
             throw new BizException("不支持的客户端");
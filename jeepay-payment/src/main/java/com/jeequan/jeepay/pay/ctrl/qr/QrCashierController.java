@@ -20,7 +20,6 @@ import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.utils.JeepayKit;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.core.model.ApiRes;
 import com.jeequan.jeepay.pay.channel.IChannelUserService;
 import com.jeequan.jeepay.pay.ctrl.payorder.AbstractPayOrderController;
@@ -30,6 +29,7 @@ import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
 import com.jeequan.jeepay.pay.service.PayMchNotifyService;
 import com.jeequan.jeepay.pay.service.ConfigContextService;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.service.impl.PayOrderService;
 import com.jeequan.jeepay.service.impl.SysConfigService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,6 +52,7 @@ public class QrCashierController extends AbstractPayOrderController {
     @Autowired private ConfigContextQueryService configContextQueryService;
     @Autowired private SysConfigService sysConfigService;
     @Autowired private PayMchNotifyService payMchNotifyService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
     /**
      * 返回 oauth2【获取uerId跳转地址】
@@ -69,7 +70,7 @@ public class QrCashierController extends AbstractPayOrderController {
         MchAppConfigContext mchAppConfigContext = configContextQueryService.queryMchInfoAndAppInfo(payOrder.getMchNo(), payOrder.getAppId());
 
         //获取接口并返回数据
-        IChannelUserService channelUserService = getServiceByWayCode(getWayCode(), "ChannelUserService", IChannelUserService.class);
+        IChannelUserService channelUserService = getServiceByWayCode(getWayCode(), IChannelUserService.class);
         return ApiRes.ok(channelUserService.buildUserRedirectUrl(redirectUrlEncode, mchAppConfigContext));
 
     }
@@ -87,7 +88,7 @@ public class QrCashierController extends AbstractPayOrderController {
 
         //获取商户配置信息
         MchAppConfigContext mchAppConfigContext = configContextQueryService.queryMchInfoAndAppInfo(payOrder.getMchNo(), payOrder.getAppId());
-        IChannelUserService channelUserService = getServiceByWayCode(wayCode, "ChannelUserService", IChannelUserService.class);
+        IChannelUserService channelUserService = getServiceByWayCode(wayCode, IChannelUserService.class);
         return ApiRes.ok(channelUserService.getChannelUserId(getReqParamJSON(), mchAppConfigContext));
 
     }
@@ -117,7 +118,7 @@ public class QrCashierController extends AbstractPayOrderController {
     public ApiRes pay() throws Exception {
 
         //查询订单
-        PayOrder payOrder = getPayOrder();
+        PayOrder payOrder = getPayOrder(false);
 
         String wayCode = getWayCode();
 
@@ -161,25 +162,31 @@ public class QrCashierController extends AbstractPayOrderController {
         return getValStringRequired("wayCode");
     }
 
+    /** 查询订单 （页面展示类接口， 可读取短时缓存） **/
     private PayOrder getPayOrder(){
+        return getPayOrder(true);
+    }
+
+    /** 查询订单， 调起支付等需依据订单状态处理的接口须读取DB **/
+    private PayOrder getPayOrder(boolean useCache){
 
         String payOrderId = JeepayKit.aesDecode(getToken()); //解析token
 
-        PayOrder payOrder = payOrderService.getById(payOrderId);
+        PayOrder payOrder = useCache ? payOrderService.getByIdWithCache(payOrderId) : payOrderService.getById(payOrderId);
         if(payOrder == null || payOrder.getState() != PayOrder.STATE_INIT){
             throw new BizException("订单不存在或状态不正确");
         }
 
-        return payOrderService.getById(payOrderId);
+        return payOrder;
     }
 
 
-    private <T> T getServiceByWayCode(String wayCode, String serviceSuffix, Class<T> cls){
+    private <T> T getServiceByWayCode(String wayCode, Class<T> cls){
 
         if(CS.PAY_WAY_CODE.ALI_JSAPI.equals(wayCode)){
-            return SpringBeansUtil.getBean(CS.IF_CODE.ALIPAY + serviceSuffix, cls);
+            return channelServiceRegistry.getService(CS.IF_CODE.ALIPAY, cls);
         }else if(CS.PAY_WAY_CODE.WX_JSAPI.equals(wayCode)){
-            return SpringBeansUtil.getBean(CS.IF_CODE.WXPAY + serviceSuffix, cls);
+            return channelServiceRegistry.getService(CS.IF_CODE.WXPAY, cls);
         }
 
         return null;
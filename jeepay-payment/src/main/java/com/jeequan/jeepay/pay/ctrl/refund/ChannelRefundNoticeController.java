@@ -19,10 +19,10 @@ import com.jeequan.jeepay.core.ctrls.AbstractCtrl;
 import com.jeequan.jeepay.core.entity.RefundOrder;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.exception.ResponseException;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.pay.channel.IChannelRefundNoticeService;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
 import com.jeequan.jeepay.pay.service.ConfigContextService;
 import com.jeequan.jeepay.pay.service.RefundOrderProcessService;
@@ -53,6 +53,7 @@ public class ChannelRefundNoticeController extends AbstractCtrl {
     @Autowired private RefundOrderService refundOrderService;
     @Autowired private ConfigContextQueryService configContextQueryService;
     @Autowired private RefundOrderProcessService refundOrderProcessService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
     /** 异步回调入口 **/
     @ResponseBody
@@ -71,7 +72,7 @@ public class ChannelRefundNoticeController extends AbstractCtrl {
             }
 
             //查询退款接口是否存在
-            IChannelRefundNoticeService refundNotifyService = SpringBeansUtil.getBean(ifCode + "ChannelRefundNoticeService", IChannelRefundNoticeService.class);
+            IChannelRefundNoticeService refundNotifyService = channelServiceRegistry.getService(ifCode, IChannelRefundNoticeService.class);
 
             // 支付通道接口实现不存在
             if(refundNotifyService == null){
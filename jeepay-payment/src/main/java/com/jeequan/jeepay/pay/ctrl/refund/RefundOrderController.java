@@ -23,7 +23,6 @@ import com.jeequan.jeepay.core.entity.RefundOrder;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.model.ApiRes;
 import com.jeequan.jeepay.core.utils.SeqKit;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.core.utils.StringKit;
 import com.jeequan.jeepay.pay.channel.IRefundService;
 import com.jeequan.jeepay.pay.ctrl.ApiController;
@@ -32,6 +31,7 @@ import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
 import com.jeequan.jeepay.pay.rqrs.refund.RefundOrderRQ;
 import com.jeequan.jeepay.pay.rqrs.refund.RefundOrderRS;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
 import com.jeequan.jeepay.pay.service.ConfigContextService;
 import com.jeequan.jeepay.pay.service.PayMchNotifyService;
@@ -60,6 +60,7 @@ public class RefundOrderController extends ApiController {
     @Autowired private RefundOrderService refundOrderService;
     @Autowired private PayMchNotifyService payMchNotifyService;
     @Autowired private ConfigContextQueryService configContextQueryService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
 
     /** 申请退款 **/
@@ -84,6 +85,10 @@ public class RefundOrderController extends ApiController {
 
             PayOrder payOrder = payOrderService.queryMchOrder(rq.getMchNo(), rq.getPayOrderId(), rq.getMchOrderNo());
             if(payOrder == null){
+                // 已归档的订单超出退款期限， 不可再退款
+                if(payOrderService.queryMchOrderWithArchive(rq.getMchNo(), rq.getPayOrderId(), rq.getMchOrderNo()) != null){
+                    throw new BizException("订单已超出可退款期限， 无法完成退款");
+                }
                 throw new BizException("退款订单不存在");
             }
 
@@ -104,7 +109,7 @@ public class RefundOrderController extends ApiController {
             }
 
             //全部退款金额 （退款订单表）
-            Long sumSuccessRefundAmount = refundOrderService.getBaseMapper().sumSuccessRefundAmount(payOrder.getPayOrderId());
+            Long sumSuccessRefundAmount = refundOrderService.sumSuccessRefundAmount(payOrder.getPayOrderId());
             if(sumSuccessRefundAmount >= payOrder.getAmount()){
                 throw new BizException("退款单已完成全部订单退款，本次申请失败");
             }
@@ -131,7 +136,7 @@ public class RefundOrderController extends ApiController {
             MchApp mchApp = mchAppConfigContext.getMchApp();
 
             //获取退款接口
-            IRefundService refundService = SpringBeansUtil.getBean(payOrder.getIfCode() + "RefundService", IRefundService.class);
+            IRefundService refundService = channelServiceRegistry.getService(payOrder.getIfCode(), IRefundService.class);
             if(refundService == null){
                 throw new BizException("当前通道不支持退款！");
             }
@@ -179,7 +184,7 @@ public class RefundOrderController extends ApiController {
 
         Date nowTime = new Date();
         RefundOrder refundOrder = new RefundOrder();
-        refundOrder.setRefundOrderId(SeqKit.genRefundOrderId()); //退款订单号
+        refundOrder.setRefundOrderId(SeqKit.genRefundOrderId(payOrder.getPayOrderId())); //退款订单号
         refundOrder.setPayOrderId(payOrder.getPayOrderId()); //支付订单号
         refundOrder.setChannelPayOrderNo(payOrder.getChannelOrderNo()); //渠道支付单号
         refundOrder.setMchNo(mchInfo.getMchNo()); //商户号
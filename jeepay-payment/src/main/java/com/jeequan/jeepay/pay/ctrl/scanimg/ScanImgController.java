@@ -15,13 +15,17 @@
  */
 package com.jeequan.jeepay.pay.ctrl.scanimg;
 
-import com.jeequan.jeepay.core.utils.JeepayKit;
 import com.jeequan.jeepay.pay.ctrl.payorder.AbstractPayOrderController;
-import com.jeequan.jeepay.pay.util.CodeImgUtil;
+import com.jeequan.jeepay.pay.service.QrCodeImgService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+
 /*
 * jeepay 扫描图片生成器
 *
@@ -33,12 +37,30 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/scan")
 public class ScanImgController extends AbstractPayOrderController {
 
+    /** 浏览器缓存时间(秒)， 同一地址的二维码内容不会变化 **/
+    private static final int BROWSER_CACHE_SECONDS = 3600;
+
+    @Autowired private QrCodeImgService qrCodeImgService;
+
     /** 返回 图片地址信息  **/
     @RequestMapping("/imgs/{aesStr}.png")
     public void qrImgs(@PathVariable("aesStr") String aesStr) throws Exception {
-        String str = JeepayKit.aesDecode(aesStr);
         int width = getValIntegerDefault("width", 200);
         int height = getValIntegerDefault("height", 200);
-        CodeImgUtil.writeQrCode(response.getOutputStream(), str, width, height);
+
+        QrCodeImgService.QrCodeImg img = qrCodeImgService.getQrCodeImg(aesStr, width, height);
+
+        response.setHeader(HttpHeaders.ETAG, img.getEtag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + BROWSER_CACHE_SECONDS);
+
+        // 浏览器已缓存
+        if(img.getEtag().equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))){
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return ;
+        }
+
+        response.setContentType(MediaType.IMAGE_PNG_VALUE);
+        response.setContentLength(img.getBytes().length);
+        response.getOutputStream().write(img.getBytes());
     }
 }
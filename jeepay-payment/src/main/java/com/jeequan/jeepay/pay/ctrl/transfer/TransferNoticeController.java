@@ -19,10 +19,10 @@ import com.jeequan.jeepay.core.ctrls.AbstractCtrl;
 import com.jeequan.jeepay.core.entity.TransferOrder;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.exception.ResponseException;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.pay.channel.ITransferNoticeService;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
 import com.jeequan.jeepay.pay.service.PayMchNotifyService;
 import com.jeequan.jeepay.service.impl.TransferOrderService;
@@ -52,6 +52,7 @@ public class TransferNoticeController extends AbstractCtrl {
     @Autowired private TransferOrderService transferOrderService;
     @Autowired private ConfigContextQueryService configContextQueryService;
     @Autowired private PayMchNotifyService payMchNotifyService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
 
     /** 异步回调入口 **/
@@ -71,7 +72,7 @@ public class TransferNoticeController extends AbstractCtrl {
             }
 
             //查询转账接口是否存在
-            ITransferNoticeService transferNotifyService = SpringBeansUtil.getBean(ifCode + "TransferNoticeService", ITransferNoticeService.class);
+            ITransferNoticeService transferNotifyService = channelServiceRegistry.getService(ifCode, ITransferNoticeService.class);
 
             // 支付通道转账接口实现不存在
             if(transferNotifyService == null){
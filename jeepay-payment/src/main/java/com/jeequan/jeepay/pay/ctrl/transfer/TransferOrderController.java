@@ -21,7 +21,6 @@ import com.jeequan.jeepay.core.entity.TransferOrder;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.model.ApiRes;
 import com.jeequan.jeepay.core.utils.SeqKit;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.core.utils.StringKit;
 import com.jeequan.jeepay.pay.channel.ITransferService;
 import com.jeequan.jeepay.pay.ctrl.ApiController;
@@ -30,6 +29,7 @@ import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
 import com.jeequan.jeepay.pay.rqrs.transfer.TransferOrderRQ;
 import com.jeequan.jeepay.pay.rqrs.transfer.TransferOrderRS;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
 import com.jeequan.jeepay.pay.service.ConfigContextService;
 import com.jeequan.jeepay.pay.service.PayMchNotifyService;
@@ -58,6 +58,7 @@ public class TransferOrderController extends ApiController {
     @Autowired private TransferOrderService transferOrderService;
     @Autowired private PayInterfaceConfigService payInterfaceConfigService;
     @Autowired private PayMchNotifyService payMchNotifyService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
     /**
      * 转账
@@ -101,7 +102,7 @@ public class TransferOrderController extends ApiController {
             }
 
 
-            ITransferService transferService = SpringBeansUtil.getBean(ifCode + "TransferService", ITransferService.class);
+            ITransferService transferService = channelServiceRegistry.getService(ifCode, ITransferService.class);
             if(transferService == null){
                 throw new BizException("无此转账通道接口");
             }
@@ -155,7 +156,7 @@ public class TransferOrderController extends ApiController {
     private TransferOrder genTransferOrder(TransferOrderRQ rq, MchInfo mchInfo, MchApp mchApp, String ifCode){
 
         TransferOrder transferOrder = new TransferOrder();
-        transferOrder.setTransferId(SeqKit.genTransferId()); //生成转账订单号
+        transferOrder.setTransferId(SeqKit.genTransferId(mchInfo.getMchNo())); //生成转账订单号
         transferOrder.setMchNo(mchInfo.getMchNo()); //商户号
         transferOrder.setIsvNo(mchInfo.getIsvNo()); //服务商号
         transferOrder.setAppId(mchApp.getAppId()); //商户应用appId
@@ -32,6 +32,9 @@ import java.util.Map;
 @Data
 public class IsvConfigContext {
 
+    /** 快照版本号 (每次重新构建时递增) **/
+    private long version;
+
     /** isv信息缓存 */
     private String isvNo;
     private IsvInfo isvInfo;
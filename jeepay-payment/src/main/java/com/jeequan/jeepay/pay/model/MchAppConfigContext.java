@@ -36,6 +36,9 @@ import java.util.Map;
 public class MchAppConfigContext {
 
 
+    /** 快照版本号 (每次重新构建或替换时递增) **/
+    private long version;
+
     /** 商户信息缓存 */
     private String mchNo;
     private String appId;
@@ -92,4 +95,23 @@ public class MchAppConfigContext {
         return isIsvsubMch() ? isvConfigContext.getWxServiceWrapper(): wxServiceWrapper;
     }
 
+    /** 浅拷贝当前快照， 用于copy-on-write替换缓存， 已发布的对象不再修改 **/
+    public MchAppConfigContext copy(){
+
+        MchAppConfigContext result = new MchAppConfigContext();
+        result.setVersion(this.version);
+        result.setMchNo(this.mchNo);
+        result.setAppId(this.appId);
+        result.setMchType(this.mchType);
+        result.setMchInfo(this.mchInfo);
+        result.setMchApp(this.mchApp);
+        result.setNormalMchParamsMap(this.normalMchParamsMap);
+        result.setIsvsubMchParamsMap(this.isvsubMchParamsMap);
+        result.setIsvConfigContext(this.isvConfigContext);
+        result.setPaypalWrapper(this.paypalWrapper);
+        result.setAlipayClientWrapper(this.alipayClientWrapper);
+        result.setWxServiceWrapper(this.wxServiceWrapper);
+        return result;
+    }
+
 }
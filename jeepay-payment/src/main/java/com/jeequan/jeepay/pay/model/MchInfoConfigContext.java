@@ -35,6 +35,9 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MchInfoConfigContext {
 
 
+    /** 快照版本号 (每次重新构建时递增) **/
+    private long version;
+
     /** 商户信息缓存 */
     private String mchNo;
     private Byte mchType;
@@ -51,4 +54,16 @@ public class MchInfoConfigContext {
         return appMap.get(appId);
     }
 
+    /** 拷贝当前快照 （appMap为新集合）， 用于copy-on-write替换缓存， 已发布的对象不再修改 **/
+    public MchInfoConfigContext copy(){
+
+        MchInfoConfigContext result = new MchInfoConfigContext();
+        result.setVersion(this.version);
+        result.setMchNo(this.mchNo);
+        result.setMchType(this.mchType);
+        result.setMchInfo(this.mchInfo);
+        result.setAppMap(new ConcurrentHashMap<>(this.appMap));
+        return result;
+    }
+
 }
@@ -23,9 +23,11 @@ import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.model.params.wxpay.WxpayIsvParams;
 import com.jeequan.jeepay.core.model.params.wxpay.WxpayNormalMchParams;
 import com.jeequan.jeepay.core.utils.SpringBeansUtil;
+import com.jeequan.jeepay.pay.channel.wxpay.WxpayV3CertService;
 import com.jeequan.jeepay.pay.util.ChannelCertConfigKitBean;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 import me.chanjar.weixin.mp.api.WxMpService;
 import me.chanjar.weixin.mp.api.impl.WxMpServiceImpl;
 import me.chanjar.weixin.mp.config.impl.WxMpDefaultConfigImpl;
@@ -38,6 +40,7 @@ import org.apache.commons.lang3.StringUtils;
 * @site https://www.jeequan.com
 * @date 2021/6/8 17:30
 */
+@Slf4j
 @Data
 @AllArgsConstructor
 public class WxServiceWrapper {
@@ -82,6 +85,15 @@ public class WxServiceWrapper {
             wxPayConfig.setPrivateKeyPath(channelCertConfigKitBean.getCertFilePath(apiClientKey));
         }
 
+        // V3: 使用缓存的平台证书验签器及请求客户端， 避免每次重新下载平台证书 （失败时由调用方再次设置）
+        if (CS.PAY_IF_VERSION.WX_V3.equals(apiVersion)) {
+            try {
+                SpringBeansUtil.getBean(WxpayV3CertService.class).applyTo(wxPayConfig);
+            } catch (Exception e) {
+                log.warn("微信V3证书初始化失败, mchId={}, {}", mchId, e.getMessage());
+            }
+        }
+
         WxPayService wxPayService = new WxPayServiceImpl();
         wxPayService.setConfig(wxPayConfig); //微信配置信息
 
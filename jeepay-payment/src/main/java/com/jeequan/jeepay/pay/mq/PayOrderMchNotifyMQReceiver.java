@@ -15,15 +15,10 @@
  */
 package com.jeequan.jeepay.pay.mq;
 
-import cn.hutool.core.net.url.UrlBuilder;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpUtil;
 import com.jeequan.jeepay.components.mq.model.PayOrderMchNotifyMQ;
-import com.jeequan.jeepay.components.mq.vender.IMQSender;
 import com.jeequan.jeepay.core.entity.MchNotifyRecord;
-import com.jeequan.jeepay.core.exception.BizException;
+import com.jeequan.jeepay.pay.service.MchNotifyDispatchService;
 import com.jeequan.jeepay.service.impl.MchNotifyRecordService;
-import com.jeequan.jeepay.service.impl.PayOrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -39,12 +34,10 @@ import org.springframework.stereotype.Component;
 @Component
 public class PayOrderMchNotifyMQReceiver implements PayOrderMchNotifyMQ.IMQReceiver {
 
-    @Autowired
-    private PayOrderService payOrderService;
     @Autowired
     private MchNotifyRecordService mchNotifyRecordService;
     @Autowired
-    private IMQSender mqSender;
+    private MchNotifyDispatchService mchNotifyDispatchService;
 
     @Override
     public void receive(PayOrderMchNotifyMQ.MsgPayload payload) {
@@ -63,49 +56,8 @@ public class PayOrderMchNotifyMQReceiver implements PayOrderMchNotifyMQ.IMQRecei
                 return;
             }
 
-            //1. (发送结果最多6次)
-            Integer currentCount = record.getNotifyCount() + 1;
-
-            String notifyUrl = record.getNotifyUrl();
-            String res = "";
-            try {
-                // res = HttpUtil.createPost(notifyUrl).timeout(20000).execute().body();
-
-                int pathEndPos = notifyUrl.indexOf('?');
-                if (pathEndPos <= -1) {
-                    log.error("通知地址错误，参数为空，notifyUrl：{}", notifyUrl);
-                    throw new BizException("通知地址错误");
-                }
-
-                res = HttpUtil.post(StrUtil.subPre(notifyUrl, pathEndPos), StrUtil.subSuf(notifyUrl, pathEndPos + 1), 20000);
-            } catch (Exception e) {
-                log.error("http error", e);
-                res = "连接["+ UrlBuilder.of(notifyUrl).getHost() +"]异常:【" + e.getMessage() + "】";
-            }
-
-            //支付订单 & 第一次通知: 更新为已通知
-            if(currentCount == 1 && MchNotifyRecord.TYPE_PAY_ORDER == record.getOrderType()){
-                payOrderService.updateNotifySent(record.getOrderId());
-            }
-
-            //通知成功
-            if("SUCCESS".equalsIgnoreCase(res)){
-                mchNotifyRecordService.updateNotifyResult(notifyId, MchNotifyRecord.STATE_SUCCESS, res);
-                return;
-            }
-
-            //通知次数 >= 最大通知次数时， 更新响应结果为异常， 不在继续延迟发送消息
-            if( currentCount >= record.getNotifyCountLimit() ){
-                mchNotifyRecordService.updateNotifyResult(notifyId, MchNotifyRecord.STATE_FAIL, res);
-                return;
-            }
-
-            // 继续发送MQ 延迟发送
-            mchNotifyRecordService.updateNotifyResult(notifyId, MchNotifyRecord.STATE_ING, res);
-            // 通知延时次数
-            //        1   2  3  4   5   6
-            //        0  30 60 90 120 150
-            mqSender.send(PayOrderMchNotifyMQ.build(notifyId), currentCount * 30);
+            // 异步发送通知， 不占用MQ消费线程； 结果落库后由分发服务发送下一次延迟消息
+            mchNotifyDispatchService.dispatch(record);
 
             return;
         }catch (Exception e) {
@@ -15,15 +15,21 @@
  */
 package com.jeequan.jeepay.pay.mq;
 
+import com.alibaba.fastjson.JSON;
 import com.jeequan.jeepay.components.mq.model.ResetIsvMchAppInfoConfigMQ;
+import com.jeequan.jeepay.core.constants.CS;
+import com.jeequan.jeepay.core.entity.PayInterfaceConfig;
+import com.jeequan.jeepay.pay.channel.wxpay.WxpayV3CertService;
 import com.jeequan.jeepay.pay.service.ConfigContextService;
+import com.jeequan.jeepay.pay.service.MchPayPassageRouteService;
+import com.jeequan.jeepay.service.impl.PayInterfaceConfigService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
  * 接收MQ消息
- * 业务： 更新服务商/商户/商户应用配置信息；
+ * 业务： 更新服务商/商户/商户应用配置信息； 重置对应的微信V3证书缓存； 重建商户支付通道路由表；
  * @author terrfly
  * @site https://www.jeequan.com
  * @date 2021/7/27 9:23
@@ -35,23 +41,51 @@ public class ResetIsvMchAppInfoMQReceiver implements ResetIsvMchAppInfoConfigMQ.
     @Autowired
     private ConfigContextService configContextService;
 
+    @Autowired
+    private WxpayV3CertService wxpayV3CertService;
+
+    @Autowired
+    private MchPayPassageRouteService mchPayPassageRouteService;
+
+    @Autowired
+    private PayInterfaceConfigService payInterfaceConfigService;
+
     @Override
     public void receive(ResetIsvMchAppInfoConfigMQ.MsgPayload payload) {
 
         if(payload.getResetType() == ResetIsvMchAppInfoConfigMQ.RESET_TYPE_ISV_INFO){
+            this.invalidateWxpayV3Cert(CS.INFO_TYPE_ISV, payload.getIsvNo());
             this.modifyIsvInfo(payload.getIsvNo());
         }else if(payload.getResetType() == ResetIsvMchAppInfoConfigMQ.RESET_TYPE_MCH_INFO){
             this.modifyMchInfo(payload.getMchNo());
         }else if(payload.getResetType() == ResetIsvMchAppInfoConfigMQ.RESET_TYPE_MCH_APP){
+            this.invalidateWxpayV3Cert(CS.INFO_TYPE_MCH_APP, payload.getAppId());
             this.modifyMchApp(payload.getMchNo(), payload.getAppId());
         }
 
     }
 
+    /**
+     * 证书文件可能已替换 （配置未变化时不会自动重建）， 在重建配置前失效该服务商/应用配置的微信商户号的证书缓存；
+     * 商户配置不包含证书， 服务商模式子商户使用服务商的证书， 均无需处理。
+     **/
+    private void invalidateWxpayV3Cert(Byte infoType, String infoId) {
+
+        try {
+            PayInterfaceConfig payInterfaceConfig = payInterfaceConfigService.getByInfoIdAndIfCode(infoType, infoId, CS.IF_CODE.WXPAY);
+            if(payInterfaceConfig != null && payInterfaceConfig.getIfParams() != null){
+                wxpayV3CertService.invalidate(JSON.parseObject(payInterfaceConfig.getIfParams()).getString("mchId"));
+            }
+        } catch (Exception e) {
+            log.error("重置微信V3证书缓存异常, infoType={}, infoId={}", infoType, infoId, e);
+        }
+    }
+
     /** 接收 [商户配置信息] 的消息 **/
     private void modifyMchInfo(String mchNo) {
         log.info("成功接收 [商户配置信息] 的消息, msg={}", mchNo);
         configContextService.initMchInfoConfigContext(mchNo);
+        mchPayPassageRouteService.resetMch(mchNo);
         log.info(" [商户配置信息] 已重置");
     }
 
@@ -59,6 +93,7 @@ public class ResetIsvMchAppInfoMQReceiver implements ResetIsvMchAppInfoConfigMQ.
     private void modifyMchApp(String mchNo, String appId) {
         log.info("成功接收 [商户应用支付参数配置信息] 的消息, mchNo={}, appId={}", mchNo, appId);
         configContextService.initMchAppConfigContext(mchNo, appId);
+        mchPayPassageRouteService.resetApp(appId);
         log.info(" [商户应用支付参数配置信息] 已重置");
     }
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.service;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson.JSONObject;
+import com.jeequan.jeepay.core.entity.PayOrder;
+import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+* 补单查询分发服务
+* 按支付接口(ifCode)分别建立有界线程池并限制查询频率， 避免单一渠道慢查询拖慢全部补单， 同时避免触发上游限流。
+*/
+@Slf4j
+@Service
+public class ChannelOrderReissueDispatchService {
+
+    /** 每个支付接口的最大并发查询数 **/
+    private static final int CHANNEL_THREAD_SIZE = 10;
+
+    /** 每个支付接口每秒最大查询次数 **/
+    private static final int CHANNEL_QPS = 50;
+
+    /** 每个支付接口线程池的缓存队列长度， 超出后由调用线程执行 **/
+    private static final int CHANNEL_QUEUE_SIZE = 200;
+
+    private static final long PERMIT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / CHANNEL_QPS;
+
+    /** <接口代码, 线程池> **/
+    private final Map<String, ThreadPoolExecutor> executorMap = new ConcurrentHashMap<>();
+
+    /** <接口代码, 下一次允许查询的时间(纳秒)> **/
+    private final Map<String, AtomicLong> nextPermitMap = new ConcurrentHashMap<>();
+
+    /** 统计： 提交数 / 完成数 / 确认成功数 / 确认失败数 / 查询异常或无结果数 **/
+    private final LongAdder submitCount = new LongAdder();
+    private final LongAdder finishCount = new LongAdder();
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder failCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+
+    /** 最近一轮任务的处理数量及耗时 **/
+    private volatile long lastRoundCount = 0;
+    private volatile long lastRoundCostMs = 0;
+
+    @Autowired private ChannelOrderReissueService channelOrderReissueService;
+
+
+    /** 按支付接口分组并行查询订单， 全部完成后返回 **/
+    public void processPayOrderList(List<PayOrder> payOrderList){
+
+        List<Future<?>> futureList = new ArrayList<>(payOrderList.size());
+        for (PayOrder payOrder : payOrderList) {
+            submitCount.increment();
+            futureList.add(getExecutor(payOrder.getIfCode()).submit(() -> processPayOrder(payOrder)));
+        }
+
+        for (Future<?> future : futureList) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("补单查询异常", e);
+            }
+        }
+    }
+
+    /** 记录一轮任务的处理结果 **/
+    public void recordRound(long count, long costMs){
+        this.lastRoundCount = count;
+        this.lastRoundCostMs = costMs;
+    }
+
+    /** 补单统计信息 **/
+    public JSONObject getStats(){
+
+        JSONObject result = new JSONObject();
+        result.put("submitCount", submitCount.sum());
+        result.put("finishCount", finishCount.sum());
+        result.put("backlog", submitCount.sum() - finishCount.sum());
+        result.put("successCount", successCount.sum());
+        result.put("failCount", failCount.sum());
+        result.put("errorCount", errorCount.sum());
+        result.put("lastRoundCount", lastRoundCount);
+        result.put("lastRoundCostMs", lastRoundCostMs);
+        result.put("lastRoundTps", lastRoundCostMs == 0 ? 0 : lastRoundCount * 1000 / lastRoundCostMs);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executorMap.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+
+    private void processPayOrder(PayOrder payOrder){
+
+        try {
+            acquirePermit(payOrder.getIfCode());
+
+            ChannelRetMsg channelRetMsg = channelOrderReissueService.processPayOrder(payOrder);
+            if(channelRetMsg == null){
+                errorCount.increment();
+            }else if(channelRetMsg.getChannelState() == ChannelRetMsg.ChannelState.CONFIRM_SUCCESS){
+                successCount.increment();
+            }else if(channelRetMsg.getChannelState() == ChannelRetMsg.ChannelState.CONFIRM_FAIL){
+                failCount.increment();
+            }
+        } finally {
+            finishCount.increment();
+        }
+    }
+
+    /** 获取接口对应的线程池， 队列满时由调用线程执行 (反压) **/
+    private ThreadPoolExecutor getExecutor(String ifCode){
+
+        return executorMap.computeIfAbsent(StrUtil.nullToEmpty(ifCode), k -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(CHANNEL_THREAD_SIZE, CHANNEL_THREAD_SIZE,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(CHANNEL_QUEUE_SIZE),
+                    new NamedThreadFactory("reissue-" + k + "-", true), new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
+    /** 按接口限制查询频率， 超出时等待至下一个可用时间点 **/
+    private void acquirePermit(String ifCode){
+
+        AtomicLong nextPermit = nextPermitMap.computeIfAbsent(StrUtil.nullToEmpty(ifCode), k -> new AtomicLong(System.nanoTime()));
+
+        long now = System.nanoTime();
+        long prev = nextPermit.getAndAccumulate(now, (p, n) -> Math.max(p, n) + PERMIT_INTERVAL_NANOS);
+        long waitNanos = prev - now;
+        if(waitNanos > 0){
+            LockSupport.parkNanos(waitNanos);
+        }
+    }
+
+}
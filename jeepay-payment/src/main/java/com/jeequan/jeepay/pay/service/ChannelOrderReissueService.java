@@ -17,7 +17,6 @@ package com.jeequan.jeepay.pay.service;
 
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.entity.RefundOrder;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.pay.channel.IPayOrderQueryService;
 import com.jeequan.jeepay.pay.channel.IRefundService;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
@@ -43,6 +42,7 @@ public class ChannelOrderReissueService {
     @Autowired private PayOrderService payOrderService;
     @Autowired private PayOrderProcessService payOrderProcessService;
     @Autowired private RefundOrderProcessService refundOrderProcessService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
 
     /** 处理订单 **/
@@ -53,7 +53,7 @@ public class ChannelOrderReissueService {
             String payOrderId = payOrder.getPayOrderId();
 
             //查询支付接口是否存在
-            IPayOrderQueryService queryService = SpringBeansUtil.getBean(payOrder.getIfCode() + "PayOrderQueryService", IPayOrderQueryService.class);
+            IPayOrderQueryService queryService = channelServiceRegistry.getService(payOrder.getIfCode(), IPayOrderQueryService.class);
 
             // 支付通道接口实现不存在
             if(queryService == null){
@@ -82,7 +82,11 @@ public class ChannelOrderReissueService {
             }else if(channelRetMsg.getChannelState() == ChannelRetMsg.ChannelState.CONFIRM_FAIL){  //确认失败
 
                 //1. 更新支付订单表为失败状态
-                payOrderService.updateIng2Fail(payOrderId, channelRetMsg.getChannelOrderId(), channelRetMsg.getChannelUserId(), channelRetMsg.getChannelErrCode(), channelRetMsg.getChannelErrMsg());
+                if (payOrderService.updateIng2Fail(payOrderId, channelRetMsg.getChannelOrderId(), channelRetMsg.getChannelUserId(), channelRetMsg.getChannelErrCode(), channelRetMsg.getChannelErrMsg())) {
+
+                    //2. 推送到收银台页面
+                    payOrderProcessService.pushOrderStateChange(payOrderId, PayOrder.STATE_FAIL);
+                }
 
             }
 
@@ -103,7 +107,7 @@ public class ChannelOrderReissueService {
             String refundOrderId = refundOrder.getRefundOrderId();
 
             //查询支付接口是否存在
-            IRefundService queryService = SpringBeansUtil.getBean(refundOrder.getIfCode() + "RefundService", IRefundService.class);
+            IRefundService queryService = channelServiceRegistry.getService(refundOrder.getIfCode(), IRefundService.class);
 
             // 支付通道接口实现不存在
             if(queryService == null){
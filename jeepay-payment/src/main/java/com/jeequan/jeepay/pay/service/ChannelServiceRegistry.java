@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.service;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson.JSONObject;
+import com.jeequan.jeepay.core.constants.CS;
+import com.jeequan.jeepay.core.entity.PayInterfaceDefine;
+import com.jeequan.jeepay.pay.channel.*;
+import com.jeequan.jeepay.service.impl.PayInterfaceDefineService;
+import com.jeequan.jeepay.service.impl.PayWayService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+* 支付通道接口实现类注册表
+* 启动时按 [接口代码 + 接口类型] 索引全部通道实现 （bean名称为 接口代码 + 接口类型后缀， 如 wxpayPaymentService），
+* 并预先解析 (接口代码, 支付方式, API版本) 对应的支付方式实现 （payway / paywayV3 包下的类）， 下单、回调、查单、退款、分账等调用时直接查表。
+* 同时核对 支付接口定义表 / 支付方式表 与已有实现， 缺失时输出告警日志。
+*/
+@Slf4j
+@Service
+public class ChannelServiceRegistry implements SmartInitializingSingleton {
+
+    /** 支付方式实现类所在的包名 **/
+    private static final String PAYWAY_PACKAGE_NAME = "payway";
+    private static final String PAYWAYV3_PACKAGE_NAME = "paywayV3";
+
+    /** <接口类型, bean名称后缀> **/
+    private static final Map<Class<?>, String> SERVICE_SUFFIX_MAP = new LinkedHashMap<>();
+    static {
+        SERVICE_SUFFIX_MAP.put(IPaymentService.class, "PaymentService");
+        SERVICE_SUFFIX_MAP.put(IChannelNoticeService.class, "ChannelNoticeService");
+        SERVICE_SUFFIX_MAP.put(IChannelRefundNoticeService.class, "ChannelRefundNoticeService");
+        SERVICE_SUFFIX_MAP.put(IChannelUserService.class, "ChannelUserService");
+        SERVICE_SUFFIX_MAP.put(IPayOrderQueryService.class, "PayOrderQueryService");
+        SERVICE_SUFFIX_MAP.put(IPayOrderCloseService.class, "PayOrderCloseService");
+        SERVICE_SUFFIX_MAP.put(IRefundService.class, "RefundService");
+        SERVICE_SUFFIX_MAP.put(IDivisionService.class, "DivisionService");
+        SERVICE_SUFFIX_MAP.put(AbstractDivisionRecordChannelNotifyService.class, "DivisionRecordChannelNotifyService");
+        SERVICE_SUFFIX_MAP.put(ITransferService.class, "TransferService");
+        SERVICE_SUFFIX_MAP.put(ITransferNoticeService.class, "TransferNoticeService");
+    }
+
+    @Autowired private ApplicationContext applicationContext;
+    @Autowired private PayInterfaceDefineService payInterfaceDefineService;
+    @Autowired private PayWayService payWayService;
+
+    /** <接口类型, <接口代码, 实现>> **/
+    private Map<Class<?>, Map<String, Object>> serviceMap = Collections.emptyMap();
+
+    /** <包名.类名, 支付方式实现> **/
+    private Map<String, IPaymentService> paywayClassMap = Collections.emptyMap();
+
+    /** <接口代码|API版本|支付方式, 支付方式实现>  启动时按支付方式表预先解析， 表中不存在的支付方式在首次调用时解析 **/
+    private final Map<String, Optional<IPaymentService>> paywayMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+
+        Map<Class<?>, Map<String, Object>> serviceMap = new HashMap<>();
+        SERVICE_SUFFIX_MAP.forEach((cls, suffix) -> {
+
+            Map<String, Object> ifCodeMap = new HashMap<>();
+            applicationContext.getBeansOfType(cls).forEach((beanName, bean) -> {
+                if(beanName.endsWith(suffix) && beanName.length() > suffix.length()){
+                    ifCodeMap.put(beanName.substring(0, beanName.length() - suffix.length()), bean);
+                }
+            });
+            serviceMap.put(cls, Collections.unmodifiableMap(ifCodeMap));
+        });
+        this.serviceMap = Collections.unmodifiableMap(serviceMap);
+
+        Map<String, IPaymentService> paywayClassMap = new HashMap<>();
+        applicationContext.getBeansOfType(IPaymentService.class).values().forEach(bean -> {
+            Class<?> cls = ClassUtils.getUserClass(bean);
+            paywayClassMap.put(cls.getName(), bean);
+        });
+        this.paywayClassMap = Collections.unmodifiableMap(paywayClassMap);
+
+        try {
+            preparePayway();
+        } catch (Exception e) {
+            log.error("预先解析支付方式实现异常， 将在调用时解析", e);
+        }
+
+        log.info("支付通道接口注册完成, 支付接口{}个, 支付方式实现{}个", serviceMap.get(IPaymentService.class).size(), paywayMap.values().stream().filter(Optional::isPresent).count());
+    }
+
+    /** 获取通道接口实现 (例如 IRefundService.class) ， 不存在时返回null **/
+    public <T> T getService(String ifCode, Class<T> cls){
+
+        Map<String, Object> ifCodeMap = serviceMap.get(cls);
+        if(ifCodeMap == null || ifCode == null){
+            return null;
+        }
+        return cls.cast(ifCodeMap.get(ifCode));
+    }
+
+    public IPaymentService getPaymentService(String ifCode){
+        return getService(ifCode, IPaymentService.class);
+    }
+
+    /**
+     * 获取支付方式实现 （接口代码包下的 payway 或 paywayV3 包）， 不存在时返回null
+     * @param apiVersion 接口版本， 仅微信V3需传入 CS.PAY_IF_VERSION.WX_V3， 其他传null
+     **/
+    public IPaymentService getPaywayService(String ifCode, String wayCode, String apiVersion){
+
+        if(ifCode == null || wayCode == null){
+            return null;
+        }
+
+        String key = ifCode + "|" + StrUtil.nullToEmpty(apiVersion) + "|" + wayCode;
+        Optional<IPaymentService> payway = paywayMap.get(key);
+        if(payway == null){
+            payway = paywayMap.computeIfAbsent(key, k -> Optional.ofNullable(resolvePayway(ifCode, wayCode, apiVersion)));
+        }
+        return payway.orElse(null);
+    }
+
+
+    /** 按支付方式表预先解析， 并核对支付接口定义 **/
+    private void preparePayway(){
+
+        List<String> wayCodeList = new ArrayList<>();
+        payWayService.list().forEach(payWay -> wayCodeList.add(payWay.getWayCode()));
+
+        Map<String, Object> paymentServiceMap = serviceMap.get(IPaymentService.class);
+        for (String ifCode : paymentServiceMap.keySet()) {
+            for (String wayCode : wayCodeList) {
+                getPaywayService(ifCode, wayCode, null);
+                if(CS.IF_CODE.WXPAY.equals(ifCode)){
+                    getPaywayService(ifCode, wayCode, CS.PAY_IF_VERSION.WX_V3);
+                }
+            }
+        }
+
+        // 核对 支付接口定义
+        for (PayInterfaceDefine define : payInterfaceDefineService.list()) {
+
+            IPaymentService paymentService = getPaymentService(define.getIfCode());
+            if(paymentService == null){
+                log.warn("支付接口[{}]无对应的实现类[{}PaymentService]", define.getIfCode(), define.getIfCode());
+                continue;
+            }
+
+            if(define.getWayCodes() == null){
+                continue;
+            }
+
+            boolean hasPayway = hasPaywayPackage(paymentService, PAYWAY_PACKAGE_NAME);
+            for (Object item : define.getWayCodes()) {
+                String wayCode = item instanceof JSONObject ? ((JSONObject) item).getString("wayCode") : null;
+                if(wayCode == null){
+                    continue;
+                }
+                if(!wayCodeList.contains(wayCode)){
+                    log.warn("支付接口[{}]的支付方式[{}]在支付方式表中不存在", define.getIfCode(), wayCode);
+                }
+                if(!paymentService.isSupport(wayCode) || (hasPayway && getPaywayService(define.getIfCode(), wayCode, null) == null)){
+                    log.warn("支付接口[{}]不支持支付方式[{}]", define.getIfCode(), wayCode);
+                }
+            }
+        }
+    }
+
+    /** 根据支付方式解析实现类： 下划线转换驼峰 & 首字母大写 **/
+    private IPaymentService resolvePayway(String ifCode, String wayCode, String apiVersion){
+
+        IPaymentService paymentService = getPaymentService(ifCode);
+        if(paymentService == null){
+            return null;
+        }
+
+        String packageName = CS.PAY_IF_VERSION.WX_V3.equals(apiVersion) ? PAYWAYV3_PACKAGE_NAME : PAYWAY_PACKAGE_NAME;
+        String clsName = StrUtil.upperFirst(StrUtil.toCamelCase(wayCode.toLowerCase()));
+
+        return paywayClassMap.get(ClassUtils.getUserClass(paymentService).getPackage().getName() + "." + packageName + "." + clsName);
+    }
+
+    /** 支付接口是否按支付方式拆分实现类 **/
+    private boolean hasPaywayPackage(IPaymentService paymentService, String packageName){
+
+        String prefix = ClassUtils.getUserClass(paymentService).getPackage().getName() + "." + packageName + ".";
+        for (String clsName : paywayClassMap.keySet()) {
+            if(clsName.startsWith(prefix)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.jeequan.jeepay.pay.service;
 
+import com.alibaba.fastjson.JSONObject;
 import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.entity.IsvInfo;
 import com.jeequan.jeepay.core.entity.MchApp;
@@ -30,20 +31,26 @@ import com.jeequan.jeepay.core.model.params.wxpay.WxpayIsvParams;
 import com.jeequan.jeepay.core.model.params.wxpay.WxpayNormalMchParams;
 import com.jeequan.jeepay.pay.model.*;
 import com.jeequan.jeepay.service.impl.*;
-import com.paypal.core.PayPalEnvironment;
-import com.paypal.core.PayPalHttpClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /*
 * 商户/服务商 配置信息上下文服务
 *
+* 缓存的上下文对象为不可变快照： 发布后不再修改，更新时构建新对象整体替换 (copy-on-write)。
+* 加载操作按key加锁 (single-flight)， 同一key只有一个线程查询DB， 不同key之间互不阻塞。
+*
 * @author terrfly
 * @site https://www.jeequan.com
 * @date 2021/6/8 17:41
@@ -61,6 +68,22 @@ public class ConfigContextService {
     /** <服务商号, 服务商配置上下文>  **/
     private static final Map<String, IsvConfigContext> isvConfigContextMap = new ConcurrentHashMap<>();
 
+    /** <加载key, 锁对象>  加载完成后移除 **/
+    private static final Map<String, LoadLock> loadLockMap = new ConcurrentHashMap<>();
+
+    /** 快照版本号 **/
+    private static final AtomicLong snapshotVersion = new AtomicLong(0L);
+
+    /** 缓存统计： 命中次数 / 未命中次数 / 加载次数 / 加载总耗时(ms) **/
+    private static final LongAdder hitCount = new LongAdder();
+    private static final LongAdder missCount = new LongAdder();
+    private static final LongAdder loadCount = new LongAdder();
+    private static final LongAdder loadCostMs = new LongAdder();
+
+    private static final String LOCK_PREFIX_MCH_INFO = "MCH_INFO_";
+    private static final String LOCK_PREFIX_MCH_APP = "MCH_APP_";
+    private static final String LOCK_PREFIX_ISV = "ISV_";
+
     @Autowired private MchInfoService mchInfoService;
     @Autowired private MchAppService mchAppService;
     @Autowired private IsvInfoService isvInfoService;
@@ -71,12 +94,20 @@ public class ConfigContextService {
     public MchInfoConfigContext getMchInfoConfigContext(String mchNo){
 
         MchInfoConfigContext mchInfoConfigContext = mchInfoConfigContextMap.get(mchNo);
-
-        //无此数据， 需要初始化
-        if(mchInfoConfigContext == null){
-            initMchInfoConfigContext(mchNo);
+        if(mchInfoConfigContext != null){
+            hitCount.increment();
+            return mchInfoConfigContext;
         }
 
+        missCount.increment();
+
+        //无此数据， 需要初始化 (其他线程可能已完成加载， 加锁后再次判断)
+        withLoadLock(LOCK_PREFIX_MCH_INFO + mchNo, () -> {
+            if(!mchInfoConfigContextMap.containsKey(mchNo)){
+                initMchInfoConfigContext(mchNo);
+            }
+        });
+
         return mchInfoConfigContextMap.get(mchNo);
     }
 
@@ -84,12 +115,20 @@ public class ConfigContextService {
     public MchAppConfigContext getMchAppConfigContext(String mchNo, String appId){
 
         MchAppConfigContext mchAppConfigContext = mchAppConfigContextMap.get(appId);
-
-        //无此数据， 需要初始化
-        if(mchAppConfigContext == null){
-            initMchAppConfigContext(mchNo, appId);
+        if(mchAppConfigContext != null){
+            hitCount.increment();
+            return mchAppConfigContext;
         }
 
+        missCount.increment();
+
+        //无此数据， 需要初始化 (其他线程可能已完成加载， 加锁后再次判断)
+        withLoadLock(LOCK_PREFIX_MCH_APP + appId, () -> {
+            if(!mchAppConfigContextMap.containsKey(appId)){
+                initMchAppConfigContext(mchNo, appId);
+            }
+        });
+
         return mchAppConfigContextMap.get(appId);
     }
 
@@ -97,23 +136,160 @@ public class ConfigContextService {
     public IsvConfigContext getIsvConfigContext(String isvNo){
 
         IsvConfigContext isvConfigContext = isvConfigContextMap.get(isvNo);
-
-        //无此数据， 需要初始化
-        if(isvConfigContext == null){
-            initIsvConfigContext(isvNo);
+        if(isvConfigContext != null){
+            hitCount.increment();
+            return isvConfigContext;
         }
 
+        missCount.increment();
+
+        //无此数据， 需要初始化 (其他线程可能已完成加载， 加锁后再次判断)
+        withLoadLock(LOCK_PREFIX_ISV + isvNo, () -> {
+            if(!isvConfigContextMap.containsKey(isvNo)){
+                initIsvConfigContext(isvNo);
+            }
+        });
+
         return isvConfigContextMap.get(isvNo);
     }
 
 
     /** 初始化 [商户配置信息] **/
-    public synchronized void initMchInfoConfigContext(String mchNo){
+    public void initMchInfoConfigContext(String mchNo){
 
         if(!isCache()){ // 当前系统不进行缓存
             return ;
         }
 
+        withLoadLock(LOCK_PREFIX_MCH_INFO + mchNo, () -> {
+            long startTime = System.currentTimeMillis();
+            doInitMchInfoConfigContext(mchNo);
+            recordLoad(startTime);
+        });
+    }
+
+    /** 初始化 [商户应用支付参数配置信息] **/
+    public void initMchAppConfigContext(String mchNo, String appId){
+
+        if(!isCache()){ // 当前系统不进行缓存
+            return ;
+        }
+
+        withLoadLock(LOCK_PREFIX_MCH_APP + appId, () -> {
+            long startTime = System.currentTimeMillis();
+            doInitMchAppConfigContext(mchNo, appId);
+            recordLoad(startTime);
+        });
+    }
+
+    /** 初始化 [ISV支付参数配置信息]  **/
+    public void initIsvConfigContext(String isvNo){
+
+        if(!isCache()){ // 当前系统不进行缓存
+            return ;
+        }
+
+        withLoadLock(LOCK_PREFIX_ISV + isvNo, () -> {
+            long startTime = System.currentTimeMillis();
+            doInitIsvConfigContext(isvNo);
+            recordLoad(startTime);
+        });
+    }
+
+    /**
+     * 预热全部已启用的 [服务商 / 商户 / 商户应用] 配置信息
+     * 批量查询DB后， 在有界线程池中并行构建上下文 (主要耗时为各渠道client的初始化)， 全部完成后方返回。
+     * 预热期间已被请求线程加载的key不会被覆盖。
+     **/
+    public void initAllConfigContext(int threadCount){
+
+        if(!isCache()){ // 当前系统不进行缓存
+            return ;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        // 批量查询： 已启用的服务商、商户， 商户应用、已启用的支付接口配置 （停用的数据在首次请求时按需加载）
+        List<IsvInfo> isvInfoList = isvInfoService.list(IsvInfo.gw().eq(IsvInfo::getState, CS.YES));
+        List<MchInfo> mchInfoList = mchInfoService.list(MchInfo.gw().eq(MchInfo::getState, CS.YES));
+        List<MchApp> mchAppList = mchAppService.list();
+        Map<String, List<PayInterfaceConfig>> configMap = payInterfaceConfigService.list(PayInterfaceConfig.gw()
+                .select(PayInterfaceConfig::getInfoType, PayInterfaceConfig::getInfoId, PayInterfaceConfig::getIfCode, PayInterfaceConfig::getIfParams)
+                .eq(PayInterfaceConfig::getState, CS.YES)
+        ).stream().collect(Collectors.groupingBy(r -> r.getInfoType() + "_" + r.getInfoId()));
+
+        Map<String, List<MchApp>> mchAppListMap = mchAppList.stream().collect(Collectors.groupingBy(MchApp::getMchNo));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threadCount, 1));
+        try {
+
+            //1. 服务商
+            runAll(executor, isvInfoList, isvInfo -> {
+                IsvConfigContext isvConfigContext = buildIsvConfigContext(isvInfo,
+                        configMap.getOrDefault(CS.INFO_TYPE_ISV + "_" + isvInfo.getIsvNo(), Collections.emptyList()));
+                putIfAbsent(LOCK_PREFIX_ISV, isvConfigContextMap, isvInfo.getIsvNo(), isvConfigContext);
+            });
+
+            //2. 商户主体
+            Map<String, MchInfo> mchInfoMap = new HashMap<>();
+            for (MchInfo mchInfo : mchInfoList) {
+                mchInfoMap.put(mchInfo.getMchNo(), mchInfo);
+                MchInfoConfigContext mchInfoConfigContext = buildMchInfoConfigContext(mchInfo,
+                        mchAppListMap.getOrDefault(mchInfo.getMchNo(), Collections.emptyList()));
+                putIfAbsent(LOCK_PREFIX_MCH_INFO, mchInfoConfigContextMap, mchInfo.getMchNo(), mchInfoConfigContext);
+            }
+
+            //3. 已启用的商户应用
+            List<MchApp> activeMchAppList = mchAppList.stream()
+                    .filter(r -> r.getState() == CS.YES && mchInfoMap.containsKey(r.getMchNo()))
+                    .collect(Collectors.toList());
+
+            runAll(executor, activeMchAppList, mchApp -> {
+
+                MchInfo mchInfo = mchInfoMap.get(mchApp.getMchNo());
+                MchAppConfigContext mchAppConfigContext = buildMchAppConfigContext(mchInfo, mchApp,
+                        configMap.getOrDefault(CS.INFO_TYPE_MCH_APP + "_" + mchApp.getAppId(), Collections.emptyList()));
+
+                // 服务商未预热 （已停用或构建失败） 时按需加载， 仍不存在则不预热该应用 （首次请求时按需加载）
+                if(mchAppConfigContext.isIsvsubMch()){
+                    IsvConfigContext isvConfigContext = getIsvConfigContext(mchInfo.getIsvNo());
+                    if(isvConfigContext == null){
+                        return ;
+                    }
+                    mchAppConfigContext.setIsvConfigContext(isvConfigContext);
+                }
+                putIfAbsent(LOCK_PREFIX_MCH_APP, mchAppConfigContextMap, mchApp.getAppId(), mchAppConfigContext);
+            });
+
+        } finally {
+            executor.shutdown();
+        }
+
+        log.info("配置信息预热完成, isv={}, mchInfo={}, mchApp={}, 耗时{}ms",
+                isvInfoList.size(), mchInfoList.size(), mchAppList.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /** 缓存统计信息 **/
+    public JSONObject getCacheStats(){
+
+        long loads = loadCount.sum();
+
+        JSONObject result = new JSONObject();
+        result.put("hitCount", hitCount.sum());
+        result.put("missCount", missCount.sum());
+        result.put("loadCount", loads);
+        result.put("loadAvgMs", loads == 0 ? 0 : loadCostMs.sum() / loads);
+        result.put("version", snapshotVersion.get());
+        result.put("mchInfoSize", mchInfoConfigContextMap.size());
+        result.put("mchAppSize", mchAppConfigContextMap.size());
+        result.put("isvSize", isvConfigContextMap.size());
+        return result;
+    }
+
+
+    /** 构建 [商户配置信息] 快照， 调用方需持有对应的加载锁 **/
+    private void doInitMchInfoConfigContext(String mchNo){
+
         //商户主体信息
         MchInfo mchInfo = mchInfoService.getById(mchNo);
         if(mchInfo == null){ // 查询不到商户主体， 可能已经删除
@@ -129,35 +305,28 @@ public class ConfigContextService {
             return ;
         }
 
-        MchInfoConfigContext mchInfoConfigContext = new MchInfoConfigContext();
-
-        // 设置商户信息
-        mchInfoConfigContext.setMchNo(mchInfo.getMchNo());
-        mchInfoConfigContext.setMchType(mchInfo.getType());
-        mchInfoConfigContext.setMchInfo(mchInfo);
-        mchAppService.list(MchApp.gw().eq(MchApp::getMchNo, mchNo)).stream().forEach( mchApp -> {
+        List<MchApp> mchAppList = mchAppService.list(MchApp.gw().eq(MchApp::getMchNo, mchNo));
+        MchInfoConfigContext mchInfoConfigContext = buildMchInfoConfigContext(mchInfo, mchAppList);
 
-            //1. 更新商户内appId集合
-            mchInfoConfigContext.putMchApp(mchApp);
+        mchAppList.forEach( mchApp -> {
 
-            MchAppConfigContext mchAppConfigContext = mchAppConfigContextMap.get(mchApp.getAppId());
-            if(mchAppConfigContext != null){
+            //已缓存的商户应用， 替换为包含新商户信息的快照
+            mchAppConfigContextMap.computeIfPresent(mchApp.getAppId(), (appId, old) -> {
+                MchAppConfigContext mchAppConfigContext = old.copy();
+                mchAppConfigContext.setVersion(snapshotVersion.incrementAndGet());
                 mchAppConfigContext.setMchApp(mchApp);
                 mchAppConfigContext.setMchNo(mchInfo.getMchNo());
                 mchAppConfigContext.setMchType(mchInfo.getType());
                 mchAppConfigContext.setMchInfo(mchInfo);
-            }
+                return mchAppConfigContext;
+            });
         });
 
         mchInfoConfigContextMap.put(mchNo, mchInfoConfigContext);
     }
 
-    /** 初始化 [商户应用支付参数配置信息] **/
-    public synchronized void initMchAppConfigContext(String mchNo, String appId){
-
-        if(!isCache()){ // 当前系统不进行缓存
-            return ;
-        }
+    /** 构建 [商户应用支付参数配置信息] 快照， 调用方需持有对应的加载锁 **/
+    private void doInitMchAppConfigContext(String mchNo, String appId){
 
         // 获取商户的配置信息
         MchInfoConfigContext mchInfoConfigContext = getMchInfoConfigContext(mchNo);
@@ -171,7 +340,7 @@ public class ConfigContextService {
         //DB已经删除
         if(dbMchApp == null){
             mchAppConfigContextMap.remove(appId);  //清除缓存信息
-            mchInfoConfigContext.getAppMap().remove(appId); //清除主体信息中的appId
+            replaceMchInfoApp(mchNo, appId, null); //清除主体信息中的appId
             return ;
         }
 
@@ -182,18 +351,10 @@ public class ConfigContextService {
         }
 
         //更新商户信息主体中的商户应用
-        mchInfoConfigContext.putMchApp(dbMchApp);
+        replaceMchInfoApp(mchNo, appId, dbMchApp);
 
         //商户主体信息
         MchInfo mchInfo = mchInfoConfigContext.getMchInfo();
-        MchAppConfigContext mchAppConfigContext = new MchAppConfigContext();
-
-        // 设置商户信息
-        mchAppConfigContext.setAppId(appId);
-        mchAppConfigContext.setMchNo(mchInfo.getMchNo());
-        mchAppConfigContext.setMchType(mchInfo.getType());
-        mchAppConfigContext.setMchInfo(mchInfo);
-        mchAppConfigContext.setMchApp(dbMchApp);
 
         // 查询商户的所有支持的参数配置
         List<PayInterfaceConfig> allConfigList = payInterfaceConfigService.list(PayInterfaceConfig.gw()
@@ -203,6 +364,106 @@ public class ConfigContextService {
                 .eq(PayInterfaceConfig::getInfoId, appId)
         );
 
+        MchAppConfigContext mchAppConfigContext = buildMchAppConfigContext(mchInfo, dbMchApp, allConfigList);
+
+        //放置 当前商户的 服务商信息
+        if(mchAppConfigContext.isIsvsubMch()){
+            mchAppConfigContext.setIsvConfigContext(getIsvConfigContext(mchInfo.getIsvNo()));
+        }
+
+        mchAppConfigContextMap.put(appId, mchAppConfigContext);
+
+        // 构建期间 商户信息 或 服务商信息 可能已被重置， 以最新快照为准
+        MchInfoConfigContext latestMchInfoContext = mchInfoConfigContextMap.get(mchNo);
+        IsvConfigContext latestIsvContext = mchAppConfigContext.isIsvsubMch() ? isvConfigContextMap.get(mchInfo.getIsvNo()) : null;
+        boolean mchInfoChanged = latestMchInfoContext != null && latestMchInfoContext.getMchInfo() != mchInfo;
+        boolean isvChanged = mchAppConfigContext.isIsvsubMch() && latestIsvContext != mchAppConfigContext.getIsvConfigContext();
+
+        if(mchInfoChanged || isvChanged){
+            mchAppConfigContextMap.computeIfPresent(appId, (k, old) -> {
+                MchAppConfigContext result = old.copy();
+                result.setVersion(snapshotVersion.incrementAndGet());
+                if(mchInfoChanged){
+                    result.setMchInfo(latestMchInfoContext.getMchInfo());
+                    result.setMchType(latestMchInfoContext.getMchType());
+                }
+                if(isvChanged){
+                    result.setIsvConfigContext(latestIsvContext);
+                }
+                return result;
+            });
+        }
+    }
+
+
+    /** 构建 [ISV支付参数配置信息] 快照， 调用方需持有对应的加载锁 **/
+    private void doInitIsvConfigContext(String isvNo){
+
+        //查询出所有商户的配置信息并更新
+        List<String> mchNoList = new ArrayList<>();
+        mchInfoService.list(MchInfo.gw().select(MchInfo::getMchNo).eq(MchInfo::getIsvNo, isvNo)).forEach(r -> mchNoList.add(r.getMchNo()));
+
+        // 查询出所有 所属当前服务商的所有应用集合
+        List<String> mchAppIdList = new ArrayList<>();
+        if(!mchNoList.isEmpty()){
+            mchAppService.list(MchApp.gw().select(MchApp::getAppId).in(MchApp::getMchNo, mchNoList)).forEach(r -> mchAppIdList.add(r.getAppId()));
+        }
+
+        IsvInfo isvInfo = isvInfoService.getById(isvNo);
+        if(isvInfo == null){
+
+            //将更新已存在缓存的商户配置信息 （每个商户下存储的为同一个 服务商配置的对象指针）
+            replaceMchAppIsvConfigContext(mchAppIdList, null);
+
+            isvConfigContextMap.remove(isvNo); // 服务商有商户不可删除， 此处不再更新商户下的配置信息
+            return ;
+        }
+
+        // 查询商户的所有支持的参数配置
+        List<PayInterfaceConfig> allConfigList = payInterfaceConfigService.list(PayInterfaceConfig.gw()
+                .select(PayInterfaceConfig::getIfCode, PayInterfaceConfig::getIfParams)
+                .eq(PayInterfaceConfig::getState, CS.YES)
+                .eq(PayInterfaceConfig::getInfoType, CS.INFO_TYPE_ISV)
+                .eq(PayInterfaceConfig::getInfoId, isvNo)
+        );
+
+        IsvConfigContext isvConfigContext = buildIsvConfigContext(isvInfo, allConfigList);
+        isvConfigContextMap.put(isvNo, isvConfigContext);
+
+        //将更新已存在缓存的商户配置信息 （每个商户下存储的为同一个 服务商配置的对象指针）
+        replaceMchAppIsvConfigContext(mchAppIdList, isvConfigContext);
+    }
+
+    /** 构建 [商户配置信息] 快照 **/
+    private MchInfoConfigContext buildMchInfoConfigContext(MchInfo mchInfo, List<MchApp> mchAppList){
+
+        MchInfoConfigContext mchInfoConfigContext = new MchInfoConfigContext();
+
+        // 设置商户信息
+        mchInfoConfigContext.setVersion(snapshotVersion.incrementAndGet());
+        mchInfoConfigContext.setMchNo(mchInfo.getMchNo());
+        mchInfoConfigContext.setMchType(mchInfo.getType());
+        mchInfoConfigContext.setMchInfo(mchInfo);
+
+        // 商户内appId集合
+        mchAppList.forEach(mchInfoConfigContext::putMchApp);
+
+        return mchInfoConfigContext;
+    }
+
+    /** 构建 [商户应用支付参数配置信息] 快照 （服务商信息由调用方设置） **/
+    private MchAppConfigContext buildMchAppConfigContext(MchInfo mchInfo, MchApp mchApp, List<PayInterfaceConfig> allConfigList){
+
+        MchAppConfigContext mchAppConfigContext = new MchAppConfigContext();
+
+        // 设置商户信息
+        mchAppConfigContext.setVersion(snapshotVersion.incrementAndGet());
+        mchAppConfigContext.setAppId(mchApp.getAppId());
+        mchAppConfigContext.setMchNo(mchInfo.getMchNo());
+        mchAppConfigContext.setMchType(mchInfo.getType());
+        mchAppConfigContext.setMchInfo(mchInfo);
+        mchAppConfigContext.setMchApp(mchApp);
+
         // 普通商户
         if(mchInfo.getType() == CS.MCH_TYPE_NORMAL){
 
@@ -240,61 +501,21 @@ public class ConfigContextService {
                         IsvsubMchParams.factory(payInterfaceConfig.getIfCode(), payInterfaceConfig.getIfParams())
                 );
             }
-
-            //放置 当前商户的 服务商信息
-            mchAppConfigContext.setIsvConfigContext(getIsvConfigContext(mchInfo.getIsvNo()));
-
         }
 
-        mchAppConfigContextMap.put(appId, mchAppConfigContext);
+        return mchAppConfigContext;
     }
 
-
-    /** 初始化 [ISV支付参数配置信息]  **/
-    public synchronized void initIsvConfigContext(String isvNo){
-
-        if(!isCache()){ // 当前系统不进行缓存
-            return ;
-        }
-
-        //查询出所有商户的配置信息并更新
-        List<String> mchNoList = new ArrayList<>();
-        mchInfoService.list(MchInfo.gw().select(MchInfo::getMchNo).eq(MchInfo::getIsvNo, isvNo)).forEach(r -> mchNoList.add(r.getMchNo()));
-
-        // 查询出所有 所属当前服务商的所有应用集合
-        List<String> mchAppIdList = new ArrayList<>();
-        if(!mchNoList.isEmpty()){
-            mchAppService.list(MchApp.gw().select(MchApp::getAppId).in(MchApp::getMchNo, mchNoList)).forEach(r -> mchAppIdList.add(r.getAppId()));
-        }
+    /** 构建 [ISV支付参数配置信息] 快照 **/
+    private IsvConfigContext buildIsvConfigContext(IsvInfo isvInfo, List<PayInterfaceConfig> allConfigList){
 
         IsvConfigContext isvConfigContext = new IsvConfigContext();
-        IsvInfo isvInfo = isvInfoService.getById(isvNo);
-        if(isvInfo == null){
-
-            for (String appId : mchAppIdList) {
-                //将更新已存在缓存的商户配置信息 （每个商户下存储的为同一个 服务商配置的对象指针）
-                MchAppConfigContext mchAppConfigContext = mchAppConfigContextMap.get(appId);
-                if(mchAppConfigContext != null){
-                    mchAppConfigContext.setIsvConfigContext(null);
-                }
-            }
-
-            isvConfigContextMap.remove(isvNo); // 服务商有商户不可删除， 此处不再更新商户下的配置信息
-            return ;
-        }
 
         // 设置商户信息
+        isvConfigContext.setVersion(snapshotVersion.incrementAndGet());
         isvConfigContext.setIsvNo(isvInfo.getIsvNo());
         isvConfigContext.setIsvInfo(isvInfo);
 
-        // 查询商户的所有支持的参数配置
-        List<PayInterfaceConfig> allConfigList = payInterfaceConfigService.list(PayInterfaceConfig.gw()
-                .select(PayInterfaceConfig::getIfCode, PayInterfaceConfig::getIfParams)
-                .eq(PayInterfaceConfig::getState, CS.YES)
-                .eq(PayInterfaceConfig::getInfoType, CS.INFO_TYPE_ISV)
-                .eq(PayInterfaceConfig::getInfoId, isvNo)
-        );
-
         for (PayInterfaceConfig payInterfaceConfig : allConfigList) {
             isvConfigContext.getIsvParamsMap().put(
                     payInterfaceConfig.getIfCode(),
@@ -314,18 +535,90 @@ public class ConfigContextService {
             isvConfigContext.setWxServiceWrapper(WxServiceWrapper.buildWxServiceWrapper(wxpayParams));
         }
 
-        isvConfigContextMap.put(isvNo, isvConfigContext);
+        return isvConfigContext;
+    }
+
+    /** 替换已缓存商户信息中的商户应用 (copy-on-write)， mchApp为null时删除 **/
+    private void replaceMchInfoApp(String mchNo, String appId, MchApp mchApp){
+
+        mchInfoConfigContextMap.computeIfPresent(mchNo, (k, old) -> {
+            MchInfoConfigContext mchInfoConfigContext = old.copy();
+            mchInfoConfigContext.setVersion(snapshotVersion.incrementAndGet());
+            if(mchApp == null){
+                mchInfoConfigContext.getAppMap().remove(appId);
+            }else{
+                mchInfoConfigContext.putMchApp(mchApp);
+            }
+            return mchInfoConfigContext;
+        });
+    }
+
+    /** 替换已缓存商户应用中的服务商信息 (copy-on-write) **/
+    private void replaceMchAppIsvConfigContext(List<String> mchAppIdList, IsvConfigContext isvConfigContext){
 
-        //查询出所有商户的配置信息并更新
         for (String appId : mchAppIdList) {
-            //将更新已存在缓存的商户配置信息 （每个商户下存储的为同一个 服务商配置的对象指针）
-            MchAppConfigContext mchAppConfigContext = mchAppConfigContextMap.get(appId);
-            if(mchAppConfigContext != null){
+            mchAppConfigContextMap.computeIfPresent(appId, (k, old) -> {
+                MchAppConfigContext mchAppConfigContext = old.copy();
+                mchAppConfigContext.setVersion(snapshotVersion.incrementAndGet());
                 mchAppConfigContext.setIsvConfigContext(isvConfigContext);
+                return mchAppConfigContext;
+            });
+        }
+    }
+
+    /** 并行执行并等待全部完成， 单条失败不影响其他数据 **/
+    private <T> void runAll(ExecutorService executor, List<T> dataList, Consumer<T> consumer){
+
+        List<CompletableFuture<Void>> futureList = new ArrayList<>(dataList.size());
+        for (T data : dataList) {
+            futureList.add(CompletableFuture.runAsync(() -> {
+                try {
+                    consumer.accept(data);
+                } catch (Exception e) {
+                    log.error("配置信息预热异常, data={}", data, e);
+                }
+            }, executor));
+        }
+
+        CompletableFuture.allOf(futureList.toArray(new CompletableFuture[0])).join();
+    }
+
+    /** 仅当缓存不存在时写入 （持有对应的加载锁） **/
+    private <T> void putIfAbsent(String lockPrefix, Map<String, T> map, String key, T value){
+        withLoadLock(lockPrefix + key, () -> map.putIfAbsent(key, value));
+    }
+
+    /**
+     * 持有加载锁执行， 仅阻塞相同key的线程；
+     * 锁对象按引用计数管理， 最后一个持有者释放后从集合中移除， 避免锁对象无限增长。
+     **/
+    private void withLoadLock(String key, Runnable runnable){
+
+        LoadLock lock = loadLockMap.compute(key, (k, current) -> {
+            LoadLock result = current == null ? new LoadLock() : current;
+            result.refCount++;
+            return result;
+        });
+
+        try {
+            synchronized (lock){
+                runnable.run();
             }
+        } finally {
+            loadLockMap.computeIfPresent(key, (k, current) -> --current.refCount <= 0 ? null : current);
         }
     }
 
+    /** 加载锁 （引用计数仅在loadLockMap的compute中修改） **/
+    private static class LoadLock {
+        private int refCount = 0;
+    }
+
+    private void recordLoad(long startTime){
+        loadCount.increment();
+        loadCostMs.add(System.currentTimeMillis() - startTime);
+    }
+
     private boolean isCache(){
         return SysConfigService.IS_USE_CACHE;
     }
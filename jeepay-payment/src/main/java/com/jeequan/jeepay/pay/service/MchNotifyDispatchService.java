@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.service;
+
+import cn.hutool.core.net.url.UrlBuilder;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson.JSONObject;
+import com.jeequan.jeepay.components.mq.model.PayOrderMchNotifyMQ;
+import com.jeequan.jeepay.components.mq.vender.IMQSender;
+import com.jeequan.jeepay.core.entity.MchNotifyRecord;
+import com.jeequan.jeepay.service.impl.MchNotifyResultWriteService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+* 商户通知分发服务
+* 使用连接池化的异步http客户端发送商户通知， MQ消费线程不再等待商户响应，  商户接口响应慢不会占用消费线程。
+* 通知结果经合并写入服务批量落库， 落库完成后才发送下一次的延迟通知消息； 落库失败时延迟重新投递本次通知。
+* 商户通知地址(host)持续不可用时熔断， 该host的通知延迟到熔断结束后重新投递， 不消耗通知次数。
+*/
+@Slf4j
+@Service
+public class MchNotifyDispatchService {
+
+    /** 连接池最大连接数 **/
+    private static final int MAX_CONN_TOTAL = 1000;
+
+    /** 每个商户域名(host)的最大连接数 **/
+    private static final int MAX_CONN_PER_HOST = 20;
+
+    /** 每个商户同时进行中的最大通知数， 超出后延迟重新投递 (不计入通知次数) **/
+    private static final int MCH_MAX_CONCURRENT = 20;
+
+    /** 商户并发超限时， 重新投递的延迟时间(秒) **/
+    private static final int MCH_BUSY_DELAY_SECONDS = 5;
+
+    /** 建立连接超时 / 从连接池获取连接超时 / 读取响应超时 (毫秒) **/
+    private static final int CONNECT_TIMEOUT = 3000;
+    private static final int CONN_REQUEST_TIMEOUT = 5000;
+    private static final int SOCKET_TIMEOUT = 10000;
+
+    /** 通知结果写入失败时， 重新投递的延迟时间(秒) **/
+    private static final int WRITE_FAIL_RETRY_SECONDS = 30;
+
+    /** 结果处理线程数 （写入DB后发送延迟消息） **/
+    private static final int RESULT_THREAD_SIZE = 8;
+
+    /** <商户号, 并发信号量> **/
+    private final Map<String, Semaphore> mchSemaphoreMap = new ConcurrentHashMap<>();
+
+    /** 统计： 发送数 / 成功数 / 商户并发超限数 **/
+    private final LongAdder sendCount = new LongAdder();
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder busyCount = new LongAdder();
+
+    private CloseableHttpAsyncClient httpClient;
+    private ThreadPoolExecutor resultExecutor;
+
+    @Autowired private MchNotifyResultWriteService mchNotifyResultWriteService;
+    @Autowired private IMQSender mqSender;
+    @Autowired private MchNotifyHostHealthService mchNotifyHostHealthService;
+
+    @PostConstruct
+    public void init() throws Exception {
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(Runtime.getRuntime().availableProcessors())
+                .setConnectTimeout(CONNECT_TIMEOUT)
+                .setSoTimeout(SOCKET_TIMEOUT)
+                .build();
+
+        PoolingNHttpClientConnectionManager connManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+        connManager.setMaxTotal(MAX_CONN_TOTAL);
+        connManager.setDefaultMaxPerRoute(MAX_CONN_PER_HOST);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT)
+                .setConnectionRequestTimeout(CONN_REQUEST_TIMEOUT)
+                .setSocketTimeout(SOCKET_TIMEOUT)
+                .build();
+
+        httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        httpClient.start();
+
+        // 结果处理线程池： 队列满时由调用线程执行 (反压)
+        resultExecutor = new ThreadPoolExecutor(RESULT_THREAD_SIZE, RESULT_THREAD_SIZE, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(10000), new NamedThreadFactory("mch-notify-result-", true), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 发送商户通知， 方法立即返回；
+     * 返回的future在通知结果落库 (以及下一次延迟消息发送) 完成后结束。
+     **/
+    public CompletableFuture<Void> dispatch(MchNotifyRecord record){
+
+        CompletableFuture<Void> resultFuture = new CompletableFuture<>();
+
+        String notifyUrl = record.getNotifyUrl();
+        int pathEndPos = notifyUrl.indexOf('?');
+        if (pathEndPos <= -1) {
+            log.error("通知地址错误，参数为空，notifyUrl：{}", notifyUrl);
+            processResult(record, "连接["+ UrlBuilder.of(notifyUrl).getHost() +"]异常:【通知地址错误】", resultFuture);
+            return resultFuture;
+        }
+
+        // 商户并发超限： 延迟重新投递， 不计入通知次数
+        Semaphore semaphore = mchSemaphoreMap.computeIfAbsent(StrUtil.nullToEmpty(record.getMchNo()), k -> new Semaphore(MCH_MAX_CONCURRENT));
+        if(!semaphore.tryAcquire()){
+            busyCount.increment();
+            mqSender.send(PayOrderMchNotifyMQ.build(record.getNotifyId()), MCH_BUSY_DELAY_SECONDS);
+            resultFuture.complete(null);
+            return resultFuture;
+        }
+
+        // host已熔断： 通知已重新投递为延迟消息
+        String host = UrlBuilder.of(notifyUrl).getHost();
+        if(!mchNotifyHostHealthService.tryAcquire(host, record.getNotifyId())){
+            semaphore.release();
+            resultFuture.complete(null);
+            return resultFuture;
+        }
+
+        HttpPost httpPost = new HttpPost(StrUtil.subPre(notifyUrl, pathEndPos));
+        httpPost.setEntity(new StringEntity(StrUtil.subSuf(notifyUrl, pathEndPos + 1), ContentType.APPLICATION_FORM_URLENCODED.withCharset(StandardCharsets.UTF_8)));
+
+        sendCount.increment();
+        try {
+            httpClient.execute(httpPost, new FutureCallback<HttpResponse>() {
+
+                @Override
+                public void completed(HttpResponse response) {
+                    semaphore.release();
+
+                    if(response.getStatusLine().getStatusCode() >= 500){
+                        mchNotifyHostHealthService.onFailure(host);
+                    }else{
+                        mchNotifyHostHealthService.onSuccess(host);
+                    }
+
+                    String res;
+                    try {
+                        res = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                    } catch (Exception e) {
+                        res = "连接["+ host +"]异常:【" + e.getMessage() + "】";
+                    }
+                    processResult(record, res, resultFuture);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    semaphore.release();
+                    mchNotifyHostHealthService.onFailure(host);
+                    log.error("http error, notifyId={}, {}", record.getNotifyId(), e.getMessage());
+                    processResult(record, "连接["+ host +"]异常:【" + e.getMessage() + "】", resultFuture);
+                }
+
+                @Override
+                public void cancelled() {
+                    semaphore.release();
+                    mchNotifyHostHealthService.onFailure(host);
+                    processResult(record, "连接["+ host +"]异常:【请求已取消】", resultFuture);
+                }
+            });
+        } catch (Exception e) { // 客户端已关闭等
+            semaphore.release();
+            mchNotifyHostHealthService.onFailure(host);
+            log.error("http error", e);
+            processResult(record, "连接["+ host +"]异常:【" + e.getMessage() + "】", resultFuture);
+        }
+
+        return resultFuture;
+    }
+
+    /** 通知统计信息 **/
+    public JSONObject getStats(){
+
+        JSONObject result = new JSONObject();
+        result.put("sendCount", sendCount.sum());
+        result.put("successCount", successCount.sum());
+        result.put("busyCount", busyCount.sum());
+        result.put("resultBacklog", resultExecutor.getQueue().size());
+        return result;
+    }
+
+    @PreDestroy
+    public void destroy() throws Exception {
+        httpClient.close();
+        resultExecutor.shutdown();
+        resultExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+
+    /** 结果提交到合并写入缓冲区， 写入DB后 (在落库线程池中) 才发送下一次的延迟通知消息 **/
+    private void processResult(MchNotifyRecord record, String res, CompletableFuture<Void> resultFuture){
+
+        Long notifyId = record.getNotifyId();
+
+        //1. (发送结果最多6次)
+        Integer currentCount = record.getNotifyCount() + 1;
+
+        //支付订单 & 第一次通知: 更新为已通知
+        String sentPayOrderId = null;
+        if(currentCount == 1 && MchNotifyRecord.TYPE_PAY_ORDER == record.getOrderType()){
+            sentPayOrderId = record.getOrderId();
+        }
+
+        Byte state;
+        if("SUCCESS".equalsIgnoreCase(res)){ //通知成功
+            successCount.increment();
+            state = MchNotifyRecord.STATE_SUCCESS;
+        }else if( currentCount >= record.getNotifyCountLimit() ){ //通知次数 >= 最大通知次数时， 更新响应结果为异常， 不在继续延迟发送消息
+            state = MchNotifyRecord.STATE_FAIL;
+        }else{
+            state = MchNotifyRecord.STATE_ING;
+        }
+
+        mchNotifyResultWriteService.submit(notifyId, state, res, sentPayOrderId).whenCompleteAsync((v, e) -> {
+
+            if(e != null){
+                // 结果未落库 （通知记录仍为通知中， 通知次数未增加）， 延迟重新投递， 避免通知丢失
+                log.error("商户通知结果写入异常, 延迟{}秒后重新投递, notifyId={}", WRITE_FAIL_RETRY_SECONDS, notifyId, e);
+                try {
+                    mqSender.send(PayOrderMchNotifyMQ.build(notifyId), WRITE_FAIL_RETRY_SECONDS);
+                    resultFuture.complete(null);
+                } catch (Exception ex) {
+                    log.error("商户通知重新投递异常, notifyId={}", notifyId, ex);
+                    resultFuture.completeExceptionally(ex);
+                }
+                return ;
+            }
+
+            try {
+                if(state == MchNotifyRecord.STATE_ING){
+                    // 继续发送MQ 延迟发送
+                    // 通知延时次数
+                    //        1   2  3  4   5   6
+                    //        0  30 60 90 120 150
+                    mqSender.send(PayOrderMchNotifyMQ.build(notifyId), currentCount * 30);
+                }
+                resultFuture.complete(null);
+            } catch (Exception ex) {
+                log.error("商户通知延迟消息发送异常, notifyId={}", notifyId, ex);
+                resultFuture.completeExceptionally(ex);
+            }
+        }, resultExecutor);
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.service;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.alibaba.fastjson.JSONObject;
+import com.jeequan.jeepay.components.mq.model.PayOrderMchNotifyMQ;
+import com.jeequan.jeepay.components.mq.vender.IMQSender;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/*
+* 商户通知地址(host)健康检查 （熔断器）
+* 同一host连续失败达到阈值后熔断， 熔断期间该host的通知不发送http请求也不计入通知次数， 而是重新投递为延迟MQ消息，
+* 延迟时间为熔断剩余时间， 并按固定速率错开， 避免恢复后集中发送； 暂存数据在MQ中， 节点重启不会丢失。
+* 熔断到期后仅放行一个探测请求， 探测成功后恢复； 探测失败则熔断时间翻倍。
+*/
+@Slf4j
+@Service
+public class MchNotifyHostHealthService {
+
+    /** 连续失败N次后熔断 **/
+    private static final int FAIL_THRESHOLD = 5;
+
+    /** 首次熔断时长 / 最大熔断时长 (毫秒) **/
+    private static final long MIN_OPEN_MILLIS = 30 * 1000L;
+    private static final long MAX_OPEN_MILLIS = 10 * 60 * 1000L;
+
+    /** 恢复后每个host每秒重新投递的通知数量 **/
+    private static final int DRAIN_PER_SECOND = 20;
+
+    /** 探测请求进行中时， 其他通知的延迟时间(秒) **/
+    private static final int HALF_OPEN_DELAY_SECONDS = 10;
+
+    /** 错开投递的最大时长(秒)， 超出后循环分布 **/
+    private static final int MAX_SPREAD_SECONDS = 300;
+
+    /** 熔断器状态 **/
+    private static final int STATE_CLOSED = 0; //正常
+    private static final int STATE_OPEN = 1; //熔断
+    private static final int STATE_HALF_OPEN = 2; //探测中
+
+    /** <host, 健康状态> **/
+    private final Map<String, HostHealth> hostHealthMap = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService cleanExecutor;
+
+    @Autowired private IMQSender mqSender;
+
+    @PostConstruct
+    public void init(){
+        cleanExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("mch-notify-health-", true));
+        cleanExecutor.scheduleWithFixedDelay(this::cleanHealthy, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy(){
+        cleanExecutor.shutdownNow();
+    }
+
+    /**
+     * 是否允许向该host发送请求；
+     * 不允许时通知已重新投递为延迟MQ消息， 调用方直接返回即可。
+     **/
+    public boolean tryAcquire(String host, Long notifyId){
+
+        HostHealth health = hostHealthMap.computeIfAbsent(host, k -> new HostHealth());
+
+        long delaySeconds;
+        synchronized (health){
+
+            if(health.state == STATE_CLOSED){
+                return true;
+            }
+
+            // 熔断到期， 放行一个探测请求
+            if(health.state == STATE_OPEN && System.currentTimeMillis() >= health.openUntil){
+                health.state = STATE_HALF_OPEN;
+                log.info("商户通知host[{}]熔断到期， 发送探测请求", host);
+                return true;
+            }
+
+            // 延迟到熔断结束 (探测中时延迟到探测请求超时) 后， 按每秒固定数量错开
+            long remainSeconds = health.state == STATE_HALF_OPEN ? HALF_OPEN_DELAY_SECONDS
+                    : Math.max((health.openUntil - System.currentTimeMillis()) / 1000, 1);
+            delaySeconds = remainSeconds + (health.parkedCount / DRAIN_PER_SECOND) % MAX_SPREAD_SECONDS;
+            health.parkedCount++;
+        }
+
+        try {
+            mqSender.send(PayOrderMchNotifyMQ.build(notifyId), (int) delaySeconds);
+            return false;
+        } catch (Exception e) { // 无法重新投递时仍然发送， 避免通知丢失
+            log.error("商户通知延迟投递异常, notifyId={}", notifyId, e);
+            return true;
+        }
+    }
+
+    /** 请求成功 (已收到http响应) **/
+    public void onSuccess(String host){
+
+        HostHealth health = hostHealthMap.get(host);
+        if(health == null){
+            return ;
+        }
+
+        synchronized (health){
+            if(health.state != STATE_CLOSED){
+                log.info("商户通知host[{}]已恢复， 熔断期间延迟投递{}条", host, health.parkedCount);
+            }
+            health.state = STATE_CLOSED;
+            health.failCount = 0;
+            health.openMillis = 0;
+            health.parkedCount = 0;
+        }
+    }
+
+    /** 请求失败 (连接异常、超时、http 5xx) **/
+    public void onFailure(String host){
+
+        HostHealth health = hostHealthMap.computeIfAbsent(host, k -> new HostHealth());
+
+        synchronized (health){
+
+            health.failCount++;
+
+            // 探测失败， 或连续失败达到阈值： 熔断， 熔断时长逐次翻倍
+            if(health.state == STATE_HALF_OPEN || (health.state == STATE_CLOSED && health.failCount >= FAIL_THRESHOLD)){
+                health.openMillis = health.openMillis == 0 ? MIN_OPEN_MILLIS : Math.min(health.openMillis * 2, MAX_OPEN_MILLIS);
+                health.openUntil = System.currentTimeMillis() + health.openMillis;
+                health.state = STATE_OPEN;
+                health.parkedCount = 0;
+                log.warn("商户通知host[{}]连续失败{}次， 熔断{}秒", host, health.failCount, health.openMillis / 1000);
+            }
+        }
+    }
+
+    /** 熔断统计信息 **/
+    public JSONObject getStats(){
+
+        JSONObject result = new JSONObject();
+        hostHealthMap.forEach((host, health) -> {
+            if(health.state != STATE_CLOSED){
+                JSONObject item = new JSONObject();
+                item.put("state", health.state);
+                item.put("failCount", health.failCount);
+                item.put("openUntil", health.openUntil);
+                item.put("parkedCount", health.parkedCount);
+                result.put(host, item);
+            }
+        });
+        return result;
+    }
+
+
+    /** 移除正常的host， 避免map持续增长 **/
+    private void cleanHealthy(){
+
+        hostHealthMap.entrySet().removeIf(entry -> {
+            HostHealth health = entry.getValue();
+            synchronized (health){
+                return health.state == STATE_CLOSED && health.failCount == 0;
+            }
+        });
+    }
+
+    /** host健康状态 **/
+    private static class HostHealth {
+
+        private int state = STATE_CLOSED;
+        private int failCount = 0;
+        private long openMillis = 0;
+        private long openUntil = 0;
+
+        /** 本次熔断期间延迟投递的通知数量 **/
+        private int parkedCount = 0;
+    }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.service;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.alibaba.fastjson.JSONObject;
+import com.jeequan.jeepay.core.constants.CS;
+import com.jeequan.jeepay.core.entity.MchPayPassage;
+import com.jeequan.jeepay.core.entity.PayInterfaceDefine;
+import com.jeequan.jeepay.pay.channel.IPaymentService;
+import com.jeequan.jeepay.service.impl.MchPayPassageService;
+import com.jeequan.jeepay.service.impl.PayInterfaceDefineService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+* 商户支付通道路由表
+* 按商户应用缓存 [支付方式 -> 可用通道列表]， 下单时不再查询 商户支付通道表 及 支付接口定义表；
+* 收到[商户/商户应用配置]重置消息时重建， 支付接口定义（启用状态）由后台线程定时刷新。
+* 同一支付方式配置了多个可用通道时， 按通道的 调用耗时 与 异常率 加权随机选择， 异常率升高或响应变慢的通道自动降低流量，
+* 但保留最低权重用于探测， 恢复后流量自动回升。
+* 调用统计按 应用+接口代码 记录 （保存在应用的路由表中）， 单个商户的参数配置错误不会影响其他商户的通道选择， 配置变更重建路由表时统计一并重置。
+*/
+@Slf4j
+@Service
+public class MchPayPassageRouteService {
+
+    /** 支付接口定义刷新间隔(秒) **/
+    private static final int IF_DEFINE_REFRESH_SECONDS = 60;
+
+    /** 滑动平均系数， 越大越侧重最近的调用 **/
+    private static final double EWMA_ALPHA = 0.1;
+
+    /** 耗时基准(毫秒)： 平均耗时每增加一个基准值， 权重相应降低 **/
+    private static final double LATENCY_BASE_MILLIS = 1000;
+
+    /** 最低权重， 保证降级的通道仍有少量流量用于探测恢复 **/
+    private static final double MIN_WEIGHT = 0.02;
+
+    /** 权重低于该值的通道视为已降级， 定时输出统计信息 **/
+    private static final double DEGRADED_WEIGHT = 0.5;
+
+    @Autowired private MchPayPassageService mchPayPassageService;
+    @Autowired private PayInterfaceDefineService payInterfaceDefineService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
+
+    /** <应用ID, 路由表> **/
+    private final Map<String, AppRoute> appRouteMap = new ConcurrentHashMap<>();
+
+    /** 已启用的支付接口代码 **/
+    private volatile Set<String> enabledIfCodeSet;
+
+    private ScheduledExecutorService refreshExecutor;
+
+    @PostConstruct
+    public void init(){
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("pay-passage-route-", true));
+        refreshExecutor.scheduleWithFixedDelay(this::refreshIfDefine, IF_DEFINE_REFRESH_SECONDS, IF_DEFINE_REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy(){
+        refreshExecutor.shutdownNow();
+    }
+
+    /** 根据应用ID 和 支付方式， 选择商户可用的支付通道， 无可用通道时返回null **/
+    public MchPayPassage selectPassage(String mchNo, String appId, String wayCode){
+
+        AppRoute appRoute = appRouteMap.get(appId);
+        if(appRoute == null){
+            appRoute = appRouteMap.computeIfAbsent(appId, this::loadAppRoute);
+        }
+
+        if(!Objects.equals(appRoute.mchNo, mchNo)){
+            return null;
+        }
+
+        List<MchPayPassage> candidateList = appRoute.wayCodeMap.get(wayCode);
+        if(candidateList == null){
+            return null;
+        }
+
+        Set<String> enabledIfCodeSet = getEnabledIfCodeSet();
+        List<MchPayPassage> availableList = new ArrayList<>(candidateList.size());
+        for (MchPayPassage passage : candidateList) {
+            if(enabledIfCodeSet.contains(passage.getIfCode())){
+                availableList.add(passage);
+            }
+        }
+
+        if(availableList.isEmpty()){
+            return null;
+        }
+        if(availableList.size() == 1){
+            return availableList.get(0);
+        }
+
+        return weightedSelect(appRoute, availableList);
+    }
+
+    /**
+     * 记录商户应用的通道调用结果 （路由表已重建时忽略）
+     * @param success 通道是否正常响应 （业务失败同样视为正常， 仅超时、网络异常及系统异常计为失败）
+     **/
+    public void record(String appId, String ifCode, long costMillis, boolean success){
+
+        if(appId == null || ifCode == null){
+            return;
+        }
+
+        AppRoute appRoute = appRouteMap.get(appId);
+        if(appRoute != null){
+            appRoute.channelStatMap.computeIfAbsent(ifCode, k -> new ChannelStat()).record(costMillis, success);
+        }
+    }
+
+    /** 商户应用配置变更， 重建路由表 （下次调用时加载） **/
+    public void resetApp(String appId){
+        if(appId != null){
+            appRouteMap.remove(appId);
+        }
+    }
+
+    /** 商户配置变更， 重建该商户全部应用的路由表 **/
+    public void resetMch(String mchNo){
+        if(mchNo != null){
+            appRouteMap.values().removeIf(appRoute -> mchNo.equals(appRoute.mchNo));
+        }
+    }
+
+    /** 通道统计信息 （仅包含已降级的通道， 格式： <应用ID, <接口代码, 统计>>） **/
+    public JSONObject getDegradedStats(){
+
+        JSONObject result = new JSONObject();
+        appRouteMap.forEach((appId, appRoute) -> appRoute.channelStatMap.forEach((ifCode, stat) -> {
+
+            double weight = stat.weight();
+            if(weight >= DEGRADED_WEIGHT){
+                return ;
+            }
+
+            JSONObject item = new JSONObject();
+            item.put("avgCostMillis", Math.round(stat.avgCostMillis));
+            item.put("errorRate", stat.errorRate);
+            item.put("weight", weight);
+
+            JSONObject appItem = result.getJSONObject(appId);
+            if(appItem == null){
+                appItem = new JSONObject();
+                result.put(appId, appItem);
+            }
+            appItem.put(ifCode, item);
+        }));
+        return result;
+    }
+
+
+    /** 按权重随机选择 **/
+    private MchPayPassage weightedSelect(AppRoute appRoute, List<MchPayPassage> availableList){
+
+        double[] weights = new double[availableList.size()];
+        double total = 0;
+        for (int i = 0; i < availableList.size(); i++) {
+            ChannelStat stat = appRoute.channelStatMap.get(availableList.get(i).getIfCode());
+            weights[i] = stat == null ? 1 : stat.weight();
+            total += weights[i];
+        }
+
+        double random = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < weights.length; i++) {
+            random -= weights[i];
+            if(random < 0){
+                return availableList.get(i);
+            }
+        }
+        return availableList.get(availableList.size() - 1);
+    }
+
+    /** 加载应用的路由表： 仅保留有对应实现且支持该支付方式的通道 **/
+    private AppRoute loadAppRoute(String appId){
+
+        List<MchPayPassage> list = mchPayPassageService.list(MchPayPassage.gw()
+                .eq(MchPayPassage::getAppId, appId)
+                .eq(MchPayPassage::getState, CS.YES)
+        );
+
+        String mchNo = null;
+        Map<String, List<MchPayPassage>> wayCodeMap = new HashMap<>();
+        for (MchPayPassage passage : list) {
+
+            mchNo = passage.getMchNo();
+
+            IPaymentService paymentService = channelServiceRegistry.getPaymentService(passage.getIfCode());
+            if(paymentService == null || !paymentService.isSupport(passage.getWayCode())){
+                continue;
+            }
+            wayCodeMap.computeIfAbsent(passage.getWayCode(), k -> new ArrayList<>()).add(passage);
+        }
+
+        return new AppRoute(mchNo, wayCodeMap);
+    }
+
+    private Set<String> getEnabledIfCodeSet(){
+
+        Set<String> result = enabledIfCodeSet;
+        if(result == null){
+            synchronized (this){
+                if(enabledIfCodeSet == null){
+                    enabledIfCodeSet = loadEnabledIfCodeSet();
+                }
+                result = enabledIfCodeSet;
+            }
+        }
+        return result;
+    }
+
+    /** 定时刷新支付接口定义， 并输出已降级的通道统计信息 **/
+    private void refreshIfDefine(){
+        try {
+            enabledIfCodeSet = loadEnabledIfCodeSet();
+        } catch (Exception e) {
+            log.error("刷新支付接口定义异常", e);
+        }
+
+        JSONObject degradedStats = getDegradedStats();
+        if(!degradedStats.isEmpty()){
+            log.info("已降级的支付通道统计信息: {}", degradedStats);
+        }
+    }
+
+    private Set<String> loadEnabledIfCodeSet(){
+
+        Set<String> result = new HashSet<>();
+        payInterfaceDefineService.list(PayInterfaceDefine.gw()
+                .select(PayInterfaceDefine::getIfCode)
+                .eq(PayInterfaceDefine::getState, CS.YES)
+        ).forEach(define -> result.add(define.getIfCode()));
+        return Collections.unmodifiableSet(result);
+    }
+
+    /** 应用路由表 **/
+    private static class AppRoute {
+
+        /** 应用所属商户号 （应用下无可用通道时为null） **/
+        private final String mchNo;
+
+        /** <支付方式, 可用通道列表> **/
+        private final Map<String, List<MchPayPassage>> wayCodeMap;
+
+        /** <接口代码, 调用统计> **/
+        private final Map<String, ChannelStat> channelStatMap = new ConcurrentHashMap<>();
+
+        AppRoute(String mchNo, Map<String, List<MchPayPassage>> wayCodeMap){
+            this.mchNo = mchNo;
+            this.wayCodeMap = wayCodeMap;
+        }
+    }
+
+    /** 通道调用统计 （滑动平均） **/
+    private static class ChannelStat {
+
+        private volatile double avgCostMillis = 0;
+        private volatile double errorRate = 0;
+        private volatile boolean initialized = false;
+
+        synchronized void record(long costMillis, boolean success){
+
+            if(!initialized){
+                avgCostMillis = costMillis;
+                errorRate = success ? 0 : 1;
+                initialized = true;
+                return;
+            }
+            avgCostMillis += EWMA_ALPHA * (costMillis - avgCostMillis);
+            errorRate += EWMA_ALPHA * ((success ? 0 : 1) - errorRate);
+        }
+
+        /** 权重： 异常率越高、平均耗时越长， 权重越低 **/
+        double weight(){
+
+            double successRate = 1 - errorRate;
+            double weight = successRate * successRate / (1 + avgCostMillis / LATENCY_BASE_MILLIS);
+            return Math.max(weight, MIN_WEIGHT);
+        }
+    }
+
+}
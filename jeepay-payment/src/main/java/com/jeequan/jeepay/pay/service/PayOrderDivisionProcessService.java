@@ -26,7 +26,6 @@ import com.jeequan.jeepay.core.entity.PayOrderDivisionRecord;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.utils.AmountUtil;
 import com.jeequan.jeepay.core.utils.SeqKit;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.pay.channel.IDivisionService;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
 import com.jeequan.jeepay.service.impl.MchDivisionReceiverGroupService;
@@ -62,6 +61,8 @@ public class PayOrderDivisionProcessService {
     private PayOrderDivisionRecordService payOrderDivisionRecordService;
     @Autowired
     private ConfigContextQueryService configContextQueryService;
+    @Autowired
+    private ChannelServiceRegistry channelServiceRegistry;
 
     /***
     * 处理分账，
@@ -157,7 +158,7 @@ public class PayOrderDivisionProcessService {
         try{
 
             //调用渠道侧分账接口
-            IDivisionService divisionService = SpringBeansUtil.getBean(payOrder.getIfCode() + "DivisionService", IDivisionService.class);
+            IDivisionService divisionService = channelServiceRegistry.getService(payOrder.getIfCode(), IDivisionService.class);
             if(divisionService == null){
                 throw new BizException("通道无此分账接口");
             }
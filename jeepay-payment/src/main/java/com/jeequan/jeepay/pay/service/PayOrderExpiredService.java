@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.service;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.jeequan.jeepay.core.entity.PayOrder;
+import com.jeequan.jeepay.service.impl.PayOrderService;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/*
+* 订单超时关闭服务
+* 订单创建时按失效时间登记到时间轮， 到期后按订单号分批关闭， 精确到秒。
+* 重启后由定时任务从DB预加载即将失效的订单，  未能登记的订单由定时任务按索引兜底关闭。
+*/
+@Slf4j
+@Service
+public class PayOrderExpiredService {
+
+    /** 时间轮中最多登记的订单数量， 超出后由定时任务兜底处理 **/
+    private static final int MAX_PENDING_SIZE = 200000;
+
+    /** 每批次关闭的订单数量 **/
+    private static final int CLOSE_BATCH_SIZE = 100;
+
+    /** 预加载： 加载未来N分钟内失效的订单 （需大于定时任务的调度间隔） **/
+    private static final int PRELOAD_MINUTES = 2;
+
+    /** 预加载： 每次最多加载的订单数量 **/
+    private static final int PRELOAD_LIMIT = 20000;
+
+    /** <订单号, 时间轮任务> **/
+    private final Map<String, Timeout> pendingMap = new ConcurrentHashMap<>();
+
+    /** 已到期待关闭的订单号 **/
+    private final BlockingQueue<String> expiredQueue = new LinkedBlockingQueue<>();
+
+    private HashedWheelTimer wheelTimer;
+    private ScheduledExecutorService closeExecutor;
+
+    @Autowired private PayOrderService payOrderService;
+    @Autowired private PayOrderProcessService payOrderProcessService;
+
+    @PostConstruct
+    public void init(){
+
+        // 时间轮每格1秒， 共512格 （超出一圈的任务按圈数计算）
+        wheelTimer = new HashedWheelTimer(new NamedThreadFactory("payorder-expired-wheel-", true), 1, TimeUnit.SECONDS, 512);
+
+        // 关闭操作不在时间轮线程中执行， 避免DB耗时影响时间轮精度
+        closeExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("payorder-expired-close-", true));
+        closeExecutor.scheduleWithFixedDelay(this::closeExpiredOrders, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /** 登记订单的失效时间 **/
+    public void register(String payOrderId, Date expiredTime){
+
+        if(payOrderId == null || expiredTime == null || pendingMap.containsKey(payOrderId)){
+            return ;
+        }
+
+        if(pendingMap.size() >= MAX_PENDING_SIZE){ // 超出容量， 由定时任务兜底
+            return ;
+        }
+
+        long delayMs = Math.max(expiredTime.getTime() - System.currentTimeMillis(), 0);
+        pendingMap.computeIfAbsent(payOrderId, k -> wheelTimer.newTimeout(timeout -> {
+            pendingMap.remove(payOrderId);
+            expiredQueue.offer(payOrderId);
+        }, delayMs, TimeUnit.MILLISECONDS));
+    }
+
+    /** 从DB预加载即将失效的订单 （服务重启后的恢复， 以及其他节点创建的订单） **/
+    public int preload(){
+
+        List<PayOrder> payOrderList = payOrderService.listExpiringOrder(DateUtil.offsetMinute(new Date(), PRELOAD_MINUTES), PRELOAD_LIMIT);
+        payOrderList.forEach(payOrder -> register(payOrder.getPayOrderId(), payOrder.getExpiredTime()));
+        return payOrderList.size();
+    }
+
+    /** 分批关闭已到期的订单 **/
+    private void closeExpiredOrders(){
+
+        try {
+            List<String> batchList = new ArrayList<>(CLOSE_BATCH_SIZE);
+            while(expiredQueue.drainTo(batchList, CLOSE_BATCH_SIZE) > 0){
+
+                int updateCount = payOrderService.updateOrderExpired(batchList);
+                if(updateCount > 0){
+                    log.info("订单到期关闭{}条.", updateCount);
+
+                    //推送到收银台页面 （未实际关闭的订单不会推送）
+                    payOrderProcessService.pushOrderClosed(new ArrayList<>(batchList));
+                }
+                batchList.clear();
+            }
+        } catch (Exception e) {
+            log.error("订单到期关闭异常", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy(){
+        wheelTimer.stop();
+        closeExecutor.shutdown();
+    }
+
+}
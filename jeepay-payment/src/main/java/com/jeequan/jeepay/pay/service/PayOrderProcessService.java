@@ -17,14 +17,20 @@ package com.jeequan.jeepay.pay.service;
 
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.jeequan.jeepay.components.mq.model.PayOrderDivisionMQ;
+import com.jeequan.jeepay.components.mq.model.PayOrderWsPushMQ;
 import com.jeequan.jeepay.components.mq.vender.IMQSender;
 import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.entity.PayOrder;
+import com.jeequan.jeepay.pay.websocket.server.WsPayOrderStateServer;
 import com.jeequan.jeepay.service.impl.PayOrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /***
 * 订单处理通用逻辑
 *
@@ -56,6 +62,38 @@ public class PayOrderProcessService {
         //发送商户通知
         payMchNotifyService.payOrderNotify(payOrder);
 
+        //推送到收银台页面
+        this.pushOrderStateChange(payOrder.getPayOrderId(), PayOrder.STATE_SUCCESS);
+
+    }
+
+    /** 订单进入终态（成功、失败、关闭）， 推送到收银台页面 （广播到全部节点， 由持有ws连接的节点推送） **/
+    public void pushOrderStateChange(String payOrderId, Byte state){
+
+        try {
+            mqSender.send(PayOrderWsPushMQ.build(PayOrderWsPushMQ.ENDPOINT_CASHIER, payOrderId, WsPayOrderStateServer.genMsg(payOrderId, state)));
+        } catch (Exception e) {
+            log.error("订单状态变更推送异常, payOrderId={}", payOrderId, e);
+        }
+    }
+
+    /** 订单到期关闭， 推送到收银台页面 （批量更新时部分订单可能已支付， 仅推送实际关闭的订单） **/
+    public void pushOrderClosed(List<String> payOrderIdList){
+
+        try {
+            Map<String, String> msgMap = new HashMap<>();
+            for (PayOrder payOrder : payOrderService.listByIds(payOrderIdList)) {
+                if(payOrder.getState() == PayOrder.STATE_CLOSED){
+                    msgMap.put(payOrder.getPayOrderId(), WsPayOrderStateServer.genMsg(payOrder.getPayOrderId(), PayOrder.STATE_CLOSED));
+                }
+            }
+
+            if(!msgMap.isEmpty()){
+                mqSender.send(PayOrderWsPushMQ.build(PayOrderWsPushMQ.ENDPOINT_CASHIER, msgMap));
+            }
+        } catch (Exception e) {
+            log.error("订单关闭推送异常", e);
+        }
     }
 
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.service;
+
+import cn.hutool.crypto.SecureUtil;
+import com.jeequan.jeepay.core.exception.BizException;
+import com.jeequan.jeepay.core.utils.JeepayKit;
+import com.jeequan.jeepay.pay.util.CodeImgUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+* 二维码图片服务
+* 已生成的png图片按 (内容, 宽, 高) 缓存， 按LRU淘汰， 并限制缓存总字节数；
+* 同时限制图片尺寸及并发生成数量， 避免二维码请求大量占用CPU。
+*/
+@Slf4j
+@Service
+public class QrCodeImgService {
+
+    /** 图片尺寸范围 **/
+    public static final int MIN_SIZE = 50;
+    public static final int MAX_SIZE = 1280;
+
+    /** 缓存最大条数 / 最大总字节数 **/
+    private static final int CACHE_MAX_COUNT = 2000;
+    private static final long CACHE_MAX_BYTES = 32 * 1024 * 1024L;
+
+    /** 同时生成图片的最大数量 **/
+    private static final Semaphore RENDER_PERMITS = new Semaphore(Math.max(Runtime.getRuntime().availableProcessors(), 2));
+
+    /** 等待生成许可的最长时间(秒) **/
+    private static final int RENDER_WAIT_SECONDS = 5;
+
+    /** <缓存key, 图片>  按访问顺序排列的LRU缓存 **/
+    private final LinkedHashMap<String, QrCodeImg> cacheMap = new LinkedHashMap<>(256, 0.75f, true);
+    private long cacheBytes = 0;
+
+    /**
+     * 获取二维码图片
+     * @param aesStr 加密后的二维码内容 （加密结果与内容一一对应， 命中缓存时无需解密）
+     */
+    public QrCodeImg getQrCodeImg(String aesStr, int width, int height) throws Exception {
+
+        width = clampSize(width);
+        height = clampSize(height);
+
+        String cacheKey = width + "_" + height + "_" + aesStr;
+
+        QrCodeImg img = getCache(cacheKey);
+        if(img != null){
+            return img;
+        }
+
+        if(!RENDER_PERMITS.tryAcquire(RENDER_WAIT_SECONDS, TimeUnit.SECONDS)){
+            throw new BizException("系统繁忙，请稍后再试");
+        }
+
+        try {
+            // 等待许可期间其他线程可能已生成
+            img = getCache(cacheKey);
+            if(img != null){
+                return img;
+            }
+
+            byte[] bytes = CodeImgUtil.genQrCodePng(JeepayKit.aesDecode(aesStr), width, height);
+            img = new QrCodeImg(bytes, "\"" + SecureUtil.md5().digestHex(bytes) + "\"");
+            putCache(cacheKey, img);
+            return img;
+
+        } finally {
+            RENDER_PERMITS.release();
+        }
+    }
+
+    private static int clampSize(int size){
+        return Math.min(Math.max(size, MIN_SIZE), MAX_SIZE);
+    }
+
+    private synchronized QrCodeImg getCache(String cacheKey){
+        return cacheMap.get(cacheKey);
+    }
+
+    private synchronized void putCache(String cacheKey, QrCodeImg img){
+
+        QrCodeImg old = cacheMap.put(cacheKey, img);
+        if(old != null){
+            cacheBytes -= old.getBytes().length;
+        }
+        cacheBytes += img.getBytes().length;
+
+        // 超出容量， 淘汰最久未访问的图片
+        Iterator<Map.Entry<String, QrCodeImg>> iterator = cacheMap.entrySet().iterator();
+        while((cacheMap.size() > CACHE_MAX_COUNT || cacheBytes > CACHE_MAX_BYTES) && iterator.hasNext()){
+            cacheBytes -= iterator.next().getValue().getBytes().length;
+            iterator.remove();
+        }
+    }
+
+    /** 二维码图片 **/
+    @Getter
+    @AllArgsConstructor
+    public static class QrCodeImg {
+
+        /** png字节 **/
+        private final byte[] bytes;
+
+        /** 强校验ETag **/
+        private final String etag;
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.service;
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.IdUtil;
+import com.jeequan.jeepay.core.cache.RedisUtil;
+import com.jeequan.jeepay.core.constants.CS;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+* 定时任务租约服务
+* 多节点部署时， 每个定时任务仅由持有租约的节点执行。
+* 持有者在后台定期续约， 节点宕机后租约过期， 由其他节点在下一次调度时接管。
+*/
+@Slf4j
+@Service
+public class TaskLeaseService {
+
+    /** 租约有效期 (秒)， 需大于定时任务的调度间隔 **/
+    private static final long LEASE_TIME = 90;
+
+    /** 续约间隔 (秒) **/
+    private static final long RENEW_INTERVAL = 20;
+
+    /** 当前节点标识 **/
+    private final String nodeId = NetUtil.getLocalhostStr() + "_" + IdUtil.fastSimpleUUID();
+
+    /** 当前节点持有租约的任务集合 **/
+    private final Set<String> heldTaskSet = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService renewExecutor;
+
+    @PostConstruct
+    public void init(){
+        renewExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("task-lease-renew-", true));
+        renewExecutor.scheduleWithFixedDelay(this::renewAll, RENEW_INTERVAL, RENEW_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 尝试获取任务租约， 返回当前节点是否应执行该任务
+     * 注意： redis异常时返回true, 降级为本节点直接执行 (与未启用租约时的行为一致)
+     **/
+    public boolean tryLease(String taskName){
+
+        String cacheKey = CS.getCacheKeyTaskLease(taskName);
+        try {
+            if(RedisUtil.setIfAbsent(cacheKey, nodeId, LEASE_TIME) || RedisUtil.compareAndExpire(cacheKey, nodeId, LEASE_TIME)){
+                if(heldTaskSet.add(taskName)){
+                    log.info("获取定时任务租约成功, task={}, nodeId={}", taskName, nodeId);
+                }
+                return true;
+            }
+
+            heldTaskSet.remove(taskName);
+            return false;
+
+        } catch (Exception e) {
+            log.error("获取定时任务租约异常, 本节点直接执行, task={}", taskName, e);
+            return true;
+        }
+    }
+
+    /** 续约当前节点持有的全部租约 **/
+    private void renewAll(){
+
+        for (String taskName : heldTaskSet) {
+            try {
+                if(!RedisUtil.compareAndExpire(CS.getCacheKeyTaskLease(taskName), nodeId, LEASE_TIME)){
+                    heldTaskSet.remove(taskName);
+                    log.warn("定时任务租约已丢失, task={}, nodeId={}", taskName, nodeId);
+                }
+            } catch (Exception e) {
+                log.error("定时任务租约续约异常, task={}", taskName, e);
+            }
+        }
+    }
+
+    /** 停机时主动释放租约， 以便其他节点尽快接管 **/
+    @PreDestroy
+    public void destroy(){
+
+        renewExecutor.shutdownNow();
+
+        for (String taskName : heldTaskSet) {
+            try {
+                RedisUtil.compareAndDel(CS.getCacheKeyTaskLease(taskName), nodeId);
+            } catch (Exception e) {
+                log.error("释放定时任务租约异常, task={}", taskName, e);
+            }
+        }
+        heldTaskSet.clear();
+    }
+
+}
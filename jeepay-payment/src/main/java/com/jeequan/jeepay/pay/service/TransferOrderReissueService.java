@@ -17,7 +17,6 @@ package com.jeequan.jeepay.pay.service;
 
 import com.jeequan.jeepay.core.entity.TransferOrder;
 import com.jeequan.jeepay.core.exception.BizException;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.pay.channel.ITransferService;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
@@ -41,6 +40,7 @@ public class TransferOrderReissueService {
     @Autowired private ConfigContextQueryService configContextQueryService;
     @Autowired private TransferOrderService transferOrderService;
     @Autowired private PayMchNotifyService payMchNotifyService;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
 
     /** 处理转账订单 **/
@@ -51,7 +51,7 @@ public class TransferOrderReissueService {
             String transferId = transferOrder.getTransferId();
 
             // 查询转账接口是否存在
-            ITransferService transferService = SpringBeansUtil.getBean(transferOrder.getIfCode() + "TransferService", ITransferService.class);
+            ITransferService transferService = channelServiceRegistry.getService(transferOrder.getIfCode(), ITransferService.class);
 
             // 支付通道转账接口实现不存在
             if(transferService == null){
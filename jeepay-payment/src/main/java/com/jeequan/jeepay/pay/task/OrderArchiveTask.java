@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.task;
+
+import cn.hutool.core.date.DateUtil;
+import com.jeequan.jeepay.pay.config.SystemYmlConfig;
+import com.jeequan.jeepay.pay.service.TaskLeaseService;
+import com.jeequan.jeepay.service.impl.OrderArchiveService;
+import com.jeequan.jeepay.service.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/*
+* 订单归档定时任务
+* 将创建时间超出保留天数且不会再变更的订单 （可退款的订单需超出退款期限）， 分批移至月度归档表； 批次间按配置间隔暂停， 避免影响线上业务。
+* 开启订单分库时逐个分库归档， 全部分库完成后才记录截止时间。
+*/
+@Slf4j
+@Component
+public class OrderArchiveTask {
+
+    private static final String TASK_NAME = "OrderArchiveTask";
+
+    /** 默认每批次条数 / 批次间隔(毫秒) **/
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_BATCH_INTERVAL_MS = 200;
+
+    /** 默认可退款订单的保留天数 （渠道退款期限一般不超过一年） **/
+    private static final int DEFAULT_REFUNDABLE_KEEP_DAYS = 365;
+
+    /** 单次执行的最长时间(毫秒)， 超出后等待下一次调度继续处理 **/
+    private static final long MAX_RUN_MILLIS = 2 * 60 * 60 * 1000L;
+
+    @Autowired private OrderArchiveService orderArchiveService;
+    @Autowired private TaskLeaseService taskLeaseService;
+    @Autowired private SystemYmlConfig systemYmlConfig;
+    @Autowired private ShardRouter shardRouter;
+
+    @Scheduled(cron="0 0 3 * * ?") // 每天凌晨3:00执行
+    public void start() {
+
+        Integer keepDays = systemYmlConfig.getOrderArchiveKeepDays();
+        if(keepDays == null || keepDays <= 0){ // 未开启归档
+            return ;
+        }
+
+        if(!taskLeaseService.tryLease(TASK_NAME)){ // 其他节点持有该任务的租约
+            return ;
+        }
+
+        int batchSize = systemYmlConfig.getOrderArchiveBatchSize() == null ? DEFAULT_BATCH_SIZE : systemYmlConfig.getOrderArchiveBatchSize();
+        int batchIntervalMs = systemYmlConfig.getOrderArchiveBatchIntervalMs() == null ? DEFAULT_BATCH_INTERVAL_MS : systemYmlConfig.getOrderArchiveBatchIntervalMs();
+
+        int refundableKeepDays = systemYmlConfig.getOrderArchiveRefundableKeepDays() == null ? DEFAULT_REFUNDABLE_KEEP_DAYS : systemYmlConfig.getOrderArchiveRefundableKeepDays();
+
+        Date cutoff = DateUtil.offsetDay(DateUtil.beginOfDay(new Date()), -keepDays).toJdkDate();
+        Date refundableCutoff = DateUtil.offsetDay(DateUtil.beginOfDay(new Date()), -Math.max(keepDays, refundableKeepDays)).toJdkDate();
+        long deadline = System.currentTimeMillis() + MAX_RUN_MILLIS;
+
+        for (OrderArchiveService.ArchiveTable table : OrderArchiveService.ARCHIVE_TABLES) {
+
+            long archivedCount = 0;
+            boolean finished = true;
+            try {
+                for (int shard = 0; shard < shardRouter.getShardCount() && finished; shard++) {
+
+                    int currentShard = shard;
+                    finished = false;
+                    while(System.currentTimeMillis() < deadline && taskLeaseService.tryLease(TASK_NAME)){
+
+                        int count = shardRouter.execute(currentShard, () -> orderArchiveService.archiveBatch(table, cutoff, refundableCutoff, batchSize));
+                        archivedCount += count;
+                        if(count < batchSize){
+                            finished = true;
+                            break;
+                        }
+
+                        Thread.sleep(batchIntervalMs);
+                    }
+                }
+
+                // 本轮已全部归档， 记录截止时间 （此后查询该时间之前的数据将路由至归档表）
+                if(finished){
+                    orderArchiveService.finishArchive(table, cutoff, archivedCount);
+                }
+                log.info("订单归档, table={}, cutoff={}, count={}, finished={}", table.getSourceTable(), DateUtil.formatDateTime(cutoff), archivedCount, finished);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ;
+            } catch (Exception e) {
+                log.error("订单归档异常, table={}", table.getSourceTable(), e);
+            }
+
+            if(!finished){ // 超时或租约丢失， 后续表在下一次调度时处理
+                return ;
+            }
+        }
+    }
+
+}
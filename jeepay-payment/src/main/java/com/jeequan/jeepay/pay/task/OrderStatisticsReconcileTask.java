@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.task;
+
+import cn.hutool.core.date.DateUtil;
+import com.jeequan.jeepay.pay.config.SystemYmlConfig;
+import com.jeequan.jeepay.pay.service.TaskLeaseService;
+import com.jeequan.jeepay.service.impl.OrderStatisticsDayService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/*
+* 订单日统计对账定时任务
+* 按订单表重新统计最近N天 （不含当天） 的数据， 修正实时累加时丢失的数据 （如进程异常退出） 及其后发生的退款。
+* 开启订单归档时仅统计热表保留天数内的数据， 已归档的日期不再重新统计 （否则已移至归档表的订单将丢失）。
+*/
+@Slf4j
+@Component
+public class OrderStatisticsReconcileTask {
+
+    /** 重新统计的天数 **/
+    private static final int RECONCILE_DAYS = 7;
+
+    @Autowired private OrderStatisticsDayService orderStatisticsDayService;
+    @Autowired private TaskLeaseService taskLeaseService;
+    @Autowired private SystemYmlConfig systemYmlConfig;
+
+    @Scheduled(cron="0 30 1 * * ?") // 每天凌晨1:30执行
+    public void start() {
+
+        if(!taskLeaseService.tryLease("OrderStatisticsReconcileTask")){ // 其他节点持有该任务的租约
+            return ;
+        }
+
+        Date today = DateUtil.beginOfDay(new Date()).toJdkDate();
+        Date dateStart = DateUtil.offsetDay(today, -RECONCILE_DAYS).toJdkDate();
+
+        // 开启归档时， 早于归档截止日期的数据可能已移至归档表
+        Integer keepDays = systemYmlConfig.getOrderArchiveKeepDays();
+        if(keepDays != null && keepDays > 0){
+            Date archiveCutoff = DateUtil.offsetDay(today, -keepDays).toJdkDate();
+            if(dateStart.before(archiveCutoff)){
+                dateStart = archiveCutoff;
+            }
+        }
+
+        // 逐天处理， 避免单个事务过大
+        for (Date dayStart = dateStart; dayStart.before(today); dayStart = DateUtil.offsetDay(dayStart, 1).toJdkDate()) {
+            Date dayEnd = DateUtil.offsetDay(dayStart, 1).toJdkDate();
+            try {
+                int count = orderStatisticsDayService.reconcile(dayStart, dayEnd);
+                log.info("订单日统计对账完成, date={}, count={}", DateUtil.formatDate(dayStart), count);
+            } catch (Exception e) {
+                log.error("订单日统计对账异常, date={}", DateUtil.formatDate(dayStart), e);
+            }
+        }
+    }
+
+}
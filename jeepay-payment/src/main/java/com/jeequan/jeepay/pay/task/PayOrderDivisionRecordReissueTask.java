@@ -21,13 +21,15 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.entity.PayOrderDivisionRecord;
-import com.jeequan.jeepay.core.utils.SpringBeansUtil;
 import com.jeequan.jeepay.pay.channel.IDivisionService;
 import com.jeequan.jeepay.pay.model.MchAppConfigContext;
 import com.jeequan.jeepay.pay.rqrs.msg.ChannelRetMsg;
+import com.jeequan.jeepay.pay.service.ChannelServiceRegistry;
 import com.jeequan.jeepay.pay.service.ConfigContextQueryService;
+import com.jeequan.jeepay.pay.service.TaskLeaseService;
 import com.jeequan.jeepay.service.impl.PayOrderDivisionRecordService;
 import com.jeequan.jeepay.service.impl.PayOrderService;
+import com.jeequan.jeepay.service.shard.ShardRouter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -39,6 +41,7 @@ import java.util.List;
 
 /*
 * 分账补单定时任务
+* 开启订单分库时逐个分库查询待补单的批次， 批次内的记录及支付订单与批次位于同一分库。
 *
 * @author terrfly
 * @site https://www.jeequan.com
@@ -53,10 +56,17 @@ public class PayOrderDivisionRecordReissueTask {
     @Autowired private PayOrderDivisionRecordService payOrderDivisionRecordService;
     @Autowired private ConfigContextQueryService configContextQueryService;
     @Autowired private PayOrderService payOrderService;
+    @Autowired private TaskLeaseService taskLeaseService;
+    @Autowired private ShardRouter shardRouter;
+    @Autowired private ChannelServiceRegistry channelServiceRegistry;
 
     @Scheduled(cron="0 0/1 * * * ?") // 每分钟执行一次
     public void start() {
 
+        if(!taskLeaseService.tryLease("PayOrderDivisionRecordReissueTask")){ // 其他节点持有该任务的租约
+            return ;
+        }
+
         log.info("处理分账补单任务 开始");
 
         //当前时间 减去5分钟。
@@ -66,12 +76,22 @@ public class PayOrderDivisionRecordReissueTask {
         LambdaQueryWrapper<PayOrderDivisionRecord> lambdaQueryWrapper = PayOrderDivisionRecord.gw().
                 eq(PayOrderDivisionRecord::getState, PayOrderDivisionRecord.STATE_ACCEPT).le(PayOrderDivisionRecord::getCreatedAt, offsetDate);
 
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            processShard(shard, lambdaQueryWrapper);
+        }
+    }
+
+    /** 处理单个分库的补单批次 （仅批次查询限定在该分库， 其他查询按订单号自动路由） **/
+    private void processShard(int shard, LambdaQueryWrapper<PayOrderDivisionRecord> lambdaQueryWrapper){
+
         int currentPageIndex = 1; //当前页码
 
         while(true){
 
             try {
-                IPage<PayOrderDivisionRecord> pageRecordList = payOrderDivisionRecordService.getBaseMapper().distinctBatchOrderIdList(new Page(currentPageIndex, QUERY_PAGE_SIZE), lambdaQueryWrapper);
+                int pageIndex = currentPageIndex;
+                IPage<PayOrderDivisionRecord> pageRecordList = shardRouter.execute(shard,
+                        () -> payOrderDivisionRecordService.getBaseMapper().distinctBatchOrderIdList(new Page(pageIndex, QUERY_PAGE_SIZE), lambdaQueryWrapper));
 
                 log.info("处理分账补单任务, 共计{}条", pageRecordList.getTotal());
 
@@ -103,7 +123,7 @@ public class PayOrderDivisionRecordReissueTask {
                             continue;
                         }
                         // 查询转账接口是否存在
-                        IDivisionService divisionService = SpringBeansUtil.getBean(payOrder.getIfCode() + "DivisionService", IDivisionService.class);
+                        IDivisionService divisionService = channelServiceRegistry.getService(payOrder.getIfCode(), IDivisionService.class);
 
                         if (divisionService == null) {
                             log.error("查询分账接口不存在：{}",  payOrder.getIfCode());
@@ -144,7 +164,7 @@ public class PayOrderDivisionRecordReissueTask {
 
 
             } catch (Exception e) { //出现异常，直接退出，避免死循环。
-                log.error("处理分账补单任务, error", e);
+                log.error("处理分账补单任务, shard={}, error", shard, e);
                 break;
             }
 
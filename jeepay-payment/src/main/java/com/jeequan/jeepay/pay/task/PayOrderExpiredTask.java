@@ -15,6 +15,8 @@
  */
 package com.jeequan.jeepay.pay.task;
 
+import com.jeequan.jeepay.pay.service.PayOrderExpiredService;
+import com.jeequan.jeepay.pay.service.TaskLeaseService;
 import com.jeequan.jeepay.service.impl.PayOrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,12 +35,22 @@ import org.springframework.stereotype.Component;
 public class PayOrderExpiredTask {
 
     @Autowired private PayOrderService payOrderService;
+    @Autowired private PayOrderExpiredService payOrderExpiredService;
+    @Autowired private TaskLeaseService taskLeaseService;
 
     @Scheduled(cron="0 0/1 * * * ?") // 每分钟执行一次
     public void start() {
 
+        if(!taskLeaseService.tryLease("PayOrderExpiredTask")){ // 其他节点持有该任务的租约
+            return ;
+        }
+
+        // 预加载即将失效的订单到时间轮， 到期精确关闭
+        int preloadCount = payOrderExpiredService.preload();
+
+        // 兜底： 关闭已失效但未在时间轮中处理的订单
         int updateCount = payOrderService.updateOrderExpired();
-        log.info("处理订单超时{}条.", updateCount);
+        log.info("预加载即将超时订单{}条, 处理订单超时{}条.", preloadCount, updateCount);
     }
 
 
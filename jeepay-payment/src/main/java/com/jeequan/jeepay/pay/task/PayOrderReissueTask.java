@@ -17,10 +17,9 @@ package com.jeequan.jeepay.pay.task;
 
 import cn.hutool.core.date.DateUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jeequan.jeepay.core.entity.PayOrder;
-import com.jeequan.jeepay.pay.service.ChannelOrderReissueService;
+import com.jeequan.jeepay.pay.service.ChannelOrderReissueDispatchService;
+import com.jeequan.jeepay.pay.service.TaskLeaseService;
 import com.jeequan.jeepay.service.impl.PayOrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +27,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
+import java.util.List;
 
 /*
 * 补单定时任务
@@ -43,36 +43,55 @@ public class PayOrderReissueTask {
     private static final int QUERY_PAGE_SIZE = 100; //每次查询数量
 
     @Autowired private PayOrderService payOrderService;
-    @Autowired private ChannelOrderReissueService channelOrderReissueService;
+    @Autowired private ChannelOrderReissueDispatchService channelOrderReissueDispatchService;
+    @Autowired private TaskLeaseService taskLeaseService;
 
     @Scheduled(cron="0 0/1 * * * ?") // 每分钟执行一次
     public void start() {
 
+        if(!taskLeaseService.tryLease("PayOrderReissueTask")){ // 其他节点持有该任务的租约
+            return ;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int processCount = 0;
+
         //当前时间 减去10分钟。
         Date offsetDate = DateUtil.offsetMinute(new Date(), -10);
 
-        //查询条件： 支付中的订单 & （ 订单创建时间 + 10分钟 >= 当前时间 ）
-        LambdaQueryWrapper<PayOrder> lambdaQueryWrapper = PayOrder.gw().eq(PayOrder::getState, PayOrder.STATE_ING).le(PayOrder::getCreatedAt, offsetDate);
-
-        int currentPageIndex = 1; //当前页码
+        // 按 (created_at, pay_order_id) 游标分页， 避免offset深分页， 以及处理过程中订单状态变更导致的漏查
+        PayOrder lastPayOrder = null;
         while(true){
 
             try {
-                IPage<PayOrder> payOrderIPage = payOrderService.page(new Page(currentPageIndex, QUERY_PAGE_SIZE), lambdaQueryWrapper);
 
-                if(payOrderIPage == null || payOrderIPage.getRecords().isEmpty()){ //本次查询无结果, 不再继续查询;
-                    break;
+                //查询条件： 支付中的订单 & （ 订单创建时间 + 10分钟 >= 当前时间 ）
+                LambdaQueryWrapper<PayOrder> lambdaQueryWrapper = PayOrder.gw().eq(PayOrder::getState, PayOrder.STATE_ING).le(PayOrder::getCreatedAt, offsetDate);
+
+                if(lastPayOrder != null){
+                    Date lastCreatedAt = lastPayOrder.getCreatedAt();
+                    String lastPayOrderId = lastPayOrder.getPayOrderId();
+                    lambdaQueryWrapper.and(wrapper -> wrapper.gt(PayOrder::getCreatedAt, lastCreatedAt)
+                            .or(w -> w.eq(PayOrder::getCreatedAt, lastCreatedAt).gt(PayOrder::getPayOrderId, lastPayOrderId)));
                 }
 
-                for(PayOrder payOrder: payOrderIPage.getRecords()){
-                    channelOrderReissueService.processPayOrder(payOrder);
+                lambdaQueryWrapper.orderByAsc(PayOrder::getCreatedAt).orderByAsc(PayOrder::getPayOrderId).last("limit " + QUERY_PAGE_SIZE);
+
+                List<PayOrder> payOrderList = payOrderService.list(lambdaQueryWrapper);
+
+                if(payOrderList.isEmpty()){ //本次查询无结果, 不再继续查询;
+                    break;
                 }
 
-                //已经到达页码最大量，无需再次查询
-                if(payOrderIPage.getPages() <= currentPageIndex){
+                // 按支付接口并行查询上游， 本页全部完成后再查询下一页
+                channelOrderReissueDispatchService.processPayOrderList(payOrderList);
+                processCount += payOrderList.size();
+
+                //已经到达最后一页，无需再次查询
+                if(payOrderList.size() < QUERY_PAGE_SIZE){
                     break;
                 }
-                currentPageIndex++;
+                lastPayOrder = payOrderList.get(payOrderList.size() - 1);
 
 
             } catch (Exception e) { //出现异常，直接退出，避免死循环。
@@ -81,6 +100,10 @@ public class PayOrderReissueTask {
             }
 
         }
+
+        long costMs = System.currentTimeMillis() - startTime;
+        channelOrderReissueDispatchService.recordRound(processCount, costMs);
+        log.info("处理补单任务, 本次共{}条, 耗时{}ms, 统计信息: {}", processCount, costMs, channelOrderReissueDispatchService.getStats());
     }
 
 
@@ -15,6 +15,7 @@
  */
 package com.jeequan.jeepay.pay.task;
 
+import com.jeequan.jeepay.pay.service.TaskLeaseService;
 import com.jeequan.jeepay.service.impl.PayOrderService;
 import com.jeequan.jeepay.service.impl.RefundOrderService;
 import lombok.extern.slf4j.Slf4j;
@@ -34,10 +35,15 @@ import org.springframework.stereotype.Component;
 public class RefundOrderExpiredTask {
 
     @Autowired private RefundOrderService refundOrderService;
+    @Autowired private TaskLeaseService taskLeaseService;
 
     @Scheduled(cron="0 0/1 * * * ?") // 每分钟执行一次
     public void start() {
 
+        if(!taskLeaseService.tryLease("RefundOrderExpiredTask")){ // 其他节点持有该任务的租约
+            return ;
+        }
+
         int updateCount = refundOrderService.updateOrderExpired();
         log.info("处理退款订单超时{}条.", updateCount);
     }
@@ -21,6 +21,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jeequan.jeepay.core.entity.TransferOrder;
 import com.jeequan.jeepay.pay.service.TransferOrderReissueService;
+import com.jeequan.jeepay.pay.service.TaskLeaseService;
 import com.jeequan.jeepay.service.impl.TransferOrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,10 +45,15 @@ public class TransferOrderReissueTask {
 
     @Autowired private TransferOrderService transferOrderService;
     @Autowired private TransferOrderReissueService transferOrderReissueService;
+    @Autowired private TaskLeaseService taskLeaseService;
 
     @Scheduled(cron="0 0/1 * * * ?") // 每分钟执行一次
     public void start() {
 
+        if(!taskLeaseService.tryLease("TransferOrderReissueTask")){ // 其他节点持有该任务的租约
+            return ;
+        }
+
         //查询条件：
         LambdaQueryWrapper<TransferOrder> lambdaQueryWrapper = TransferOrder.gw()
                 .eq(TransferOrder::getState, TransferOrder.STATE_ING) // 转账中
@@ -31,6 +31,7 @@ import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -297,6 +298,13 @@ public class CodeImgUtil {
 		//MatrixToImageWriter.writeToStream(bitMatrix, format, stream);// 输出图像
 	}
 
+	/** 生成二维码png图片的字节数组 **/
+	public static byte[] genQrCodePng(String info, int width, int height) throws WriterException, IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(4096);
+		writeQrCode(stream, info, width, height);
+		return stream.toByteArray();
+	}
+
 
 	/**
      * 解析图像
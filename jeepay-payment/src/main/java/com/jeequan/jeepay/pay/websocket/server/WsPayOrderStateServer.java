@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.pay.websocket.server;
+
+import com.alibaba.fastjson.JSONObject;
+import com.jeequan.jeepay.core.entity.PayOrder;
+import com.jeequan.jeepay.core.utils.JeepayKit;
+import com.jeequan.jeepay.core.utils.SpringBeansUtil;
+import com.jeequan.jeepay.core.ws.WsPayOrderSessionRegistry;
+import com.jeequan.jeepay.service.impl.PayOrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.websocket.*;
+import javax.websocket.server.PathParam;
+import javax.websocket.server.ServerEndpoint;
+import java.io.IOException;
+
+/*
+ * 收银台订单状态推送 WebSocket服务类
+ * /api/cashier/ws/{收银台token}/{客户端自定义ID}
+ * 订单进入终态（成功、失败、关闭）时推送一次订单状态， 随后关闭连接， 收银台页面无需轮询订单状态。
+ * 跨节点推送： 调用方发送PayOrderWsPushMQ广播消息(ENDPOINT_CASHIER)， 各节点收到后推送到本节点持有的连接。
+ */
+@Slf4j
+@ServerEndpoint("/api/cashier/ws/{token}/{cid}")
+@Component
+public class WsPayOrderStateServer {
+
+    /** 每个订单最多的监听客户端数量 **/
+    private static final int MAX_SESSION_PER_ORDER = 10;
+
+    /** 连接注册表 （推送一次后关闭连接） **/
+    private static final WsPayOrderSessionRegistry registry = new WsPayOrderSessionRegistry("ws-cashier", MAX_SESSION_PER_ORDER, true);
+
+    //支付订单号
+    private String payOrderId;
+
+    /**
+     * 连接建立成功调用的方法
+     */
+    @OnOpen
+    public void onOpen(Session session, @PathParam("token") String token, @PathParam("cid") String cid) throws IOException {
+
+        try {
+            this.payOrderId = JeepayKit.aesDecode(token); //解析token
+        } catch (Exception e) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "token error"));
+            return ;
+        }
+
+        if(!registry.register(payOrderId, cid, session)){
+            return ;
+        }
+
+        // 连接建立前订单可能已进入终态 （需读取最新状态， 不可使用缓存）
+        PayOrder payOrder = SpringBeansUtil.getBean(PayOrderService.class).getById(payOrderId);
+        if(payOrder != null && isFinalState(payOrder.getState())){
+            sendMsgByOrderId(payOrderId, genMsg(payOrderId, payOrder.getState()));
+        }
+    }
+
+    /**
+     * 连接关闭调用的方法
+     */
+    @OnClose
+    public void onClose(Session session) {
+        registry.unregister(session);
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error) {
+        log.error("ws发生错误, payOrderId={}", payOrderId, error);
+    }
+
+    /** 订单是否为终态 **/
+    public static boolean isFinalState(Byte state){
+        return state != null && state != PayOrder.STATE_INIT && state != PayOrder.STATE_ING;
+    }
+
+    /** 推送的消息内容 **/
+    public static String genMsg(String payOrderId, Byte state){
+        JSONObject msg = new JSONObject();
+        msg.put("payOrderId", payOrderId);
+        msg.put("state", state);
+        return msg.toJSONString();
+    }
+
+    /**
+     * 根据订单ID推送消息 （仅推送到本节点持有的连接）， 发送完成后关闭连接， 每个客户端仅推送一次
+     */
+    public static void sendMsgByOrderId(String payOrderId, String msg) {
+        registry.sendMsgByOrderId(payOrderId, msg);
+    }
+
+    public static int getOnlineClientSize() {
+        return registry.getOnlineClientSize();
+    }
+
+}
@@ -15,28 +15,63 @@
  */
 package com.jeequan.jeepay.service.impl;
 
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.jeequan.jeepay.core.entity.MchNotifyRecord;
+import com.jeequan.jeepay.core.utils.SeqKit;
 import com.jeequan.jeepay.service.mapper.MchNotifyRecordMapper;
-import org.apache.ibatis.annotations.Param;
+import com.jeequan.jeepay.service.shard.ShardServiceImpl;
 import org.springframework.stereotype.Service;
 
+import java.io.Serializable;
+import java.util.*;
+
 /**
  * <p>
  * 商户通知表 服务实现类
+ * 通知记录与所属订单位于同一分库 （通知记录ID包含订单的分片号）。
  * </p>
  *
  * @author [mybatis plus generator]
  * @since 2021-04-27
  */
 @Service
-public class MchNotifyRecordService extends ServiceImpl<MchNotifyRecordMapper, MchNotifyRecord> {
+public class MchNotifyRecordService extends ShardServiceImpl<MchNotifyRecordMapper, MchNotifyRecord> {
+
+    /** 列表排序 **/
+    private static final Comparator<MchNotifyRecord> PAGE_ORDER = Comparator.<MchNotifyRecord, Date>comparing(MchNotifyRecord::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(MchNotifyRecord::getNotifyId, Comparator.nullsFirst(Comparator.naturalOrder())).reversed();
+
+    @Override
+    protected int shardOfId(Serializable id) {
+        return shardRouter.shardOfId(Long.parseLong(id.toString()));
+    }
+
+    @Override
+    protected Integer shardOfEntity(MchNotifyRecord entity) {
+        if(entity.getNotifyId() != null){
+            return shardRouter.shardOfId(entity.getNotifyId());
+        }
+        return entity.getOrderId() == null ? null : shardRouter.shardOfOrderId(entity.getOrderId());
+    }
+
+    @Override
+    protected Comparator<MchNotifyRecord> pageOrder() {
+        return PAGE_ORDER;
+    }
+
+    /** 保存通知记录， 未指定ID时按所属订单生成 **/
+    @Override
+    public boolean save(MchNotifyRecord entity) {
+        if(entity.getNotifyId() == null){
+            entity.setNotifyId(SeqKit.genOrderRecordId(entity.getOrderId()));
+        }
+        return super.save(entity);
+    }
 
     /** 根据订单号和类型查询 */
     public MchNotifyRecord findByOrderAndType(String orderId, Byte orderType){
-        return getOne(
+        return shardRouter.execute(shardRouter.shardOfOrderId(orderId), () -> getOne(
                 MchNotifyRecord.gw().eq(MchNotifyRecord::getOrderId, orderId).eq(MchNotifyRecord::getOrderType, orderType)
-        );
+        ));
     }
 
     /** 查询支付订单 */
@@ -55,7 +90,33 @@ public class MchNotifyRecordService extends ServiceImpl<MchNotifyRecordMapper, M
     }
 
     public Integer updateNotifyResult(Long notifyId, Byte state, String resResult){
-        return baseMapper.updateNotifyResult(notifyId, state, resResult);
+        return shardRouter.execute(shardOfId(notifyId), () -> baseMapper.updateNotifyResult(notifyId, state, resResult));
+    }
+
+    /** 批量更新通知结果 （同一批次中notifyId不可重复） **/
+    public Integer updateNotifyResultBatch(List<MchNotifyRecord> recordList){
+        if(recordList == null || recordList.isEmpty()){
+            return 0;
+        }
+
+        if(shardRouter.inShard()){
+            return baseMapper.updateNotifyResultBatch(recordList);
+        }
+
+        // 按分库分组更新
+        Map<Integer, List<MchNotifyRecord>> shardRecordMap = new TreeMap<>();
+        recordList.forEach(record -> shardRecordMap.computeIfAbsent(shardOfId(record.getNotifyId()), k -> new ArrayList<>()).add(record));
+
+        int result = 0;
+        for (Map.Entry<Integer, List<MchNotifyRecord>> entry : shardRecordMap.entrySet()) {
+            result += shardRouter.execute(entry.getKey(), () -> baseMapper.updateNotifyResultBatch(entry.getValue()));
+        }
+        return result;
+    }
+
+    /** 更新为通知中， 并增加最大通知次数 （重发通知） **/
+    public Integer updateIngAndAddNotifyCountLimit(Long notifyId){
+        return shardRouter.execute(shardOfId(notifyId), () -> baseMapper.updateIngAndAddNotifyCountLimit(notifyId));
     }
 
 
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.impl;
+
+import com.jeequan.jeepay.core.entity.MchNotifyRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+* 商户通知结果 合并写入服务 (write-behind)
+* 通知结果及支付订单的[已通知]状态先进入缓冲队列， 每隔N毫秒或满N条时合并为批量update语句写入DB；
+* 返回的future在数据写入DB后结束， 停机时会将缓冲区的数据全部写入后再退出。
+*/
+@Slf4j
+@Service
+public class MchNotifyResultWriteService {
+
+    /** 每批次最大写入条数 **/
+    private static final int BATCH_SIZE = 200;
+
+    /** 最长合并等待时间(毫秒) **/
+    private static final long FLUSH_INTERVAL_MS = 5;
+
+    /** 缓冲队列， 超出容量时调用方直接同步写入 **/
+    private final BlockingQueue<WriteItem> bufferQueue = new LinkedBlockingQueue<>(20000);
+
+    private volatile boolean running = true;
+    private Thread flushThread;
+
+    @Autowired private MchNotifyRecordService mchNotifyRecordService;
+    @Autowired private PayOrderService payOrderService;
+
+    @PostConstruct
+    public void init(){
+        flushThread = new Thread(this::flushLoop, "mch-notify-write-behind");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * 提交通知结果
+     * @param notifyId 通知记录ID
+     * @param state 通知状态
+     * @param resResult 响应结果
+     * @param sentPayOrderId 需要更新为[已通知]的支付订单号， 无需更新时传null
+     * @return 数据写入DB后结束的future
+     */
+    public CompletableFuture<Void> submit(Long notifyId, Byte state, String resResult, String sentPayOrderId){
+
+        WriteItem item = new WriteItem(notifyId, state, resResult, sentPayOrderId);
+
+        // 已停机 或 缓冲区已满： 同步写入
+        if(!running || !bufferQueue.offer(item)){
+            writeOne(item);
+        }
+        return item.future;
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        flushThread.join(TimeUnit.SECONDS.toMillis(30));
+
+        // 兜底： 刷新线程未能及时退出时， 由当前线程写入剩余数据
+        List<WriteItem> remainList = new ArrayList<>();
+        bufferQueue.drainTo(remainList);
+        remainList.forEach(this::writeOne);
+    }
+
+
+    private void flushLoop(){
+
+        List<WriteItem> batchList = new ArrayList<>(BATCH_SIZE);
+        while(running || !bufferQueue.isEmpty()){
+            try {
+                WriteItem first = bufferQueue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null){
+                    continue;
+                }
+                batchList.add(first);
+
+                // 在合并等待时间内尽量凑满一批
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+                while(batchList.size() < BATCH_SIZE){
+                    long waitNanos = deadline - System.nanoTime();
+                    WriteItem item = waitNanos > 0 ? bufferQueue.poll(waitNanos, TimeUnit.NANOSECONDS) : bufferQueue.poll();
+                    if(item == null){
+                        break;
+                    }
+                    batchList.add(item);
+                }
+
+                flush(batchList);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("商户通知结果批量写入异常", e);
+            } finally {
+                batchList.clear();
+            }
+        }
+    }
+
+    /** 批量写入， 失败时逐条写入 **/
+    private void flush(List<WriteItem> batchList){
+
+        try {
+            Set<String> sentPayOrderIdSet = new HashSet<>();
+            batchList.forEach(item -> {
+                if(item.sentPayOrderId != null){
+                    sentPayOrderIdSet.add(item.sentPayOrderId);
+                }
+            });
+            payOrderService.updateNotifySent(sentPayOrderIdSet);
+
+            // 同一通知记录在一条语句中只能出现一次 （notify_count需逐次累加）， 重复时拆分为多条语句
+            List<WriteItem> subList = new ArrayList<>(batchList.size());
+            Set<Long> notifyIdSet = new HashSet<>();
+            for (WriteItem item : batchList) {
+                if(!notifyIdSet.add(item.record.getNotifyId())){
+                    writeBatch(subList);
+                    subList.clear();
+                    notifyIdSet.clear();
+                    notifyIdSet.add(item.record.getNotifyId());
+                }
+                subList.add(item);
+            }
+            writeBatch(subList);
+
+        } catch (Exception e) {
+            log.error("商户通知结果批量写入异常， 转为逐条写入, size={}", batchList.size(), e);
+            batchList.stream().filter(item -> !item.future.isDone()).forEach(this::writeOne);
+        }
+    }
+
+    private void writeBatch(List<WriteItem> itemList){
+
+        List<MchNotifyRecord> recordList = new ArrayList<>(itemList.size());
+        itemList.forEach(item -> recordList.add(item.record));
+        mchNotifyRecordService.updateNotifyResultBatch(recordList);
+        itemList.forEach(item -> item.future.complete(null));
+    }
+
+    private void writeOne(WriteItem item){
+
+        try {
+            if(item.sentPayOrderId != null){
+                payOrderService.updateNotifySent(item.sentPayOrderId);
+            }
+            MchNotifyRecord record = item.record;
+            mchNotifyRecordService.updateNotifyResult(record.getNotifyId(), record.getState(), record.getResResult());
+            item.future.complete(null);
+        } catch (Exception e) {
+            log.error("商户通知结果写入异常, notifyId={}", item.record.getNotifyId(), e);
+            item.future.completeExceptionally(e);
+        }
+    }
+
+    /** 待写入数据 **/
+    private static class WriteItem {
+
+        private final MchNotifyRecord record = new MchNotifyRecord();
+        private final String sentPayOrderId;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        WriteItem(Long notifyId, Byte state, String resResult, String sentPayOrderId){
+            this.record.setNotifyId(notifyId);
+            this.record.setState(state);
+            this.record.setResResult(resResult);
+            this.sentPayOrderId = sentPayOrderId;
+        }
+    }
+
+}
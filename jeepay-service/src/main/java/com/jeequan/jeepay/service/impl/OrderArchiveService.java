@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.impl;
+
+import cn.hutool.core.date.DateUtil;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.jeequan.jeepay.core.entity.OrderArchive;
+import com.jeequan.jeepay.service.mapper.OrderArchiveMapper;
+import com.jeequan.jeepay.service.shard.ShardRouter;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+* 订单归档服务 （冷热数据分离）
+* 创建时间早于截止时间且不会再变更的数据， 按创建月份分批移至月度归档表 [源表名_archive_yyyyMM]， 使热表保持较小的数据量；
+* 仍可退款的订单 (支付成功、部分退款) 需超出渠道的退款期限后才归档， 热表中查询不到订单时， 退款及商户订单号重复校验需同时查询归档表。
+* 退款订单、通知记录、分账记录仍保留在热表 （相关查询未区分归档表）。
+* 每个源表完成一轮归档后记录截止时间， 查询时据此判断数据位于热表还是归档表。
+* 开启订单分库时各分库分别归档 (调用方指定分库)， 归档表在所有分库中创建， 归档信息记录在默认库。
+*/
+@Slf4j
+@Service
+public class OrderArchiveService extends ServiceImpl<OrderArchiveMapper, OrderArchive> {
+
+    /**
+     * 归档的源表及归档条件 （排除等待分账及分账处理中的订单）
+     * 支付失败、已撤销、订单关闭、全额退款的订单不会再变更； 支付成功、部分退款的订单超出退款期限后归档
+     **/
+    public static final ArchiveTable PAY_ORDER = new ArchiveTable("t_pay_order", "pay_order_id",
+            "division_state in (0, 3) and (state in (3, 4, 6) or (state = 5 and refund_state = 2))",
+            "division_state in (0, 3) and state in (2, 5)");
+
+    public static final List<ArchiveTable> ARCHIVE_TABLES = Collections.singletonList(PAY_ORDER);
+
+    /** 归档表后缀 **/
+    private static final String ARCHIVE_TABLE_INFIX = "_archive_";
+
+    /** 归档表列表、归档截止时间的缓存时长 (毫秒) **/
+    private static final long META_CACHE_MS = 5 * 60 * 1000L;
+
+    /** <源表, 已存在的归档表 (按月份倒序)> **/
+    private final Map<String, List<String>> archiveTablesCache = new ConcurrentHashMap<>();
+
+    /** <源表, 归档截止时间> **/
+    private final Map<String, Date> archiveCutoffCache = new ConcurrentHashMap<>();
+
+    private volatile long metaCacheExpireAt = 0;
+
+    /** 本节点已创建的归档表 **/
+    private final Set<String> createdArchiveTableSet = ConcurrentHashMap.newKeySet();
+
+    /** <归档表, 复制的列 (源表的全部列)> **/
+    private final Map<String, List<String>> copyColumnsCache = new ConcurrentHashMap<>();
+
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private ShardRouter shardRouter;
+
+    /** 归档表名称 **/
+    public static String getArchiveTableName(String sourceTable, Date createdAt){
+        return sourceTable + ARCHIVE_TABLE_INFIX + DateUtil.format(createdAt, "yyyyMM");
+    }
+
+    /**
+     * 归档一批数据
+     * @param cutoff 截止时间， 仅归档创建时间早于该时间的终态数据
+     * @param refundableCutoff 可退款数据的截止时间 （超出渠道退款期限）， 不晚于cutoff
+     * @param batchSize 每批条数
+     * @return 本批次实际归档的条数， 小于batchSize时表示已无待归档数据 （或其余数据已不满足归档条件）
+     */
+    public int archiveBatch(ArchiveTable table, Date cutoff, Date refundableCutoff, int batchSize){
+
+        List<Map> keyList = baseMapper.selectArchivableKeys(table.getSourceTable(), table.getPkColumn(),
+                table.getArchiveCondition(), table.getRefundableCondition(), cutoff, refundableCutoff, batchSize);
+        if(keyList.isEmpty()){
+            return 0;
+        }
+
+        // 按创建月份分组
+        Map<String, List<Object>> monthKeyMap = new TreeMap<>();
+        for (Map key : keyList) {
+            String archiveTable = getArchiveTableName(table.getSourceTable(), (Date) key.get("createdAt"));
+            monthKeyMap.computeIfAbsent(archiveTable, k -> new ArrayList<>()).add(key.get("pk"));
+        }
+
+        int result = 0;
+        for (Map.Entry<String, List<Object>> entry : monthKeyMap.entrySet()) {
+
+            // 建表语句会隐式提交事务， 需在事务外执行
+            createArchiveTable(entry.getKey(), table.getSourceTable());
+            List<String> columnList = getCopyColumns(entry.getKey(), table.getSourceTable());
+
+            // 锁定仍满足归档条件的数据， 复制后删除， 保证两表数据一致
+            Integer movedCount = transactionTemplate.execute(status -> {
+                List<Object> lockedList = baseMapper.lockArchivableKeys(table.getSourceTable(), table.getPkColumn(),
+                        table.getArchiveCondition(), table.getRefundableCondition(), refundableCutoff, entry.getValue());
+                if(lockedList.isEmpty()){
+                    return 0;
+                }
+                baseMapper.copyToArchive(entry.getKey(), table.getSourceTable(), columnList, table.getPkColumn(), lockedList);
+                return baseMapper.deleteFromSource(table.getSourceTable(), table.getPkColumn(), lockedList);
+            });
+
+            log.info("订单归档, {} -> {}, count={}", table.getSourceTable(), entry.getKey(), movedCount);
+            result += movedCount == null ? 0 : movedCount;
+        }
+
+        return result;
+    }
+
+    /** 完成一轮归档 (全部分库)， 记录截止时间 **/
+    public void finishArchive(ArchiveTable table, Date cutoff, long archivedCount){
+        shardRouter.run(ShardRouter.DEFAULT_SHARD, () -> saveArchiveCutoff(table, cutoff, archivedCount));
+        metaCacheExpireAt = 0;
+    }
+
+    private void saveArchiveCutoff(ArchiveTable table, Date cutoff, long archivedCount){
+
+        OrderArchive orderArchive = getById(table.getSourceTable());
+        if(orderArchive == null){
+            save(new OrderArchive().setSourceTable(table.getSourceTable()).setArchiveCutoff(cutoff).setArchivedCount(archivedCount));
+        }else{
+            // 截止时间只前进不后退 （归档窗口调大时， 已归档的数据不会移回热表）
+            if(orderArchive.getArchiveCutoff() == null || cutoff.after(orderArchive.getArchiveCutoff())){
+                orderArchive.setArchiveCutoff(cutoff);
+            }
+            orderArchive.setArchivedCount(orderArchive.getArchivedCount() + archivedCount);
+            updateById(orderArchive);
+        }
+    }
+
+    /** 归档截止时间， 未归档时返回null **/
+    public Date getArchiveCutoff(String sourceTable){
+        refreshMetaCache();
+        return archiveCutoffCache.get(sourceTable);
+    }
+
+    /** 已存在的归档表 (按月份倒序) **/
+    public List<String> getArchiveTables(String sourceTable){
+        refreshMetaCache();
+        return archiveTablesCache.getOrDefault(sourceTable, Collections.emptyList());
+    }
+
+    /**
+     * 按时间范围路由： 返回与范围内月份对应的已存在的归档表 (按月份倒序)， 调用方需与热表合并查询；
+     * 热表中仍可能存在截止时间之前的非终态数据， 且归档进行中的数据可能已移至归档表， 因此不按截止时间裁剪。
+     * @param createdStart 开始时间， 为null时返回空列表 (仅查询热表， 查询归档数据需指定开始时间)
+     * @param createdEnd 结束时间， 为null时表示至今
+     **/
+    public List<String> routeArchiveTables(String sourceTable, Date createdStart, Date createdEnd){
+
+        List<String> allTables = getArchiveTables(sourceTable);
+        if(createdStart == null || allTables.isEmpty()){
+            return Collections.emptyList();
+        }
+
+        String fromTable = getArchiveTableName(sourceTable, createdStart);
+        String toTable = getArchiveTableName(sourceTable, createdEnd == null ? new Date() : createdEnd);
+
+        List<String> result = new ArrayList<>();
+        for (String archiveTable : allTables) { // 同一源表的归档表名按月份排序
+            if(archiveTable.compareTo(fromTable) >= 0 && archiveTable.compareTo(toTable) <= 0){
+                result.add(archiveTable);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按单条数据查找归档表 （热表中不存在时使用）
+     * @param createdTime 数据创建时间 （如从订单号中解析）， 未知时传null， 将按月份倒序返回全部归档表
+     */
+    public List<String> lookupArchiveTables(String sourceTable, Date createdTime){
+
+        List<String> allTables = getArchiveTables(sourceTable);
+        if(createdTime == null || allTables.isEmpty()){
+            return allTables;
+        }
+
+        // 订单号时间与入库时间可能跨月， 同时查找下一个月
+        List<String> result = new ArrayList<>(2);
+        for (Date date : Arrays.asList(createdTime, DateUtil.offsetMonth(createdTime, 1))) {
+            String archiveTable = getArchiveTableName(sourceTable, date);
+            if(allTables.contains(archiveTable)){
+                result.add(archiveTable);
+            }
+        }
+        return result;
+    }
+
+    private void refreshMetaCache(){
+
+        long now = System.currentTimeMillis();
+        if(metaCacheExpireAt > now){
+            return ;
+        }
+
+        synchronized (this){
+            if(metaCacheExpireAt > now){
+                return ;
+            }
+
+            try {
+                shardRouter.run(ShardRouter.DEFAULT_SHARD, this::loadMeta); // 归档信息位于默认库
+            } catch (Exception e) { // 归档表未初始化等， 按未归档处理
+                log.error("查询订单归档信息异常", e);
+            }
+            metaCacheExpireAt = now + META_CACHE_MS;
+        }
+    }
+
+    /** 在所有分库中创建归档表 (查询时各分库使用相同的表名) **/
+    private void createArchiveTable(String archiveTable, String sourceTable){
+
+        if(createdArchiveTableSet.contains(archiveTable)){
+            return ;
+        }
+
+        for (int i = 0; i < shardRouter.getShardCount(); i++) {
+            shardRouter.run(i, () -> baseMapper.createArchiveTable(archiveTable, sourceTable));
+        }
+        createdArchiveTableSet.add(archiveTable);
+    }
+
+    /** 复制到归档表的列： 源表的全部列， 归档表缺少源表新增的列时需先同步表结构， 避免数据丢失或列错位 **/
+    private List<String> getCopyColumns(String archiveTable, String sourceTable){
+
+        List<String> result = copyColumnsCache.get(archiveTable);
+        if(result != null){
+            return result;
+        }
+
+        List<String> sourceColumns = baseMapper.selectTableColumns(sourceTable);
+        Set<String> archiveColumns = new HashSet<>(baseMapper.selectTableColumns(archiveTable));
+        for (String column : sourceColumns) {
+            if(!archiveColumns.contains(column)){
+                throw new IllegalStateException("归档表[" + archiveTable + "]缺少列[" + column + "]， 请与源表[" + sourceTable + "]同步表结构");
+            }
+        }
+
+        copyColumnsCache.put(archiveTable, sourceColumns);
+        return sourceColumns;
+    }
+
+    private void loadMeta(){
+
+        for (ArchiveTable table : ARCHIVE_TABLES) {
+
+            String prefix = table.getSourceTable() + ARCHIVE_TABLE_INFIX;
+            List<String> tableList = new ArrayList<>();
+            for (String tableName : baseMapper.selectArchiveTables(prefix)) {
+                // like条件中的下划线为通配符， 需再次校验
+                if(tableName.startsWith(prefix) && tableName.substring(prefix.length()).matches("\\d{6}")){
+                    tableList.add(tableName);
+                }
+            }
+            tableList.sort(Comparator.reverseOrder());
+            archiveTablesCache.put(table.getSourceTable(), tableList);
+
+            OrderArchive orderArchive = getById(table.getSourceTable());
+            if(orderArchive == null || orderArchive.getArchiveCutoff() == null){
+                archiveCutoffCache.remove(table.getSourceTable());
+            }else{
+                archiveCutoffCache.put(table.getSourceTable(), orderArchive.getArchiveCutoff());
+            }
+        }
+    }
+
+    /** 归档的源表定义 **/
+    @Getter
+    @AllArgsConstructor
+    public static class ArchiveTable {
+
+        /** 源表名称 **/
+        private final String sourceTable;
+
+        /** 主键列 **/
+        private final String pkColumn;
+
+        /** 归档条件 （不会再变更的数据） **/
+        private final String archiveCondition;
+
+        /** 可退款数据的归档条件 （需早于可退款数据的截止时间）， 无可退款数据时为null **/
+        private final String refundableCondition;
+    }
+
+}
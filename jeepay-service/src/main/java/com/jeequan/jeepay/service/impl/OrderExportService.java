@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.impl;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.IdUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.jeequan.jeepay.core.cache.RedisUtil;
+import com.jeequan.jeepay.core.constants.CS;
+import com.jeequan.jeepay.core.entity.PayOrder;
+import com.jeequan.jeepay.core.entity.RefundOrder;
+import com.jeequan.jeepay.core.entity.TransferOrder;
+import com.jeequan.jeepay.core.exception.BizException;
+import com.jeequan.jeepay.core.utils.ExportWriter;
+import com.jeequan.jeepay.service.mapper.PayOrderMapper;
+import com.jeequan.jeepay.service.mapper.RefundOrderMapper;
+import com.jeequan.jeepay.service.mapper.TransferOrderMapper;
+import com.jeequan.jeepay.service.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/*
+* 订单数据导出服务
+* 使用流式查询逐行读取订单， 直接写入输出流 (csv / xlsx)， 导出任意行数时内存占用恒定；
+* 数据量较大时可提交异步导出任务， 文件写入本地临时文件后上传至文件存储服务， 任务状态保存在redis中。
+* 开启订单分库时逐个分库流式读取， 导出数据按分库分段， 各段内按创建时间倒序；
+* 支付订单的查询时间范围包含已归档的月份时， 与列表一致合并导出对应的归档表 （热表之后按月份倒序）。
+* 运营平台与商户系统共用， 同步导出每个节点限制同时执行的数量， 超出时提示稍后再试或使用异步导出。
+*/
+@Slf4j
+@Service
+public class OrderExportService {
+
+    /** 订单类型 **/
+    public static final String ORDER_TYPE_PAY = "payOrder";
+    public static final String ORDER_TYPE_REFUND = "refundOrder";
+    public static final String ORDER_TYPE_TRANSFER = "transferOrder";
+
+    /** 导出任务状态 **/
+    public static final byte JOB_STATE_WAIT = 0; //等待执行
+    public static final byte JOB_STATE_ING = 1; //导出中
+    public static final byte JOB_STATE_SUCCESS = 2; //导出成功
+    public static final byte JOB_STATE_FAIL = 3; //导出失败
+
+    /** 同时执行的导出任务数 / 最多等待的任务数 **/
+    private static final int JOB_THREAD_SIZE = 2;
+    private static final int JOB_QUEUE_SIZE = 20;
+
+    /** 每个节点同时执行的同步导出数 （占用请求线程及数据库连接） **/
+    private static final int SYNC_EXPORT_PERMITS = 4;
+
+    /** 任务状态保存时长(秒) **/
+    private static final long JOB_EXPIRE_SECONDS = 24 * 60 * 60L;
+
+    /** 每导出N行更新一次任务进度 **/
+    private static final int JOB_PROGRESS_ROWS = 10000;
+
+    private static final Map<Byte, String> PAY_STATE_NAME = new HashMap<>();
+    private static final Map<Byte, String> REFUND_STATE_NAME = new HashMap<>();
+    private static final Map<Byte, String> TRANSFER_STATE_NAME = new HashMap<>();
+    static {
+        PAY_STATE_NAME.put(PayOrder.STATE_INIT, "订单生成");
+        PAY_STATE_NAME.put(PayOrder.STATE_ING, "支付中");
+        PAY_STATE_NAME.put(PayOrder.STATE_SUCCESS, "支付成功");
+        PAY_STATE_NAME.put(PayOrder.STATE_FAIL, "支付失败");
+        PAY_STATE_NAME.put(PayOrder.STATE_CANCEL, "已撤销");
+        PAY_STATE_NAME.put(PayOrder.STATE_REFUND, "已退款");
+        PAY_STATE_NAME.put(PayOrder.STATE_CLOSED, "订单关闭");
+
+        REFUND_STATE_NAME.put(RefundOrder.STATE_INIT, "订单生成");
+        REFUND_STATE_NAME.put(RefundOrder.STATE_ING, "退款中");
+        REFUND_STATE_NAME.put(RefundOrder.STATE_SUCCESS, "退款成功");
+        REFUND_STATE_NAME.put(RefundOrder.STATE_FAIL, "退款失败");
+        REFUND_STATE_NAME.put(RefundOrder.STATE_CLOSED, "退款任务关闭");
+
+        TRANSFER_STATE_NAME.put(TransferOrder.STATE_INIT, "订单生成");
+        TRANSFER_STATE_NAME.put(TransferOrder.STATE_ING, "转账中");
+        TRANSFER_STATE_NAME.put(TransferOrder.STATE_SUCCESS, "转账成功");
+        TRANSFER_STATE_NAME.put(TransferOrder.STATE_FAIL, "转账失败");
+        TRANSFER_STATE_NAME.put(TransferOrder.STATE_CLOSED, "转账关闭");
+    }
+
+    /** 导出列 **/
+    private static final List<ExportColumn<PayOrder>> PAY_ORDER_COLUMNS = Arrays.asList(
+            new ExportColumn<>("支付订单号", PayOrder::getPayOrderId),
+            new ExportColumn<>("商户号", PayOrder::getMchNo),
+            new ExportColumn<>("商户名称", PayOrder::getMchName),
+            new ExportColumn<>("服务商号", PayOrder::getIsvNo),
+            new ExportColumn<>("应用ID", PayOrder::getAppId),
+            new ExportColumn<>("商户订单号", PayOrder::getMchOrderNo),
+            new ExportColumn<>("支付接口", PayOrder::getIfCode),
+            new ExportColumn<>("支付方式", PayOrder::getWayCode),
+            new ExportColumn<>("支付金额(元)", o -> cent2Dollar(o.getAmount())),
+            new ExportColumn<>("手续费(元)", o -> cent2Dollar(o.getMchFeeAmount())),
+            new ExportColumn<>("退款金额(元)", o -> cent2Dollar(o.getRefundAmount())),
+            new ExportColumn<>("支付状态", o -> PAY_STATE_NAME.get(o.getState())),
+            new ExportColumn<>("渠道订单号", PayOrder::getChannelOrderNo),
+            new ExportColumn<>("商品标题", PayOrder::getSubject),
+            new ExportColumn<>("创建时间", PayOrder::getCreatedAt),
+            new ExportColumn<>("成功时间", PayOrder::getSuccessTime)
+    );
+
+    private static final List<ExportColumn<RefundOrder>> REFUND_ORDER_COLUMNS = Arrays.asList(
+            new ExportColumn<>("退款订单号", RefundOrder::getRefundOrderId),
+            new ExportColumn<>("支付订单号", RefundOrder::getPayOrderId),
+            new ExportColumn<>("商户号", RefundOrder::getMchNo),
+            new ExportColumn<>("商户名称", RefundOrder::getMchName),
+            new ExportColumn<>("应用ID", RefundOrder::getAppId),
+            new ExportColumn<>("商户退款单号", RefundOrder::getMchRefundNo),
+            new ExportColumn<>("支付接口", RefundOrder::getIfCode),
+            new ExportColumn<>("支付方式", RefundOrder::getWayCode),
+            new ExportColumn<>("支付金额(元)", o -> cent2Dollar(o.getPayAmount())),
+            new ExportColumn<>("退款金额(元)", o -> cent2Dollar(o.getRefundAmount())),
+            new ExportColumn<>("退款状态", o -> REFUND_STATE_NAME.get(o.getState())),
+            new ExportColumn<>("渠道支付单号", RefundOrder::getChannelPayOrderNo),
+            new ExportColumn<>("渠道退款单号", RefundOrder::getChannelOrderNo),
+            new ExportColumn<>("退款原因", RefundOrder::getRefundReason),
+            new ExportColumn<>("创建时间", RefundOrder::getCreatedAt),
+            new ExportColumn<>("成功时间", RefundOrder::getSuccessTime)
+    );
+
+    private static final List<ExportColumn<TransferOrder>> TRANSFER_ORDER_COLUMNS = Arrays.asList(
+            new ExportColumn<>("转账订单号", TransferOrder::getTransferId),
+            new ExportColumn<>("商户号", TransferOrder::getMchNo),
+            new ExportColumn<>("商户名称", TransferOrder::getMchName),
+            new ExportColumn<>("应用ID", TransferOrder::getAppId),
+            new ExportColumn<>("商户订单号", TransferOrder::getMchOrderNo),
+            new ExportColumn<>("支付接口", TransferOrder::getIfCode),
+            new ExportColumn<>("入账方式", TransferOrder::getEntryType),
+            new ExportColumn<>("转账金额(元)", o -> cent2Dollar(o.getAmount())),
+            new ExportColumn<>("收款账号", TransferOrder::getAccountNo),
+            new ExportColumn<>("收款人姓名", TransferOrder::getAccountName),
+            new ExportColumn<>("转账状态", o -> TRANSFER_STATE_NAME.get(o.getState())),
+            new ExportColumn<>("渠道订单号", TransferOrder::getChannelOrderNo),
+            new ExportColumn<>("转账备注", TransferOrder::getTransferDesc),
+            new ExportColumn<>("创建时间", TransferOrder::getCreatedAt),
+            new ExportColumn<>("成功时间", TransferOrder::getSuccessTime)
+    );
+
+    /** 导出任务线程池， 任务过多时拒绝提交 **/
+    private final ThreadPoolExecutor jobExecutor = new ThreadPoolExecutor(JOB_THREAD_SIZE, JOB_THREAD_SIZE, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(JOB_QUEUE_SIZE), new NamedThreadFactory("order-export-", true), new ThreadPoolExecutor.AbortPolicy());
+
+    /** 同步导出许可 **/
+    private final Semaphore syncExportSemaphore = new Semaphore(SYNC_EXPORT_PERMITS);
+
+    @Autowired private PayOrderService payOrderService;
+    @Autowired private RefundOrderService refundOrderService;
+    @Autowired private TransferOrderService transferOrderService;
+    @Autowired private PayOrderMapper payOrderMapper;
+    @Autowired private RefundOrderMapper refundOrderMapper;
+    @Autowired private TransferOrderMapper transferOrderMapper;
+    @Autowired private ShardRouter shardRouter;
+
+    /** 校验导出格式 **/
+    public String checkFormat(String format){
+
+        if(ExportWriter.FORMAT_CSV.equalsIgnoreCase(format) || ExportWriter.FORMAT_XLSX.equalsIgnoreCase(format)){
+            return format.toLowerCase();
+        }
+        throw new BizException("不支持的导出格式");
+    }
+
+    /** 订单类型对应的列表权限 **/
+    public static String getListEntId(String orderType){
+
+        if(ORDER_TYPE_PAY.equals(orderType)){
+            return "ENT_ORDER_LIST";
+        }else if(ORDER_TYPE_REFUND.equals(orderType)){
+            return "ENT_REFUND_LIST";
+        }else if(ORDER_TYPE_TRANSFER.equals(orderType)){
+            return "ENT_TRANSFER_ORDER_LIST";
+        }
+        throw new BizException("不支持的订单类型");
+    }
+
+    /**
+     * 查询条件， 与各订单列表接口一致 （包含需合并导出的归档表）
+     * @param mchNo 商户号， 商户系统仅查询当前商户的数据； 运营平台传null
+     */
+    public ExportQuery buildCondition(String orderType, String mchNo, JSONObject paramJSON){
+
+        if(ORDER_TYPE_PAY.equals(orderType)){
+            LambdaQueryWrapper<PayOrder> wrapper = PayOrder.gw();
+            if(mchNo != null){
+                wrapper.eq(PayOrder::getMchNo, mchNo);
+            }
+            payOrderService.buildListCondition(wrapper, paramJSON.toJavaObject(PayOrder.class), paramJSON);
+            return new ExportQuery(orderType, wrapper, payOrderService.routeArchiveTables(paramJSON));
+
+        }else if(ORDER_TYPE_REFUND.equals(orderType)){
+            LambdaQueryWrapper<RefundOrder> wrapper = RefundOrder.gw();
+            if(mchNo != null){
+                wrapper.eq(RefundOrder::getMchNo, mchNo);
+            }
+            refundOrderService.buildListCondition(wrapper, paramJSON.toJavaObject(RefundOrder.class), paramJSON);
+            return new ExportQuery(orderType, wrapper, Collections.emptyList());
+
+        }else if(ORDER_TYPE_TRANSFER.equals(orderType)){
+            LambdaQueryWrapper<TransferOrder> wrapper = TransferOrder.gw();
+            if(mchNo != null){
+                wrapper.eq(TransferOrder::getMchNo, mchNo);
+            }
+            transferOrderService.buildListCondition(wrapper, paramJSON.toJavaObject(TransferOrder.class), paramJSON);
+            return new ExportQuery(orderType, wrapper, Collections.emptyList());
+        }
+
+        throw new BizException("不支持的订单类型");
+    }
+
+    /** 导出文件名 **/
+    public String genFileName(String orderType, String format){
+        return orderType + "_" + DateUtil.format(new Date(), "yyyyMMddHHmmss") + "." + format;
+    }
+
+    /**
+     * 同步导出， 超出同时执行的数量时拒绝 （在写入响应之前， 可正常返回错误信息）
+     * @param opener 设置下载响应头并返回响应输出流
+     * @return 导出行数
+     */
+    public long exportSync(ExportQuery query, String format, DownloadStreamOpener opener) throws IOException {
+
+        format = checkFormat(format);
+        if(!syncExportSemaphore.tryAcquire()){
+            throw new BizException("导出请求过多，请稍后再试或使用异步导出");
+        }
+
+        try {
+            OutputStream out = opener.open(genFileName(query.orderType, format), ExportWriter.getContentType(format));
+            return export(query, format, out, null);
+        } finally {
+            syncExportSemaphore.release();
+        }
+    }
+
+    /**
+     * 下载异步导出任务的文件
+     * @param downloader 从文件存储服务下载至本地文件
+     * @param opener 设置下载响应头并返回响应输出流
+     */
+    public void downloadJobFile(String jobId, String ownerId, FileDownloader downloader, DownloadStreamOpener opener) throws IOException {
+
+        JSONObject job = getJob(jobId, ownerId);
+        if(job == null || job.getByteValue("state") != JOB_STATE_SUCCESS){
+            throw new BizException("导出文件不存在");
+        }
+
+        File tempFile = File.createTempFile("order_export_", "." + job.getString("format"));
+        try {
+            if(!downloader.download(job.getString("fileKey"), tempFile)){
+                throw new BizException("导出文件不存在");
+            }
+            Files.copy(tempFile.toPath(), opener.open(job.getString("fileName"), ExportWriter.getContentType(job.getString("format"))));
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * 提交异步导出任务
+     * @param ownerId 任务所属用户， 查询任务时校验
+     * @param uploader 导出文件上传方式， 返回文件存储路径
+     * @return 任务ID
+     */
+    public String submitJob(String ownerId, ExportQuery query, String format, FileUploader uploader){
+
+        format = checkFormat(format);
+
+        JSONObject job = new JSONObject();
+        job.put("jobId", IdUtil.fastSimpleUUID());
+        job.put("ownerId", ownerId);
+        job.put("orderType", query.orderType);
+        job.put("format", format);
+        job.put("state", JOB_STATE_WAIT);
+        job.put("rowCount", 0);
+        job.put("createdAt", new Date());
+        saveJob(job);
+
+        try {
+            jobExecutor.execute(() -> runJob(job, query, uploader));
+        } catch (RejectedExecutionException e) {
+            RedisUtil.del(CS.getCacheKeyOrderExportJob(job.getString("jobId")));
+            throw new BizException("导出任务过多，请稍后再试");
+        }
+
+        return job.getString("jobId");
+    }
+
+    /** 查询导出任务， 任务不存在或不属于该用户时返回null **/
+    public JSONObject getJob(String jobId, String ownerId){
+
+        JSONObject job = JSON.parseObject(RedisUtil.getString(CS.getCacheKeyOrderExportJob(jobId)));
+        if(job == null || !StringUtils.equals(ownerId, job.getString("ownerId"))){
+            return null;
+        }
+        return job;
+    }
+
+    @PreDestroy
+    public void destroy(){
+        jobExecutor.shutdownNow();
+    }
+
+
+    /**
+     * 导出订单数据 (按创建时间倒序)
+     * @param format 导出格式 csv / xlsx
+     * @param out 输出流， 导出完成后关闭
+     * @return 导出行数
+     */
+    @SuppressWarnings("unchecked")
+    private long export(ExportQuery query, String format, OutputStream out, Consumer<Long> progress) throws IOException {
+
+        if(ORDER_TYPE_PAY.equals(query.orderType)){
+            LambdaQueryWrapper<PayOrder> payWrapper = ((LambdaQueryWrapper<PayOrder>) query.wrapper).orderByDesc(PayOrder::getCreatedAt);
+            return write(PAY_ORDER_COLUMNS, handler -> shardRouter.forEachShard(shard -> {
+                payOrderMapper.streamList(payWrapper, handler);
+                query.archiveTables.forEach(archiveTable -> payOrderMapper.streamArchiveList(archiveTable, payWrapper, handler));
+            }), format, out, progress);
+
+        }else if(ORDER_TYPE_REFUND.equals(query.orderType)){
+            LambdaQueryWrapper<RefundOrder> refundWrapper = ((LambdaQueryWrapper<RefundOrder>) query.wrapper).orderByDesc(RefundOrder::getCreatedAt);
+            return write(REFUND_ORDER_COLUMNS, handler -> shardRouter.forEachShard(shard -> refundOrderMapper.streamList(refundWrapper, handler)), format, out, progress);
+
+        }else if(ORDER_TYPE_TRANSFER.equals(query.orderType)){
+            LambdaQueryWrapper<TransferOrder> transferWrapper = ((LambdaQueryWrapper<TransferOrder>) query.wrapper).orderByDesc(TransferOrder::getCreatedAt);
+            return write(TRANSFER_ORDER_COLUMNS, handler -> shardRouter.forEachShard(shard -> transferOrderMapper.streamList(transferWrapper, handler)), format, out, progress);
+        }
+
+        throw new BizException("不支持的订单类型");
+    }
+
+    /** 逐行写入， 每行数据处理完成后即可被回收 **/
+    private <T> long write(List<ExportColumn<T>> columns, Consumer<ResultHandler<T>> query, String format, OutputStream out, Consumer<Long> progress) throws IOException {
+
+        ExportWriter writer = ExportWriter.of(checkFormat(format), out);
+
+        List<Object> header = new ArrayList<>(columns.size());
+        columns.forEach(column -> header.add(column.title));
+        writer.writeRow(header);
+
+        long[] rowCount = {0};
+        IOException[] writeError = {null};
+        query.accept(context -> {
+            if(writeError[0] != null){ // 已中止 (逐个分库查询时)
+                context.stop();
+                return ;
+            }
+
+            T record = context.getResultObject();
+            List<Object> row = new ArrayList<>(columns.size());
+            columns.forEach(column -> row.add(column.getter.apply(record)));
+            try {
+                writer.writeRow(row);
+            } catch (IOException e) { // 客户端断开等， 中止查询
+                writeError[0] = e;
+                context.stop();
+                return ;
+            }
+
+            rowCount[0]++;
+            if(progress != null && rowCount[0] % JOB_PROGRESS_ROWS == 0){
+                progress.accept(rowCount[0]);
+            }
+        });
+
+        if(writeError[0] != null){
+            throw writeError[0];
+        }
+
+        writer.close();
+        return rowCount[0];
+    }
+
+    private void runJob(JSONObject job, ExportQuery query, FileUploader uploader){
+
+        String jobId = job.getString("jobId");
+        String orderType = job.getString("orderType");
+        String format = job.getString("format");
+
+        job.put("state", JOB_STATE_ING);
+        saveJob(job);
+
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile("order_export_", "." + format);
+
+            long rowCount;
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                rowCount = export(query, format, out, count -> {
+                    job.put("rowCount", count);
+                    saveJob(job);
+                });
+            }
+
+            String fileName = genFileName(orderType, format);
+            String fileKey = uploader.upload(tempFile, "export/" + jobId + "/" + fileName);
+            if(StringUtils.isEmpty(fileKey)){
+                throw new BizException("导出文件上传失败");
+            }
+
+            job.put("state", JOB_STATE_SUCCESS);
+            job.put("rowCount", rowCount);
+            job.put("fileName", fileName);
+            job.put("fileKey", fileKey);
+
+        } catch (Exception e) {
+            log.error("订单导出任务异常, jobId={}", jobId, e);
+            job.put("state", JOB_STATE_FAIL);
+            job.put("errMsg", e instanceof BizException ? e.getMessage() : "系统异常");
+        } finally {
+            job.put("finishedAt", new Date());
+            saveJob(job);
+            if(tempFile != null && !tempFile.delete()){
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void saveJob(JSONObject job){
+        RedisUtil.setString(CS.getCacheKeyOrderExportJob(job.getString("jobId")), job.toJSONString(), JOB_EXPIRE_SECONDS);
+    }
+
+    private static BigDecimal cent2Dollar(Long amount){
+        return amount == null ? null : BigDecimal.valueOf(amount, 2);
+    }
+
+    /** 导出文件上传 **/
+    public interface FileUploader {
+
+        /** 上传文件， 返回文件存储路径 (上传失败返回null) **/
+        String upload(File file, String saveDirAndFileName) throws Exception;
+    }
+
+    /** 导出查询 **/
+    public static class ExportQuery {
+
+        /** 订单类型 **/
+        private final String orderType;
+
+        /** 查询条件， 与列表查询条件一致 **/
+        private final LambdaQueryWrapper<?> wrapper;
+
+        /** 需合并导出的归档表 **/
+        private final List<String> archiveTables;
+
+        ExportQuery(String orderType, LambdaQueryWrapper<?> wrapper, List<String> archiveTables){
+            this.orderType = orderType;
+            this.wrapper = wrapper;
+            this.archiveTables = archiveTables;
+        }
+    }
+
+    /** 导出文件下载 **/
+    public interface FileDownloader {
+
+        /** 下载文件至本地， 文件不存在返回false **/
+        boolean download(String fileKey, File file);
+    }
+
+    /** 下载响应输出流 **/
+    public interface DownloadStreamOpener {
+
+        /** 设置下载响应头， 返回响应输出流 **/
+        OutputStream open(String fileName, String contentType) throws IOException;
+    }
+
+    /** 导出列定义 **/
+    private static class ExportColumn<T> {
+
+        private final String title;
+        private final Function<T, Object> getter;
+
+        ExportColumn(String title, Function<T, Object> getter){
+            this.title = title;
+            this.getter = getter;
+        }
+    }
+
+}
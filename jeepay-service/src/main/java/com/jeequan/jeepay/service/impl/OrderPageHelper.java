@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.impl;
+
+import com.alibaba.fastjson.JSONObject;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.jeequan.jeepay.core.model.CursorPage;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/*
+* 订单列表分页查询 （支付订单、退款订单、转账订单）
+*
+* 1. 页码分页： 先通过 (created_at, 主键) 索引查询当前页的主键 （覆盖索引， 深分页时无需回表跳过的记录）， 再按主键查询完整数据；
+*    countMode=estimate 时总数最多统计ESTIMATE_COUNT_LIMIT条， 避免大表count全部数据。
+* 2. 游标分页： 请求参数包含cursor时， 按 (created_at, 主键) 倒序查询cursor之后的记录， 不查询总数， 查询耗时与页码深度无关。
+* 开启订单分库时各分库的结果按 (created_at, 主键) 倒序合并。
+*/
+public class OrderPageHelper<T> {
+
+    /** 游标参数名， 首页传空值 **/
+    public static final String PARAM_CURSOR = "cursor";
+
+    /** 总数统计方式参数名 **/
+    public static final String PARAM_COUNT_MODE = "countMode";
+
+    /** 总数统计方式： 预估 （统计上限ESTIMATE_COUNT_LIMIT条） **/
+    public static final String COUNT_MODE_ESTIMATE = "estimate";
+
+    /** 预估总数的统计上限 **/
+    public static final int ESTIMATE_COUNT_LIMIT = 10000;
+
+    /** 游标分页的每页最大条数 **/
+    private static final int CURSOR_MAX_PAGE_SIZE = 1000;
+
+    /** 查询创建时间 （字符串格式， 保留微秒） **/
+    private static final String CREATED_AT_SELECT = "date_format(created_at, '%Y-%m-%d %H:%i:%s.%f')";
+
+    /** 主键列名 **/
+    private final String pkColumn;
+
+    private final SFunction<T, Date> createdAtGetter;
+    private final SFunction<T, String> pkGetter;
+
+    /** 列表排序： (created_at, 主键) 倒序 **/
+    private final Comparator<T> order;
+
+    public OrderPageHelper(String pkColumn, SFunction<T, Date> createdAtGetter, SFunction<T, String> pkGetter) {
+        this.pkColumn = pkColumn;
+        this.createdAtGetter = createdAtGetter;
+        this.pkGetter = pkGetter;
+        this.order = Comparator.<T, Date>comparing(createdAtGetter, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(pkGetter, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .reversed();
+    }
+
+    /** 列表排序 （跨分库合并时使用） **/
+    public Comparator<T> getOrder() {
+        return order;
+    }
+
+    /**
+     * 分页查询
+     * @param wrapper 查询条件 （不包含排序）
+     * @param countLimitFunc 限定最大条数的计数方法
+     */
+    public IPage<T> page(IService<T> service, IPage<T> iPage, LambdaQueryWrapper<T> wrapper, JSONObject paramJSON,
+                         BiFunction<Wrapper<T>, Integer, Long> countLimitFunc) {
+
+        if(paramJSON != null && paramJSON.containsKey(PARAM_CURSOR)){
+            return cursorPage(service, iPage.getSize(), wrapper, paramJSON.getString(PARAM_CURSOR));
+        }
+
+        // 查询当前页的主键 （及创建时间， 用于跨分库合并排序）
+        Page<T> pkPage = new Page<>(iPage.getCurrent(), iPage.getSize());
+        if(paramJSON != null && COUNT_MODE_ESTIMATE.equals(paramJSON.getString(PARAM_COUNT_MODE))){
+            pkPage.setSearchCount(false);
+            pkPage.setTotal(countLimitFunc.apply(wrapper, ESTIMATE_COUNT_LIMIT));
+        }
+
+        wrapper.select(pkGetter, createdAtGetter).orderByDesc(createdAtGetter).orderByDesc(pkGetter);
+        service.page(pkPage, wrapper);
+
+        iPage.setTotal(pkPage.getTotal());
+        iPage.setRecords(listByPkInOrder(service, pkPage.getRecords()));
+        return iPage;
+    }
+
+    /** 游标分页 **/
+    private CursorPage<T> cursorPage(IService<T> service, long pageSize, LambdaQueryWrapper<T> wrapper, String cursor){
+
+        pageSize = Math.min(Math.max(pageSize, 1), CURSOR_MAX_PAGE_SIZE);
+
+        // (created_at, 主键) < (游标记录的created_at, 游标主键)， 可使用created_at索引的范围查询
+        if(StringUtils.isNotEmpty(cursor)){
+
+            // 查询游标记录的创建时间 （保留微秒）
+            Object cursorCreatedAt = service.getObj(new QueryWrapper<T>().select(CREATED_AT_SELECT).eq(pkColumn, cursor), o -> o);
+            if(cursorCreatedAt == null){
+                return new CursorPage<>(new ArrayList<>(), pageSize, null);
+            }
+            wrapper.apply("(created_at < {0} or (created_at = {0} and " + pkColumn + " < {1}))", cursorCreatedAt.toString(), cursor);
+        }
+
+        // 多查询一条， 判断是否有下一页
+        wrapper.orderByDesc(createdAtGetter).orderByDesc(pkGetter).last("limit " + (pageSize + 1));
+        List<T> records = service.list(wrapper);
+        records.sort(order);
+
+        String nextCursor = null;
+        if(records.size() > pageSize){
+            records = new ArrayList<>(records.subList(0, (int) pageSize));
+            nextCursor = pkGetter.apply(records.get(records.size() - 1));
+        }
+        return new CursorPage<>(records, pageSize, nextCursor);
+    }
+
+    /** 按主键查询完整数据， 并保持主键的顺序 **/
+    private List<T> listByPkInOrder(IService<T> service, List<T> pkRecords){
+
+        if(pkRecords.isEmpty()){
+            return new ArrayList<>();
+        }
+
+        List<String> pkList = pkRecords.stream().map(pkGetter).collect(Collectors.toList());
+        Map<String, T> recordMap = service.listByIds(pkList).stream().collect(Collectors.toMap(pkGetter, r -> r));
+
+        List<T> result = new ArrayList<>(pkList.size());
+        for (String pk : pkList) {
+            T record = recordMap.get(pk);
+            if(record != null){
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.impl;
+
+import cn.hutool.core.date.DateUtil;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.jeequan.jeepay.core.entity.OrderStatisticsDay;
+import com.jeequan.jeepay.service.mapper.OrderStatisticsDayMapper;
+import com.jeequan.jeepay.service.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+* 订单日统计 服务实现类
+* 订单状态变更 （支付成功、退款成功） 时累加到内存， 由后台线程定时合并写入统计表， 同一 (日期, 商户, 支付方式) 的并发更新不会争抢同一行锁；
+* 内存中未写入的数据 （如进程异常退出） 由每日对账任务按订单表重新统计修正。
+* 统计表位于默认库， 开启订单分库时对账数据由各分库分别汇总后合并； 对账仅统计热表， 已归档的日期不可对账。
+*/
+@Slf4j
+@Service
+public class OrderStatisticsDayService extends ServiceImpl<OrderStatisticsDayMapper, OrderStatisticsDay> {
+
+    /** 写入间隔(毫秒) **/
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    /** 每批次最大写入条数 **/
+    private static final int BATCH_SIZE = 200;
+
+    /** <日期_商户号_支付方式, 待写入的增量> **/
+    private final Map<String, OrderStatisticsDay> deltaMap = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+    private Thread flushThread;
+
+    @Autowired private ShardRouter shardRouter;
+    @Autowired private OrderArchiveService orderArchiveService;
+
+    @PostConstruct
+    public void init(){
+        flushThread = new Thread(this::flushLoop, "order-statistics-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        flushThread.interrupt();
+        flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        flush();
+    }
+
+    /** 支付成功 **/
+    public void addPaySuccess(Date createdAt, String mchNo, String wayCode, Long amount){
+        addDelta(createdAt, mchNo, wayCode, amount, 1, 0L, 0);
+    }
+
+    /** 退款成功 **/
+    public void addRefundSuccess(Date createdAt, String mchNo, String wayCode, Long refundAmount, boolean isRefundAll){
+        addDelta(createdAt, mchNo, wayCode, 0L, 0, refundAmount, isRefundAll ? 1 : 0);
+    }
+
+    /** 将内存中的增量写入统计表 **/
+    public void flush(){
+
+        List<OrderStatisticsDay> batchList = new ArrayList<>(BATCH_SIZE);
+        for (String key : deltaMap.keySet()) {
+
+            OrderStatisticsDay delta = deltaMap.remove(key);
+            if(delta == null){
+                continue;
+            }
+            batchList.add(delta);
+
+            if(batchList.size() >= BATCH_SIZE){
+                writeBatch(batchList);
+                batchList = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        writeBatch(batchList);
+    }
+
+    /**
+     * 按订单表重新统计 [dateStart, dateEnd) 的数据
+     * 先写入本节点内存中的增量， 其他节点未写入的增量 (最多FLUSH_INTERVAL_MS) 可能在对账后重复累加， 由下次对账修正。
+     * 早于归档截止时间的日期部分订单已移至归档表， 不做处理 （返回-1）， 避免统计数据被改小。
+     **/
+    @Transactional
+    public int reconcile(Date dateStart, Date dateEnd){
+
+        Date archiveCutoff = orderArchiveService.getArchiveCutoff(OrderArchiveService.PAY_ORDER.getSourceTable());
+        if(archiveCutoff != null && dateStart.before(archiveCutoff)){
+            log.warn("订单日统计对账跳过已归档的日期, dateStart={}, archiveCutoff={}", DateUtil.formatDate(dateStart), DateUtil.formatDateTime(archiveCutoff));
+            return -1;
+        }
+
+        flush();
+
+        if(!shardRouter.isEnabled()){
+            baseMapper.resetByDate(dateStart, dateEnd);
+            return baseMapper.reconcileByDate(dateStart, dateEnd);
+        }
+
+        // 各分库分别汇总 （同一商户的历史订单位于默认库， 需按 日期_商户号_支付方式 合并）
+        Map<String, OrderStatisticsDay> statMap = new LinkedHashMap<>();
+        for (List<OrderStatisticsDay> shardStatList : shardRouter.scatterRead(() -> baseMapper.selectStatByDate(dateStart, dateEnd))) {
+            for (OrderStatisticsDay stat : shardStatList) {
+                statMap.merge(DateUtil.formatDate(stat.getStatDate()) + "_" + stat.getMchNo() + "_" + stat.getWayCode(), stat, (s1, s2) -> s1
+                        .setPayAmount(s1.getPayAmount() + s2.getPayAmount()).setPayCount(s1.getPayCount() + s2.getPayCount())
+                        .setRefundAmount(s1.getRefundAmount() + s2.getRefundAmount()).setRefundAllCount(s1.getRefundAllCount() + s2.getRefundAllCount()));
+            }
+        }
+
+        baseMapper.resetByDate(dateStart, dateEnd);
+
+        List<OrderStatisticsDay> statList = new ArrayList<>(statMap.values());
+        for (int i = 0; i < statList.size(); i += BATCH_SIZE) {
+            baseMapper.replaceBatch(statList.subList(i, Math.min(i + BATCH_SIZE, statList.size())));
+        }
+        return statList.size();
+    }
+
+    /** 按日期汇总， dateStart & dateEnd 格式： yyyy-MM-dd **/
+    public List<Map> sumGroupByDate(String mchNo, String dateStart, String dateEnd, String dateFormat){
+        return baseMapper.sumGroupByDate(mchNo, dateStart, dateEnd, dateFormat);
+    }
+
+    /** 按支付方式汇总， dateStart & dateEnd 格式： yyyy-MM-dd **/
+    public List<Map> sumGroupByWayCode(String mchNo, String dateStart, String dateEnd){
+        return baseMapper.sumGroupByWayCode(mchNo, dateStart, dateEnd);
+    }
+
+    /** 汇总全部 **/
+    public Map sumAll(String mchNo){
+        return baseMapper.sumAll(mchNo);
+    }
+
+
+    /** 累加增量， 存在事务时在事务提交后累加 **/
+    private void addDelta(Date createdAt, String mchNo, String wayCode, Long payAmount, int payCount, Long refundAmount, int refundAllCount){
+
+        Date statDate = DateUtil.beginOfDay(createdAt).toJdkDate();
+        String key = DateUtil.formatDate(statDate) + "_" + mchNo + "_" + wayCode;
+
+        Runnable addTask = () -> deltaMap.compute(key, (k, delta) -> {
+            if(delta == null){
+                delta = new OrderStatisticsDay().setStatDate(statDate).setMchNo(mchNo).setWayCode(wayCode)
+                        .setPayAmount(0L).setPayCount(0L).setRefundAmount(0L).setRefundAllCount(0L);
+            }
+            delta.setPayAmount(delta.getPayAmount() + payAmount);
+            delta.setPayCount(delta.getPayCount() + payCount);
+            delta.setRefundAmount(delta.getRefundAmount() + refundAmount);
+            delta.setRefundAllCount(delta.getRefundAllCount() + refundAllCount);
+            return delta;
+        });
+
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addTask.run();
+                }
+            });
+        }else{
+            addTask.run();
+        }
+    }
+
+    /** 合并写入， 失败时放回内存等待下次写入 **/
+    private void writeBatch(List<OrderStatisticsDay> batchList){
+
+        if(batchList.isEmpty()){
+            return ;
+        }
+
+        try {
+            baseMapper.addBatch(batchList);
+        } catch (Exception e) {
+            log.error("订单统计数据写入异常, size={}", batchList.size(), e);
+            batchList.forEach(item -> addDelta(item.getStatDate(), item.getMchNo(), item.getWayCode(),
+                    item.getPayAmount(), item.getPayCount().intValue(), item.getRefundAmount(), item.getRefundAllCount().intValue()));
+        }
+    }
+
+    private void flushLoop(){
+
+        while(running){
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            try {
+                flush();
+            } catch (Exception e) {
+                log.error("订单统计数据写入异常", e);
+            }
+        }
+    }
+
+}
@@ -1,31 +1,67 @@
 package com.jeequan.jeepay.service.impl;
 
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.entity.PayOrderDivisionRecord;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.core.utils.SeqKit;
 import com.jeequan.jeepay.service.mapper.PayOrderDivisionRecordMapper;
 import com.jeequan.jeepay.service.mapper.PayOrderMapper;
+import com.jeequan.jeepay.service.shard.ShardServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 
 /**
  * <p>
  * 分账记录表 服务实现类
+ * 分账记录与所属支付订单位于同一分库 （分账记录ID包含订单的分片号）。
  * </p>
  *
  * @author [mybatis plus generator]
  * @since 2021-08-19
  */
 @Service
-public class PayOrderDivisionRecordService extends ServiceImpl<PayOrderDivisionRecordMapper, PayOrderDivisionRecord> {
+public class PayOrderDivisionRecordService extends ShardServiceImpl<PayOrderDivisionRecordMapper, PayOrderDivisionRecord> {
+
+    /** 列表排序 **/
+    private static final Comparator<PayOrderDivisionRecord> PAGE_ORDER = Comparator.<PayOrderDivisionRecord, Date>comparing(PayOrderDivisionRecord::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(PayOrderDivisionRecord::getRecordId, Comparator.nullsFirst(Comparator.naturalOrder())).reversed();
 
     @Autowired private PayOrderMapper payOrderMapper;
+    @Autowired private PayOrderService payOrderService;
+
+    @Override
+    protected int shardOfId(Serializable id) {
+        return shardRouter.shardOfId(Long.parseLong(id.toString()));
+    }
+
+    @Override
+    protected Integer shardOfEntity(PayOrderDivisionRecord entity) {
+        if(entity.getRecordId() != null){
+            return shardRouter.shardOfId(entity.getRecordId());
+        }
+        return entity.getPayOrderId() == null ? null : shardRouter.shardOfOrderId(entity.getPayOrderId());
+    }
+
+    @Override
+    protected Comparator<PayOrderDivisionRecord> pageOrder() {
+        return PAGE_ORDER;
+    }
+
+    /** 保存分账记录， 未指定ID时按所属支付订单生成 **/
+    @Override
+    public boolean save(PayOrderDivisionRecord entity) {
+        if(entity.getRecordId() == null){
+            entity.setRecordId(SeqKit.genOrderRecordId(entity.getPayOrderId()));
+        }
+        return super.save(entity);
+    }
 
 
     /** 更新分账记录为分账成功  ( 单条 )  将：  已受理 更新为： 其他状态    **/
@@ -34,7 +70,8 @@ public class PayOrderDivisionRecordService extends ServiceImpl<PayOrderDivisionR
         PayOrderDivisionRecord updateRecord = new PayOrderDivisionRecord();
         updateRecord.setState(state);
         updateRecord.setChannelRespResult( state == PayOrderDivisionRecord.STATE_SUCCESS ? "" : channelRespResult); // 若明确成功，清空错误信息。
-        update(updateRecord, PayOrderDivisionRecord.gw().eq(PayOrderDivisionRecord::getRecordId, recordId).eq(PayOrderDivisionRecord::getState, PayOrderDivisionRecord.STATE_ACCEPT));
+        shardRouter.execute(shardOfId(recordId),
+                () -> update(updateRecord, PayOrderDivisionRecord.gw().eq(PayOrderDivisionRecord::getRecordId, recordId).eq(PayOrderDivisionRecord::getState, PayOrderDivisionRecord.STATE_ACCEPT)));
 
     }
 
@@ -53,13 +90,17 @@ public class PayOrderDivisionRecordService extends ServiceImpl<PayOrderDivisionR
         updateRecord.setState(state);
         updateRecord.setChannelBatchOrderId(channelBatchOrderId);
         updateRecord.setChannelRespResult(channelRespResult);
-        update(updateRecord, PayOrderDivisionRecord.gw().in(PayOrderDivisionRecord::getRecordId, recordIds).eq(PayOrderDivisionRecord::getState, PayOrderDivisionRecord.STATE_WAIT));
+        updateByIdGroup(recordIds, idList -> baseMapper.update(updateRecord, PayOrderDivisionRecord.gw().in(PayOrderDivisionRecord::getRecordId, idList).eq(PayOrderDivisionRecord::getState, PayOrderDivisionRecord.STATE_WAIT)));
 
     }
 
-    /** 更新分账订单为： 等待分账中的状态  **/
+    /** 更新分账订单为： 等待分账中的状态 （支付订单与分账记录位于同一分库） **/
     @Transactional
     public void updateResendState(String payOrderId){
+        shardRouter.run(shardRouter.shardOfOrderId(payOrderId), () -> updateResendStateInShard(payOrderId));
+    }
+
+    private void updateResendStateInShard(String payOrderId){
 
         PayOrder updateRecord = new PayOrder();
         updateRecord.setDivisionState(PayOrder.DIVISION_STATE_WAIT_TASK);
@@ -70,6 +111,7 @@ public class PayOrderDivisionRecordService extends ServiceImpl<PayOrderDivisionR
         if(payOrderUpdateRow <= 0){
              throw new BizException("更新订单分账状态失败");
         }
+        payOrderService.evictCache(payOrderId);
 
         PayOrderDivisionRecord updateRecordByDiv = new PayOrderDivisionRecord();
         updateRecordByDiv.setBatchOrderId(SeqKit.genDivisionBatchId()); // 重新生成batchOrderId, 避免部分失败导致： out_trade_no重复。
@@ -15,7 +15,7 @@
  */
 package com.jeequan.jeepay.service.impl;
 
-import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.date.DateTime;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.StrUtil;
@@ -23,36 +23,74 @@ import com.alibaba.fastjson.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.jeequan.jeepay.core.constants.CS;
 import com.jeequan.jeepay.core.entity.IsvInfo;
 import com.jeequan.jeepay.core.entity.MchInfo;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.entity.PayWay;
+import com.jeequan.jeepay.core.exception.BizException;
+import com.jeequan.jeepay.core.utils.SeqKit;
 import com.jeequan.jeepay.service.mapper.*;
+import com.jeequan.jeepay.service.shard.ShardServiceImpl;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
  * 支付订单表 服务实现类
+ * 开启订单分库时按订单号中的分片号路由， 历史订单位于默认库。
  * </p>
  *
  * @author [mybatis plus generator]
  * @since 2021-04-27
  */
 @Service
-public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
+public class PayOrderService extends ShardServiceImpl<PayOrderMapper, PayOrder> {
+
+    /** 列表分页查询 （页码分页 & 游标分页） **/
+    private static final OrderPageHelper<PayOrder> PAGE_HELPER = new OrderPageHelper<>("pay_order_id", PayOrder::getCreatedAt, PayOrder::getPayOrderId);
+
+    /** 订单超时关闭： 每批次处理数量 **/
+    private static final int EXPIRED_BATCH_SIZE = 200;
+
+    /** 订单缓存： 未支付/支付中 订单的缓存时间(毫秒)， 终态订单的缓存时间(毫秒)， 最大缓存数量 **/
+    private static final long CACHE_TTL_MS_ACTIVE = 2 * 1000L;
+    private static final long CACHE_TTL_MS_FINAL = 30 * 1000L;
+    private static final int CACHE_MAX_SIZE = 20000;
+
+    /** <支付订单号, 缓存订单>  仅缓存在当前节点， 订单状态变更时清除 **/
+    private final Map<String, CachedPayOrder> payOrderCacheMap = new ConcurrentHashMap<>();
 
     @Autowired private PayOrderMapper payOrderMapper;
     @Autowired private MchInfoMapper mchInfoMapper;
     @Autowired private IsvInfoMapper isvInfoMapper;
     @Autowired private PayWayMapper payWayMapper;
     @Autowired private PayOrderDivisionRecordMapper payOrderDivisionRecordMapper;
+    @Autowired private OrderStatisticsDayService orderStatisticsDayService;
+    @Autowired private OrderArchiveService orderArchiveService;
+
+    @Override
+    protected int shardOfId(Serializable id) {
+        return shardRouter.shardOfOrderId(id.toString());
+    }
+
+    @Override
+    protected Integer shardOfEntity(PayOrder entity) {
+        return entity.getPayOrderId() == null ? null : shardRouter.shardOfOrderId(entity.getPayOrderId());
+    }
+
+    @Override
+    protected Comparator<PayOrder> pageOrder() {
+        return PAGE_HELPER.getOrder();
+    }
 
     /** 更新订单状态  【订单生成】 --》 【支付中】 **/
     public boolean updateInit2Ing(String payOrderId, PayOrder payOrder){
@@ -68,8 +106,10 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         updateRecord.setChannelUser(payOrder.getChannelUser());
         updateRecord.setChannelOrderNo(payOrder.getChannelOrderNo());
 
-        return update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
-                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_INIT));
+        boolean result = shardRouter.execute(shardOfId(payOrderId), () -> update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
+                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_INIT)));
+        evictCache(payOrderId);
+        return result;
     }
 
     /** 更新订单状态  【支付中】 --》 【支付成功】 **/
@@ -81,8 +121,17 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         updateRecord.setChannelUser(channelUserId);
         updateRecord.setSuccessTime(new Date());
 
-        return update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
-                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_ING));
+        boolean result = shardRouter.execute(shardOfId(payOrderId), () -> update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
+                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_ING)));
+        evictCache(payOrderId);
+
+        // 累加日统计数据
+        if(result){
+            PayOrder dbPayOrder = shardRouter.execute(shardOfId(payOrderId), () -> getOne(PayOrder.gw().select(PayOrder::getCreatedAt, PayOrder::getMchNo, PayOrder::getWayCode, PayOrder::getAmount)
+                    .eq(PayOrder::getPayOrderId, payOrderId)));
+            orderStatisticsDayService.addPaySuccess(dbPayOrder.getCreatedAt(), dbPayOrder.getMchNo(), dbPayOrder.getWayCode(), dbPayOrder.getAmount());
+        }
+        return result;
     }
 
     /** 更新订单状态  【支付中】 --》 【订单关闭】 **/
@@ -91,8 +140,10 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         PayOrder updateRecord = new PayOrder();
         updateRecord.setState(PayOrder.STATE_CLOSED);
 
-        return update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
-                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_ING));
+        boolean result = shardRouter.execute(shardOfId(payOrderId), () -> update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
+                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_ING)));
+        evictCache(payOrderId);
+        return result;
     }
 
     /** 更新订单状态  【订单生成】 --》 【订单关闭】 **/
@@ -101,8 +152,10 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         PayOrder updateRecord = new PayOrder();
         updateRecord.setState(PayOrder.STATE_CLOSED);
 
-        return update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
-                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_INIT));
+        boolean result = shardRouter.execute(shardOfId(payOrderId), () -> update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
+                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_INIT)));
+        evictCache(payOrderId);
+        return result;
     }
 
 
@@ -116,8 +169,10 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         updateRecord.setChannelOrderNo(channelOrderNo);
         updateRecord.setChannelUser(channelUserId);
 
-        return update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
-                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_ING));
+        boolean result = shardRouter.execute(shardOfId(payOrderId), () -> update(updateRecord, new LambdaUpdateWrapper<PayOrder>()
+                .eq(PayOrder::getPayOrderId, payOrderId).eq(PayOrder::getState, PayOrder.STATE_ING)));
+        evictCache(payOrderId);
+        return result;
     }
 
 
@@ -134,18 +189,130 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         return false;
     }
 
+    /**
+     * 根据订单号查询订单 （优先读取本地短时缓存）
+     * 缓存仅在当前节点有效， 可能短时间内落后于DB， 仅适用于收银台页面展示等只读场景；
+     * 渠道回调、补单等需根据订单状态决定后续处理的场景， 必须使用getById读取DB。
+     * 返回的对象为副本， 调用方可修改。
+     **/
+    public PayOrder getByIdWithCache(String payOrderId){
+
+        if(StringUtils.isEmpty(payOrderId)){
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        CachedPayOrder cached = payOrderCacheMap.get(payOrderId);
+        if(cached != null && cached.expireAt > now){
+            return BeanUtil.copyProperties(cached.payOrder, PayOrder.class);
+        }
+
+        PayOrder payOrder = getById(payOrderId);
+        if(payOrder == null){
+            payOrderCacheMap.remove(payOrderId);
+            return null;
+        }
+
+        if(payOrderCacheMap.size() >= CACHE_MAX_SIZE){ // 清除已过期的缓存， 仍超出时不再缓存
+            payOrderCacheMap.values().removeIf(item -> item.expireAt <= now);
+        }
+        if(payOrderCacheMap.size() < CACHE_MAX_SIZE){
+            boolean isFinalState = payOrder.getState() != PayOrder.STATE_INIT && payOrder.getState() != PayOrder.STATE_ING;
+            CachedPayOrder newCached = new CachedPayOrder(BeanUtil.copyProperties(payOrder, PayOrder.class), now + (isFinalState ? CACHE_TTL_MS_FINAL : CACHE_TTL_MS_ACTIVE));
+
+            // 仅在缓存未被其他线程更新时写入 (避免状态变更清除缓存后, 写入旧数据)
+            if(cached == null){
+                payOrderCacheMap.putIfAbsent(payOrderId, newCached);
+            }else{
+                payOrderCacheMap.replace(payOrderId, cached, newCached);
+            }
+        }
+        return payOrder;
+    }
+
+    /** 清除订单缓存 （事务中调用时， 事务结束后再次清除， 避免提交前被其他线程写入旧数据） **/
+    public void evictCache(String payOrderId){
+
+        payOrderCacheMap.remove(payOrderId);
+
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    payOrderCacheMap.remove(payOrderId);
+                }
+            });
+        }
+    }
+
     /** 查询商户订单 **/
     public PayOrder queryMchOrder(String mchNo, String payOrderId, String mchOrderNo){
 
         if(StringUtils.isNotEmpty(payOrderId)){
-            return getOne(PayOrder.gw().eq(PayOrder::getMchNo, mchNo).eq(PayOrder::getPayOrderId, payOrderId));
+            return shardRouter.execute(shardOfId(payOrderId), () -> getOne(PayOrder.gw().eq(PayOrder::getMchNo, mchNo).eq(PayOrder::getPayOrderId, payOrderId)));
         }else if(StringUtils.isNotEmpty(mchOrderNo)){
-            return getOne(PayOrder.gw().eq(PayOrder::getMchNo, mchNo).eq(PayOrder::getMchOrderNo, mchOrderNo));
+            return shardRouter.executeOnShards(shardRouter.shardsOfMch(mchNo), () -> getOne(PayOrder.gw().eq(PayOrder::getMchNo, mchNo).eq(PayOrder::getMchOrderNo, mchOrderNo)));
         }else{
             return null;
         }
     }
 
+    /**
+     * 查询商户订单， 热表中不存在时查询归档表
+     * 归档订单为只读数据， 仅用于查询场景 （退款、关单等需更新订单的场景请使用queryMchOrder）
+     **/
+    public PayOrder queryMchOrderWithArchive(String mchNo, String payOrderId, String mchOrderNo){
+
+        PayOrder payOrder = queryMchOrder(mchNo, payOrderId, mchOrderNo);
+        if(payOrder != null){
+            return payOrder;
+        }
+
+        if(StringUtils.isNotEmpty(payOrderId)){
+            return shardRouter.execute(shardOfId(payOrderId),
+                    () -> selectArchiveOne(SeqKit.parseOrderIdTime(payOrderId), PayOrder.gw().eq(PayOrder::getMchNo, mchNo).eq(PayOrder::getPayOrderId, payOrderId)));
+        }else if(StringUtils.isNotEmpty(mchOrderNo)){
+            return shardRouter.executeOnShards(shardRouter.shardsOfMch(mchNo),
+                    () -> selectArchiveOne(null, PayOrder.gw().eq(PayOrder::getMchNo, mchNo).eq(PayOrder::getMchOrderNo, mchOrderNo)));
+        }
+        return null;
+    }
+
+    /** 商户订单号是否已存在 （同时查询热表及归档表， 避免商户复用已归档订单的订单号） **/
+    public boolean existsMchOrderNo(String mchNo, String mchOrderNo){
+
+        List<String> tableList = new ArrayList<>();
+        tableList.add(OrderArchiveService.PAY_ORDER.getSourceTable());
+        tableList.addAll(orderArchiveService.getArchiveTables(OrderArchiveService.PAY_ORDER.getSourceTable()));
+
+        LambdaQueryWrapper<PayOrder> wrapper = PayOrder.gw().eq(PayOrder::getMchNo, mchNo).eq(PayOrder::getMchOrderNo, mchOrderNo);
+        return shardRouter.executeOnShards(shardRouter.shardsOfMch(mchNo),
+                () -> sumLong(shardRouter.scatterRead(() -> baseMapper.countUnionExists(tableList, wrapper)))) > 0;
+    }
+
+    /** 根据订单号查询订单， 热表中不存在时查询归档表 （只读） **/
+    public PayOrder getByIdWithArchive(String payOrderId){
+
+        PayOrder payOrder = getById(payOrderId);
+        if(payOrder != null || StringUtils.isEmpty(payOrderId)){
+            return payOrder;
+        }
+        return shardRouter.execute(shardOfId(payOrderId), () -> selectArchiveOne(SeqKit.parseOrderIdTime(payOrderId), PayOrder.gw().eq(PayOrder::getPayOrderId, payOrderId)));
+    }
+
+    /** 按订单创建时间查找归档表， 时间未知时按月份倒序逐表查找 **/
+    private PayOrder selectArchiveOne(Date createdTime, LambdaQueryWrapper<PayOrder> wrapper){
+
+        for (String archiveTable : orderArchiveService.lookupArchiveTables(OrderArchiveService.PAY_ORDER.getSourceTable(), createdTime)) {
+            for (PayOrder payOrder : shardRouter.scatterRead(() -> baseMapper.selectArchiveOne(archiveTable, wrapper))) {
+                if(payOrder != null){
+                    return payOrder;
+                }
+            }
+        }
+        return null;
+    }
+
 
     public Map payCount(String mchNo, Byte state, Byte refundState, String dayStart, String dayEnd) {
         Map param = new HashMap<>();
@@ -187,17 +354,72 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         return payOrderMapper.payTypeCount(param);
     }
 
-    /** 更新订单为 超时状态 **/
+    /** 更新订单为 超时状态 （各分库按索引分批查询已过期的订单， 再按主键关闭， 避免大范围锁表） **/
     public Integer updateOrderExpired(){
 
+        int[] result = {0};
+        shardRouter.forEachShard(shard -> {
+            while(true){
+
+                List<String> payOrderIdList = new ArrayList<>();
+                baseMapper.selectList(PayOrder.gw()
+                        .select(PayOrder::getPayOrderId)
+                        .in(PayOrder::getState, Arrays.asList(PayOrder.STATE_INIT, PayOrder.STATE_ING))
+                        .le(PayOrder::getExpiredTime, new Date())
+                        .last("limit " + EXPIRED_BATCH_SIZE)
+                ).forEach(r -> payOrderIdList.add(r.getPayOrderId()));
+
+                int updateCount = updateOrderExpired(payOrderIdList);
+                result[0] += updateCount;
+
+                // 已处理完成 或 本批次无法更新（避免死循环）
+                if(payOrderIdList.size() < EXPIRED_BATCH_SIZE || updateCount <= 0){
+                    break;
+                }
+            }
+        });
+        return result[0];
+    }
+
+    /** 更新指定订单为 超时状态 （仅更新 未支付 & 已到失效时间 的订单） **/
+    public int updateOrderExpired(Collection<String> payOrderIdList){
+
+        if(payOrderIdList == null || payOrderIdList.isEmpty()){
+            return 0;
+        }
+
         PayOrder payOrder = new PayOrder();
         payOrder.setState(PayOrder.STATE_CLOSED);
 
-        return baseMapper.update(payOrder,
+        int result = updateByIdGroup(payOrderIdList, idList -> baseMapper.update(payOrder,
                 PayOrder.gw()
+                        .in(PayOrder::getPayOrderId, idList)
                         .in(PayOrder::getState, Arrays.asList(PayOrder.STATE_INIT, PayOrder.STATE_ING))
                         .le(PayOrder::getExpiredTime, new Date())
+        ));
+        payOrderIdList.forEach(this::evictCache);
+        return result;
+    }
+
+    /** 查询 失效时间早于expiredTimeEnd的未支付订单 （仅返回订单号及失效时间） **/
+    public List<PayOrder> listExpiringOrder(Date expiredTimeEnd, int limit){
+
+        List<PayOrder> result = list(PayOrder.gw()
+                .select(PayOrder::getPayOrderId, PayOrder::getExpiredTime)
+                .in(PayOrder::getState, Arrays.asList(PayOrder.STATE_INIT, PayOrder.STATE_ING))
+                .le(PayOrder::getExpiredTime, expiredTimeEnd)
+                .orderByAsc(PayOrder::getExpiredTime)
+                .last("limit " + limit)
         );
+
+        // 多个分库的结果合并
+        if(shardRouter.isEnabled()){
+            result.sort(Comparator.comparing(PayOrder::getExpiredTime));
+            if(result.size() > limit){
+                result = new ArrayList<>(result.subList(0, limit));
+            }
+        }
+        return result;
     }
 
     /** 更新订单 通知状态 --> 已发送 **/
@@ -205,35 +427,52 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         PayOrder payOrder = new PayOrder();
         payOrder.setNotifyState(CS.YES);
         payOrder.setPayOrderId(payOrderId);
-        return baseMapper.updateById(payOrder);
+        int result = shardRouter.execute(shardOfId(payOrderId), () -> baseMapper.updateById(payOrder));
+        evictCache(payOrderId);
+        return result;
+    }
+
+    /** 批量更新订单 通知状态 --> 已发送 **/
+    public int updateNotifySent(Collection<String> payOrderIdList){
+
+        if(payOrderIdList == null || payOrderIdList.isEmpty()){
+            return 0;
+        }
+
+        int result = updateByIdGroup(payOrderIdList, idList -> baseMapper.update(null, new LambdaUpdateWrapper<PayOrder>()
+                .set(PayOrder::getNotifyState, CS.YES)
+                .in(PayOrder::getPayOrderId, idList)));
+        payOrderIdList.forEach(this::evictCache);
+        return result;
     }
 
     /** 首页支付周统计 **/
     public JSONObject mainPageWeekCount(String mchNo) {
         JSONObject json = new JSONObject();
-        Map dayAmount = new LinkedHashMap();
         ArrayList array = new ArrayList<>();
-        BigDecimal payAmount = new BigDecimal(0);    // 当日金额
-        BigDecimal payWeek  = payAmount;   // 周总收益
+        BigDecimal payAmount;    // 当日金额
+        BigDecimal payWeek = new BigDecimal(0);   // 周总收益
         String todayAmount = "0.00";    // 今日金额
         String todayPayCount = "0";    // 今日交易笔数
         String yesterdayAmount = "0.00";    // 昨日金额
         Date today = new Date();
+
+        // 近七日的统计数据 （按日期汇总的统计表， 一次查询）
+        Map<String, Map> dayAmountMap = new HashMap<>();
+        List<Map> dayAmountList = orderStatisticsDayService.sumGroupByDate(mchNo, DateUtil.formatDate(DateUtil.offsetDay(today, -6)), DateUtil.formatDate(today), "%Y-%m-%d");
+        for (Map dayAmount : dayAmountList) {
+            dayAmountMap.put(dayAmount.get("groupDate").toString(), dayAmount);
+        }
+
         for(int i = 0 ; i < 7 ; i++){
-            Date date = DateUtil.offsetDay(today, -i).toJdkDate();
-            String dayStart = DateUtil.beginOfDay(date).toString(DatePattern.NORM_DATETIME_MINUTE_PATTERN);
-            String dayEnd = DateUtil.endOfDay(date).toString(DatePattern.NORM_DATETIME_MINUTE_PATTERN);
-            // 每日交易金额查询
-            dayAmount = payCount(mchNo, PayOrder.STATE_SUCCESS, null, dayStart, dayEnd);
-            if (dayAmount != null) {
-                payAmount = new BigDecimal(dayAmount.get("payAmount").toString());
-            }
+            Map dayAmount = dayAmountMap.get(DateUtil.formatDate(DateUtil.offsetDay(today, -i)));
+            payAmount = dayAmount == null ? new BigDecimal("0.00") : new BigDecimal(dayAmount.get("payAmount").toString());
             if (i == 0) {
-                todayAmount = dayAmount.get("payAmount").toString();
-                todayPayCount = dayAmount.get("payCount").toString();
+                todayAmount = payAmount.toString();
+                todayPayCount = dayAmount == null ? "0" : dayAmount.get("payCount").toString();
             }
             if (i == 1) {
-                yesterdayAmount = dayAmount.get("payAmount").toString();
+                yesterdayAmount = payAmount.toString();
             }
             payWeek = payWeek.add(payAmount);
             array.add(payAmount);
@@ -257,7 +496,7 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         // 服务商总数
         int isvCount = isvInfoMapper.selectCount(IsvInfo.gw());
         // 总交易金额
-        Map<String, String> payCountMap = payCount(mchNo, PayOrder.STATE_SUCCESS, null, null, null);
+        Map payCountMap = orderStatisticsDayService.sumAll(mchNo);
         json.put("totalMch", mchCount);
         json.put("totalIsv", isvCount);
         json.put("totalAmount", payCountMap.get("payAmount"));
@@ -267,7 +506,6 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
 
     /** 首页支付统计 **/
     public List<Map> mainPagePayCount(String mchNo, String createdStart, String createdEnd) {
-        Map param = new HashMap<>(); // 条件参数
         int daySpace = 6; // 默认最近七天（含当天）
         if (StringUtils.isNotEmpty(createdStart) && StringUtils.isNotEmpty(createdEnd)) {
             createdStart = createdStart + " 00:00:00";
@@ -280,15 +518,11 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
             createdEnd = DateUtil.formatDate(today) + " 23:59:59";
         }
 
-        if (StrUtil.isNotBlank(mchNo)) {
-            param.put("mchNo", mchNo);
-        }
-        param.put("createTimeStart", createdStart);
-        param.put("createTimeEnd", createdEnd);
-        // 查询收款的记录
-        List<Map> payOrderList = payOrderMapper.selectOrderCount(param);
-        // 查询退款的记录
-        List<Map> refundOrderList = payOrderMapper.selectOrderCount(param);
+        // 查询收款及退款的记录 （按日期汇总的统计表）
+        List<Map> orderList = orderStatisticsDayService.sumGroupByDate(StrUtil.isNotBlank(mchNo) ? mchNo : null,
+                StrUtil.subBefore(createdStart, " ", false), StrUtil.subBefore(createdEnd, " ", false), "%m-%d");
+        List<Map> payOrderList = orderList;
+        List<Map> refundOrderList = orderList;
         // 生成前端返回参数类型
         List<Map> returnList = getReturnList(daySpace, createdEnd, payOrderList, refundOrderList);
         return returnList;
@@ -309,8 +543,8 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
             createdStart = start + " 00:00:00";
             createdEnd = end + " 23:59:59";
         }
-        // 统计列表
-        List<Map> payCountMap = payTypeCount(mchNo, PayOrder.STATE_SUCCESS, null, createdStart, createdEnd);
+        // 统计列表 （按支付方式汇总的统计表）
+        List<Map> payCountMap = orderStatisticsDayService.sumGroupByWayCode(mchNo, StrUtil.subBefore(createdStart, " ", false), StrUtil.subBefore(createdEnd, " ", false));
 
         // 得到所有支付方式
         Map<String, String> payWayNameMap = new HashMap<>();
@@ -386,8 +620,8 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
         //商家订单入账金额 （支付金额 - 手续费 - 退款金额 - 总分账金额）
         Long mchIncomeAmount = dbPayOrder.getAmount() - dbPayOrder.getMchFeeAmount() - dbPayOrder.getRefundAmount();
 
-        //减去已分账金额
-        mchIncomeAmount -= payOrderDivisionRecordMapper.sumSuccessDivisionAmount(dbPayOrder.getPayOrderId());
+        //减去已分账金额 （分账记录与支付订单位于同一分库）
+        mchIncomeAmount -= shardRouter.execute(shardOfId(dbPayOrder.getPayOrderId()), () -> payOrderDivisionRecordMapper.sumSuccessDivisionAmount(dbPayOrder.getPayOrderId()));
 
         return mchIncomeAmount <= 0 ? 0 : mchIncomeAmount;
 
@@ -402,6 +636,49 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
      * @return
      */
     public IPage<PayOrder> listByPage(IPage iPage, PayOrder payOrder, JSONObject paramJSON, LambdaQueryWrapper<PayOrder> wrapper) {
+
+        buildListCondition(wrapper, payOrder, paramJSON);
+
+        // 按商户查询时， 仅查询商户数据所在的分库
+        if (StringUtils.isNotEmpty(payOrder.getMchNo())) {
+            return shardRouter.executeOnShards(shardRouter.shardsOfMch(payOrder.getMchNo()), () -> pageByCondition(iPage, wrapper, paramJSON));
+        }
+        return pageByCondition(iPage, wrapper, paramJSON);
+    }
+
+    private IPage<PayOrder> pageByCondition(IPage<PayOrder> iPage, LambdaQueryWrapper<PayOrder> wrapper, JSONObject paramJSON) {
+
+        // 查询时间范围包含已归档的月份时， 合并查询热表及对应月份的归档表
+        List<String> archiveTables = routeArchiveTables(paramJSON);
+        if (!archiveTables.isEmpty()) {
+            if (paramJSON.containsKey(OrderPageHelper.PARAM_CURSOR)) {
+                throw new BizException("查询时间范围包含已归档的数据， 不支持游标分页");
+            }
+
+            List<String> tableList = new ArrayList<>(archiveTables.size() + 1);
+            tableList.add(OrderArchiveService.PAY_ORDER.getSourceTable());
+            tableList.addAll(archiveTables);
+            return scatterPage(iPage, shardPage -> baseMapper.selectUnionPage(shardPage, tableList, wrapper));
+        }
+
+        return PAGE_HELPER.page(this, iPage, wrapper, paramJSON,
+                (w, limit) -> Math.min(limit, sumLong(shardRouter.scatterRead(() -> baseMapper.countLimit(w, limit)))));
+    }
+
+    /** 列表查询的时间范围 (createdStart, createdEnd) 包含的归档表， 未指定开始时间时仅查询热表 （列表查询、数据导出共用） **/
+    public List<String> routeArchiveTables(JSONObject paramJSON) {
+
+        if (paramJSON == null || StringUtils.isEmpty(paramJSON.getString("createdStart"))) {
+            return Collections.emptyList();
+        }
+
+        String createdEnd = paramJSON.getString("createdEnd");
+        return orderArchiveService.routeArchiveTables(OrderArchiveService.PAY_ORDER.getSourceTable(),
+                DateUtil.parse(paramJSON.getString("createdStart")), StringUtils.isEmpty(createdEnd) ? null : DateUtil.parse(createdEnd));
+    }
+
+    /** 列表查询条件 （列表查询、数据导出共用） **/
+    public LambdaQueryWrapper<PayOrder> buildListCondition(LambdaQueryWrapper<PayOrder> wrapper, PayOrder payOrder, JSONObject paramJSON) {
         if (StringUtils.isNotEmpty(payOrder.getPayOrderId())) {
             wrapper.eq(PayOrder::getPayOrderId, payOrder.getPayOrderId());
         }
@@ -448,9 +725,19 @@ public class PayOrderService extends ServiceImpl<PayOrderMapper, PayOrder> {
                         .or().eq(PayOrder::getChannelOrderNo, paramJSON.getString("unionOrderId"));
             });
         }
+        return wrapper;
+    }
 
-        wrapper.orderByDesc(PayOrder::getCreatedAt);
+    /** 缓存的订单 **/
+    private static class CachedPayOrder {
 
-        return page(iPage, wrapper);
+        private final PayOrder payOrder;
+        private final long expireAt;
+
+        CachedPayOrder(PayOrder payOrder, long expireAt){
+            this.payOrder = payOrder;
+            this.expireAt = expireAt;
+        }
     }
+
 }
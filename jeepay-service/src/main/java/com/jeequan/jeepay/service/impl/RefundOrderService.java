@@ -19,44 +19,72 @@ import com.alibaba.fastjson.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.jeequan.jeepay.core.entity.PayOrder;
 import com.jeequan.jeepay.core.entity.RefundOrder;
 import com.jeequan.jeepay.core.exception.BizException;
 import com.jeequan.jeepay.service.mapper.PayOrderMapper;
 import com.jeequan.jeepay.service.mapper.RefundOrderMapper;
+import com.jeequan.jeepay.service.shard.ShardServiceImpl;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 
 /**
  * <p>
  * 退款订单表 服务实现类
+ * 退款订单与所属支付订单位于同一分库 （退款订单号使用支付订单的分片号）。
  * </p>
  *
  * @author [mybatis plus generator]
  * @since 2021-04-27
  */
 @Service
-public class RefundOrderService extends ServiceImpl<RefundOrderMapper, RefundOrder> {
+public class RefundOrderService extends ShardServiceImpl<RefundOrderMapper, RefundOrder> {
+
+    /** 列表分页查询 （页码分页 & 游标分页） **/
+    private static final OrderPageHelper<RefundOrder> PAGE_HELPER = new OrderPageHelper<>("refund_order_id", RefundOrder::getCreatedAt, RefundOrder::getRefundOrderId);
 
     @Autowired private PayOrderMapper payOrderMapper;
+    @Autowired private PayOrderService payOrderService;
+    @Autowired private OrderStatisticsDayService orderStatisticsDayService;
+
+    @Override
+    protected int shardOfId(Serializable id) {
+        return shardRouter.shardOfOrderId(id.toString());
+    }
+
+    @Override
+    protected Integer shardOfEntity(RefundOrder entity) {
+        return entity.getRefundOrderId() == null ? null : shardRouter.shardOfOrderId(entity.getRefundOrderId());
+    }
+
+    @Override
+    protected Comparator<RefundOrder> pageOrder() {
+        return PAGE_HELPER.getOrder();
+    }
 
     /** 查询商户订单 **/
     public RefundOrder queryMchOrder(String mchNo, String mchRefundNo, String refundOrderId){
 
         if(StringUtils.isNotEmpty(refundOrderId)){
-            return getOne(RefundOrder.gw().eq(RefundOrder::getMchNo, mchNo).eq(RefundOrder::getRefundOrderId, refundOrderId));
+            return shardRouter.execute(shardOfId(refundOrderId), () -> getOne(RefundOrder.gw().eq(RefundOrder::getMchNo, mchNo).eq(RefundOrder::getRefundOrderId, refundOrderId)));
         }else if(StringUtils.isNotEmpty(mchRefundNo)){
-            return getOne(RefundOrder.gw().eq(RefundOrder::getMchNo, mchNo).eq(RefundOrder::getMchRefundNo, mchRefundNo));
+            return shardRouter.executeOnShards(shardRouter.shardsOfMch(mchNo), () -> getOne(RefundOrder.gw().eq(RefundOrder::getMchNo, mchNo).eq(RefundOrder::getMchRefundNo, mchRefundNo)));
         }else{
             return null;
         }
     }
 
+    /** 支付订单的退款成功总金额 **/
+    public Long sumSuccessRefundAmount(String payOrderId){
+        return shardRouter.execute(shardRouter.shardOfOrderId(payOrderId), () -> baseMapper.sumSuccessRefundAmount(payOrderId));
+    }
 
     /** 更新退款单状态  【退款单生成】 --》 【退款中】 **/
     public boolean updateInit2Ing(String refundOrderId, String channelOrderNo){
@@ -65,13 +93,17 @@ public class RefundOrderService extends ServiceImpl<RefundOrderMapper, RefundOrd
         updateRecord.setState(RefundOrder.STATE_ING);
         updateRecord.setChannelOrderNo(channelOrderNo);
 
-        return update(updateRecord, new LambdaUpdateWrapper<RefundOrder>()
-                .eq(RefundOrder::getRefundOrderId, refundOrderId).eq(RefundOrder::getState, RefundOrder.STATE_INIT));
+        return shardRouter.execute(shardOfId(refundOrderId), () -> update(updateRecord, new LambdaUpdateWrapper<RefundOrder>()
+                .eq(RefundOrder::getRefundOrderId, refundOrderId).eq(RefundOrder::getState, RefundOrder.STATE_INIT)));
     }
 
-    /** 更新退款单状态  【退款中】 --》 【退款成功】 **/
+    /** 更新退款单状态  【退款中】 --》 【退款成功】 （退款订单与支付订单位于同一分库） **/
     @Transactional
     public boolean updateIng2Success(String refundOrderId, String channelOrderNo){
+        return shardRouter.execute(shardOfId(refundOrderId), () -> updateIng2SuccessInShard(refundOrderId, channelOrderNo));
+    }
+
+    private boolean updateIng2SuccessInShard(String refundOrderId, String channelOrderNo){
 
         RefundOrder updateRecord = new RefundOrder();
         updateRecord.setState(RefundOrder.STATE_SUCCESS);
@@ -91,6 +123,13 @@ public class RefundOrderService extends ServiceImpl<RefundOrderMapper, RefundOrd
         if(updateCount <= 0){
             throw new BizException("更新订单数据异常");
         }
+        payOrderService.evictCache(refundOrder.getPayOrderId());
+
+        //3. 累加日统计数据 （事务提交后）
+        PayOrder payOrder = payOrderMapper.selectOne(PayOrder.gw().select(PayOrder::getCreatedAt, PayOrder::getMchNo, PayOrder::getWayCode, PayOrder::getRefundState)
+                .eq(PayOrder::getPayOrderId, refundOrder.getPayOrderId()));
+        orderStatisticsDayService.addRefundSuccess(payOrder.getCreatedAt(), payOrder.getMchNo(), payOrder.getWayCode(),
+                refundOrder.getRefundAmount(), payOrder.getRefundState() == PayOrder.REFUND_STATE_ALL);
 
         return true;
     }
@@ -106,8 +145,8 @@ public class RefundOrderService extends ServiceImpl<RefundOrderMapper, RefundOrd
         updateRecord.setErrMsg(channelErrMsg);
         updateRecord.setChannelOrderNo(channelOrderNo);
 
-        return update(updateRecord, new LambdaUpdateWrapper<RefundOrder>()
-                .eq(RefundOrder::getRefundOrderId, refundOrderId).eq(RefundOrder::getState, RefundOrder.STATE_ING));
+        return shardRouter.execute(shardOfId(refundOrderId), () -> update(updateRecord, new LambdaUpdateWrapper<RefundOrder>()
+                .eq(RefundOrder::getRefundOrderId, refundOrderId).eq(RefundOrder::getState, RefundOrder.STATE_ING)));
     }
 
 
@@ -132,15 +171,32 @@ public class RefundOrderService extends ServiceImpl<RefundOrderMapper, RefundOrd
         RefundOrder refundOrder = new RefundOrder();
         refundOrder.setState(RefundOrder.STATE_CLOSED);
 
-        return baseMapper.update(refundOrder,
+        return shardRouter.scatterWrite(() -> baseMapper.update(refundOrder,
                 RefundOrder.gw()
                         .in(RefundOrder::getState, Arrays.asList(RefundOrder.STATE_INIT, RefundOrder.STATE_ING))
                         .le(RefundOrder::getExpiredTime, new Date())
-        );
+        ));
     }
 
 
     public IPage<RefundOrder> pageList(IPage iPage, LambdaQueryWrapper<RefundOrder> wrapper, RefundOrder refundOrder, JSONObject paramJSON) {
+
+        buildListCondition(wrapper, refundOrder, paramJSON);
+
+        // 按商户查询时， 仅查询商户数据所在的分库
+        if (StringUtils.isNotEmpty(refundOrder.getMchNo())) {
+            return shardRouter.executeOnShards(shardRouter.shardsOfMch(refundOrder.getMchNo()), () -> pageByCondition(iPage, wrapper, paramJSON));
+        }
+        return pageByCondition(iPage, wrapper, paramJSON);
+    }
+
+    private IPage<RefundOrder> pageByCondition(IPage<RefundOrder> iPage, LambdaQueryWrapper<RefundOrder> wrapper, JSONObject paramJSON) {
+        return PAGE_HELPER.page(this, iPage, wrapper, paramJSON,
+                (w, limit) -> Math.min(limit, sumLong(shardRouter.scatterRead(() -> baseMapper.countLimit(w, limit)))));
+    }
+
+    /** 列表查询条件 （列表查询、数据导出共用） **/
+    public LambdaQueryWrapper<RefundOrder> buildListCondition(LambdaQueryWrapper<RefundOrder> wrapper, RefundOrder refundOrder, JSONObject paramJSON) {
         if (StringUtils.isNotEmpty(refundOrder.getRefundOrderId())) {
             wrapper.eq(RefundOrder::getRefundOrderId, refundOrder.getRefundOrderId());
         }
@@ -185,8 +241,6 @@ public class RefundOrderService extends ServiceImpl<RefundOrderMapper, RefundOrd
                         .or().eq(RefundOrder::getMchRefundNo, paramJSON.getString("unionOrderId"));
             });
         }
-        wrapper.orderByDesc(RefundOrder::getCreatedAt);
-
-        return page(iPage, wrapper);
+        return wrapper;
     }
 }
@@ -15,51 +15,82 @@
  */
 package com.jeequan.jeepay.service.impl;
 
+import cn.hutool.core.thread.NamedThreadFactory;
 import com.alibaba.fastjson.JSONObject;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.jeequan.jeepay.core.entity.SysConfig;
 import com.jeequan.jeepay.core.model.DBApplicationConfig;
 import com.jeequan.jeepay.core.service.ISysConfigService;
 import com.jeequan.jeepay.service.mapper.SysConfigMapper;
-import org.apache.commons.lang3.tuple.MutablePair;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
  * 系统配置表 服务实现类
  * </p>
+ * 系统应用配置(applicationConfig) 始终缓存， 不受 IS_USE_CACHE 影响：
+ * 收到配置重置MQ时重新加载， 并定时检查配置版本 (记录数 + 最大更新时间)， 避免MQ丢失时长期使用旧配置。
  *
  * @author [mybatis plus generator]
  * @since 2020-07-29
  */
+@Slf4j
 @Service
 public class SysConfigService extends ServiceImpl<SysConfigMapper, SysConfig> implements ISysConfigService {
 
     /** 是否启用缓存
      * true: 表示将使用内存缓存， 将部分系统配置项 或 商户应用/服务商信息进行缓存并读取
      * false: 直接查询DB
+     * 注意： 系统应用配置(applicationConfig) 不受此项影响， 始终缓存
      * **/
     public static boolean IS_USE_CACHE = false;
 
     @Autowired
     private SysConfigService sysConfigService;
 
-    /** 数据库application配置参数 **/
-    private static MutablePair<String, DBApplicationConfig> APPLICATION_CONFIG = new MutablePair<>("applicationConfig", null);
+    /** 系统应用配置 分组key **/
+    private static final String APPLICATION_CONFIG_GROUP_KEY = "applicationConfig";
 
-    public synchronized void initDBConfig(String groupKey) {
+    /** 定时检查配置版本的间隔(秒) **/
+    private static final int VERSION_CHECK_SECONDS = 30;
 
-        // 若当前系统不缓存，则直接返回
-        if(!IS_USE_CACHE){
-            return;
-        }
+    /** 系统应用配置快照 **/
+    private volatile ApplicationConfigSnapshot applicationConfigSnapshot;
+
+    private ScheduledExecutorService versionCheckExecutor;
 
-        if(APPLICATION_CONFIG.getLeft().equalsIgnoreCase(groupKey)){
-            APPLICATION_CONFIG.right = this.selectByGroupKey(groupKey).toJavaObject(DBApplicationConfig.class);
+    @PostConstruct
+    public void init(){
+        versionCheckExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("sys-config-version-", true));
+        versionCheckExecutor.scheduleWithFixedDelay(this::checkVersion, VERSION_CHECK_SECONDS, VERSION_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy(){
+        versionCheckExecutor.shutdownNow();
+    }
+
+    /** 重新加载配置 (接收到配置重置MQ) **/
+    public synchronized void initDBConfig(String groupKey) {
+
+        if(APPLICATION_CONFIG_GROUP_KEY.equalsIgnoreCase(groupKey)){
+            // 先读取版本再读取数据， 读取期间的变更将在下一次版本检查时重新加载
+            String version = selectVersionByGroupKey(APPLICATION_CONFIG_GROUP_KEY);
+            DBApplicationConfig config = DBApplicationConfig.of(this.selectByGroupKey(APPLICATION_CONFIG_GROUP_KEY));
+            applicationConfigSnapshot = new ApplicationConfigSnapshot(version, config);
         }
     }
 
@@ -67,16 +98,39 @@ public class SysConfigService extends ServiceImpl<SysConfigMapper, SysConfig> im
     @Override
     public DBApplicationConfig getDBApplicationConfig() {
 
-        // 查询DB
-        if(!IS_USE_CACHE){
-            return this.selectByGroupKey(APPLICATION_CONFIG.getLeft()).toJavaObject(DBApplicationConfig.class);
+        ApplicationConfigSnapshot snapshot = applicationConfigSnapshot;
+        if(snapshot == null){
+            initDBConfig(APPLICATION_CONFIG_GROUP_KEY);
+            snapshot = applicationConfigSnapshot;
+        }
+        return snapshot.config;
+    }
+
+    /** 检查配置版本， 变化时重新加载 **/
+    private void checkVersion(){
+
+        ApplicationConfigSnapshot snapshot = applicationConfigSnapshot;
+        if(snapshot == null){ // 尚未使用
+            return ;
         }
 
-        // 缓存数据
-        if(APPLICATION_CONFIG.getRight() == null ){
-            initDBConfig(APPLICATION_CONFIG.getLeft());
+        try {
+            if(!Objects.equals(snapshot.version, selectVersionByGroupKey(APPLICATION_CONFIG_GROUP_KEY))){
+                initDBConfig(APPLICATION_CONFIG_GROUP_KEY);
+                log.info("系统应用配置已变更， 已重新加载");
+            }
+        } catch (Exception e) {
+            log.error("检查系统应用配置版本异常", e);
         }
-        return APPLICATION_CONFIG.right;
+    }
+
+    /** 配置版本： 记录数 + 最大更新时间 **/
+    private String selectVersionByGroupKey(String groupKey){
+
+        Map<String, Object> versionMap = getMap(new QueryWrapper<SysConfig>()
+                .select("COUNT(*) AS cnt", "MAX(updated_at) AS maxUpdatedAt").eq("group_key", groupKey));
+
+        return versionMap == null ? null : versionMap.get("cnt") + "_" + versionMap.get("maxUpdatedAt");
     }
 
 
@@ -104,4 +158,13 @@ public class SysConfigService extends ServiceImpl<SysConfigMapper, SysConfig> im
         }
         return count;
     }
+
+    /** 配置快照 **/
+    @AllArgsConstructor
+    private static class ApplicationConfigSnapshot {
+
+        private final String version;
+        private final DBApplicationConfig config;
+    }
+
 }
@@ -19,26 +19,46 @@ import com.alibaba.fastjson.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.jeequan.jeepay.core.entity.TransferOrder;
 import com.jeequan.jeepay.service.mapper.TransferOrderMapper;
+import com.jeequan.jeepay.service.shard.ShardServiceImpl;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.Serializable;
+import java.util.Comparator;
 import java.util.Date;
 
 /**
  * <p>
  * 转账订单表 服务实现类
+ * 开启订单分库时按转账订单号中的分片号路由， 历史订单位于默认库。
  * </p>
  *
  * @author [mybatis plus generator]
  * @since 2021-08-11
  */
 @Service
-public class TransferOrderService extends ServiceImpl<TransferOrderMapper, TransferOrder> {
+public class TransferOrderService extends ShardServiceImpl<TransferOrderMapper, TransferOrder> {
 
+    /** 列表分页查询 （页码分页 & 游标分页） **/
+    private static final OrderPageHelper<TransferOrder> PAGE_HELPER = new OrderPageHelper<>("transfer_id", TransferOrder::getCreatedAt, TransferOrder::getTransferId);
+
+    @Override
+    protected int shardOfId(Serializable id) {
+        return shardRouter.shardOfOrderId(id.toString());
+    }
+
+    @Override
+    protected Integer shardOfEntity(TransferOrder entity) {
+        return entity.getTransferId() == null ? null : shardRouter.shardOfOrderId(entity.getTransferId());
+    }
+
+    @Override
+    protected Comparator<TransferOrder> pageOrder() {
+        return PAGE_HELPER.getOrder();
+    }
 
     /** 更新转账订单状态  【转账订单生成】 --》 【转账中】 **/
     public boolean updateInit2Ing(String transferId){
@@ -46,8 +66,8 @@ public class TransferOrderService extends ServiceImpl<TransferOrderMapper, Trans
         TransferOrder updateRecord = new TransferOrder();
         updateRecord.setState(TransferOrder.STATE_ING);
 
-        return update(updateRecord, new LambdaUpdateWrapper<TransferOrder>()
-                .eq(TransferOrder::getTransferId, transferId).eq(TransferOrder::getState, TransferOrder.STATE_INIT));
+        return shardRouter.execute(shardOfId(transferId), () -> update(updateRecord, new LambdaUpdateWrapper<TransferOrder>()
+                .eq(TransferOrder::getTransferId, transferId).eq(TransferOrder::getState, TransferOrder.STATE_INIT)));
     }
 
 
@@ -61,8 +81,8 @@ public class TransferOrderService extends ServiceImpl<TransferOrderMapper, Trans
         updateRecord.setSuccessTime(new Date());
 
         //更新转账订单表数据
-        if(! update(updateRecord, new LambdaUpdateWrapper<TransferOrder>()
-                .eq(TransferOrder::getTransferId, transferId).eq(TransferOrder::getState, TransferOrder.STATE_ING))
+        if(! shardRouter.execute(shardOfId(transferId), () -> update(updateRecord, new LambdaUpdateWrapper<TransferOrder>()
+                .eq(TransferOrder::getTransferId, transferId).eq(TransferOrder::getState, TransferOrder.STATE_ING)))
         ){
             return false;
         }
@@ -81,8 +101,8 @@ public class TransferOrderService extends ServiceImpl<TransferOrderMapper, Trans
         updateRecord.setErrMsg(channelErrMsg);
         updateRecord.setChannelOrderNo(channelOrderNo);
 
-        return update(updateRecord, new LambdaUpdateWrapper<TransferOrder>()
-                .eq(TransferOrder::getTransferId, transferId).eq(TransferOrder::getState, TransferOrder.STATE_ING));
+        return shardRouter.execute(shardOfId(transferId), () -> update(updateRecord, new LambdaUpdateWrapper<TransferOrder>()
+                .eq(TransferOrder::getTransferId, transferId).eq(TransferOrder::getState, TransferOrder.STATE_ING)));
     }
 
 
@@ -106,9 +126,9 @@ public class TransferOrderService extends ServiceImpl<TransferOrderMapper, Trans
     public TransferOrder queryMchOrder(String mchNo, String mchOrderNo, String transferId){
 
         if(StringUtils.isNotEmpty(transferId)){
-            return getOne(TransferOrder.gw().eq(TransferOrder::getMchNo, mchNo).eq(TransferOrder::getTransferId, transferId));
+            return shardRouter.execute(shardOfId(transferId), () -> getOne(TransferOrder.gw().eq(TransferOrder::getMchNo, mchNo).eq(TransferOrder::getTransferId, transferId)));
         }else if(StringUtils.isNotEmpty(mchOrderNo)){
-            return getOne(TransferOrder.gw().eq(TransferOrder::getMchNo, mchNo).eq(TransferOrder::getMchOrderNo, mchOrderNo));
+            return shardRouter.executeOnShards(shardRouter.shardsOfMch(mchNo), () -> getOne(TransferOrder.gw().eq(TransferOrder::getMchNo, mchNo).eq(TransferOrder::getMchOrderNo, mchOrderNo)));
         }else{
             return null;
         }
@@ -116,6 +136,23 @@ public class TransferOrderService extends ServiceImpl<TransferOrderMapper, Trans
 
 
     public IPage<TransferOrder> pageList(IPage iPage, LambdaQueryWrapper<TransferOrder> wrapper, TransferOrder transferOrder, JSONObject paramJSON) {
+
+        buildListCondition(wrapper, transferOrder, paramJSON);
+
+        // 按商户查询时， 仅查询商户数据所在的分库
+        if (StringUtils.isNotEmpty(transferOrder.getMchNo())) {
+            return shardRouter.executeOnShards(shardRouter.shardsOfMch(transferOrder.getMchNo()), () -> pageByCondition(iPage, wrapper, paramJSON));
+        }
+        return pageByCondition(iPage, wrapper, paramJSON);
+    }
+
+    private IPage<TransferOrder> pageByCondition(IPage<TransferOrder> iPage, LambdaQueryWrapper<TransferOrder> wrapper, JSONObject paramJSON) {
+        return PAGE_HELPER.page(this, iPage, wrapper, paramJSON,
+                (w, limit) -> Math.min(limit, sumLong(shardRouter.scatterRead(() -> baseMapper.countLimit(w, limit)))));
+    }
+
+    /** 列表查询条件 （列表查询、数据导出共用） **/
+    public LambdaQueryWrapper<TransferOrder> buildListCondition(LambdaQueryWrapper<TransferOrder> wrapper, TransferOrder transferOrder, JSONObject paramJSON) {
         if (StringUtils.isNotEmpty(transferOrder.getTransferId())) {
             wrapper.eq(TransferOrder::getTransferId, transferOrder.getTransferId());
         }
@@ -150,8 +187,6 @@ public class TransferOrderService extends ServiceImpl<TransferOrderMapper, Trans
                         .or().eq(TransferOrder::getChannelOrderNo, paramJSON.getString("unionOrderId"));
             });
         }
-        wrapper.orderByDesc(TransferOrder::getCreatedAt);
-
-        return page(iPage, wrapper);
+        return wrapper;
     }
 }
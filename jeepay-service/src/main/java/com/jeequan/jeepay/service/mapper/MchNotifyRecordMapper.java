@@ -19,6 +19,8 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.jeequan.jeepay.core.entity.MchNotifyRecord;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 /**
  * <p>
  * 商户通知表 Mapper 接口
@@ -31,6 +33,9 @@ public interface MchNotifyRecordMapper extends BaseMapper<MchNotifyRecord> {
 
     Integer updateNotifyResult(@Param("notifyId") Long notifyId, @Param("state") Byte state, @Param("resResult") String resResult);
 
+    /** 批量更新商户回调的结果及状态 （每条记录仅需 notifyId, state, resResult） **/
+    Integer updateNotifyResultBatch(@Param("recordList") List<MchNotifyRecord> recordList);
+
     /*
      * 功能描述: 更改为通知中 & 增加允许重发通知次数
      * @param notifyId
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.jeequan.jeepay.core.entity.OrderArchive;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 订单归档 Mapper 接口
+ * 表名、主键列、归档条件均由服务内部常量指定， 不接收外部输入。
+ * </p>
+ */
+public interface OrderArchiveMapper extends BaseMapper<OrderArchive> {
+
+    /** 创建归档表 （结构与源表一致） **/
+    int createArchiveTable(@Param("archiveTable") String archiveTable, @Param("sourceTable") String sourceTable);
+
+    /** 查询已存在的归档表名称 **/
+    List<String> selectArchiveTables(@Param("tablePrefix") String tablePrefix);
+
+    /** 查询表的列名 （按列顺序） **/
+    List<String> selectTableColumns(@Param("tableName") String tableName);
+
+    /** 查询待归档数据的主键及创建时间 （按创建时间正序）， 可退款的数据需早于refundableCutoff **/
+    List<Map> selectArchivableKeys(@Param("sourceTable") String sourceTable, @Param("pkColumn") String pkColumn,
+                                   @Param("archiveCondition") String archiveCondition, @Param("refundableCondition") String refundableCondition,
+                                   @Param("cutoff") Date cutoff, @Param("refundableCutoff") Date refundableCutoff, @Param("limit") int limit);
+
+    /** 锁定待归档数据 （事务内执行， 仍满足归档条件的数据） **/
+    List<Object> lockArchivableKeys(@Param("sourceTable") String sourceTable, @Param("pkColumn") String pkColumn,
+                                    @Param("archiveCondition") String archiveCondition, @Param("refundableCondition") String refundableCondition,
+                                    @Param("refundableCutoff") Date refundableCutoff, @Param("pkList") Collection<?> pkList);
+
+    /** 复制到归档表 **/
+    int copyToArchive(@Param("archiveTable") String archiveTable, @Param("sourceTable") String sourceTable, @Param("columnList") List<String> columnList,
+                      @Param("pkColumn") String pkColumn, @Param("pkList") Collection<?> pkList);
+
+    /** 从源表删除 **/
+    int deleteFromSource(@Param("sourceTable") String sourceTable, @Param("pkColumn") String pkColumn, @Param("pkList") Collection<?> pkList);
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.jeequan.jeepay.core.entity.OrderStatisticsDay;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 订单日统计表 Mapper 接口
+ * </p>
+ */
+public interface OrderStatisticsDayMapper extends BaseMapper<OrderStatisticsDay> {
+
+    /** 累加统计数据 （不存在则插入） **/
+    int addBatch(@Param("list") List<OrderStatisticsDay> list);
+
+    /** 统计数据置零 （对账前） **/
+    int resetByDate(@Param("dateStart") Date dateStart, @Param("dateEnd") Date dateEnd);
+
+    /** 按订单表重新统计 [dateStart, dateEnd) 的数据 **/
+    int reconcileByDate(@Param("dateStart") Date dateStart, @Param("dateEnd") Date dateEnd);
+
+    /** 按订单表汇总 [dateStart, dateEnd) 的数据 （订单分库时各分库分别汇总） **/
+    List<OrderStatisticsDay> selectStatByDate(@Param("dateStart") Date dateStart, @Param("dateEnd") Date dateEnd);
+
+    /** 写入统计数据 （覆盖已存在的数据） **/
+    int replaceBatch(@Param("list") List<OrderStatisticsDay> list);
+
+    /** 按日期汇总 **/
+    List<Map> sumGroupByDate(@Param("mchNo") String mchNo, @Param("dateStart") String dateStart, @Param("dateEnd") String dateEnd, @Param("dateFormat") String dateFormat);
+
+    /** 按支付方式汇总 **/
+    List<Map> sumGroupByWayCode(@Param("mchNo") String mchNo, @Param("dateStart") String dateStart, @Param("dateEnd") String dateEnd);
+
+    /** 汇总全部 **/
+    Map sumAll(@Param("mchNo") String mchNo);
+}
@@ -15,9 +15,13 @@
  */
 package com.jeequan.jeepay.service.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.jeequan.jeepay.core.entity.PayOrder;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 import java.util.Map;
@@ -40,4 +44,22 @@ public interface PayOrderMapper extends BaseMapper<PayOrder> {
 
     /** 更新订单退款金额和次数 **/
     int updateRefundAmountAndCount(@Param("payOrderId") String payOrderId, @Param("currentRefundAmount") Long currentRefundAmount);
+
+    /** 限定最大条数的计数 **/
+    long countLimit(@Param(Constants.WRAPPER) Wrapper<PayOrder> wrapper, @Param("limit") int limit);
+
+    /** 流式查询 (逐行回调， 用于数据导出) **/
+    void streamList(@Param(Constants.WRAPPER) Wrapper<PayOrder> wrapper, ResultHandler<PayOrder> handler);
+
+    /** 流式查询归档表 (逐行回调， 用于数据导出) **/
+    void streamArchiveList(@Param("archiveTable") String archiveTable, @Param(Constants.WRAPPER) Wrapper<PayOrder> wrapper, ResultHandler<PayOrder> handler);
+
+    /** 查询归档表 （单条） **/
+    PayOrder selectArchiveOne(@Param("archiveTable") String archiveTable, @Param(Constants.WRAPPER) Wrapper<PayOrder> wrapper);
+
+    /** 查询多个表中是否存在满足条件的数据 （每个表最多计1条） **/
+    long countUnionExists(@Param("tableList") List<String> tableList, @Param(Constants.WRAPPER) Wrapper<PayOrder> wrapper);
+
+    /** 合并查询热表及归档表 （分页） **/
+    IPage<PayOrder> selectUnionPage(IPage<PayOrder> page, @Param("tableList") List<String> tableList, @Param(Constants.WRAPPER) Wrapper<PayOrder> wrapper);
 }
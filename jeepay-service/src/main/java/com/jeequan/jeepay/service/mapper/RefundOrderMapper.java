@@ -15,8 +15,12 @@
  */
 package com.jeequan.jeepay.service.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.jeequan.jeepay.core.entity.RefundOrder;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 /**
  * <p>
@@ -31,4 +35,9 @@ public interface RefundOrderMapper extends BaseMapper<RefundOrder> {
     /** 查询全部退成功金额 **/
     Long sumSuccessRefundAmount(String payOrderId);
 
+    /** 限定最大条数的计数 **/
+    long countLimit(@Param(Constants.WRAPPER) Wrapper<RefundOrder> wrapper, @Param("limit") int limit);
+
+    /** 流式查询 (逐行回调， 用于数据导出) **/
+    void streamList(@Param(Constants.WRAPPER) Wrapper<RefundOrder> wrapper, ResultHandler<RefundOrder> handler);
 }
@@ -15,8 +15,12 @@
  */
 package com.jeequan.jeepay.service.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.jeequan.jeepay.core.entity.TransferOrder;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 /**
  * <p>
@@ -28,4 +32,9 @@ import com.jeequan.jeepay.core.entity.TransferOrder;
  */
 public interface TransferOrderMapper extends BaseMapper<TransferOrder> {
 
+    /** 限定最大条数的计数 **/
+    long countLimit(@Param(Constants.WRAPPER) Wrapper<TransferOrder> wrapper, @Param("limit") int limit);
+
+    /** 流式查询 (逐行回调， 用于数据导出) **/
+    void streamList(@Param(Constants.WRAPPER) Wrapper<TransferOrder> wrapper, ResultHandler<TransferOrder> handler);
 }
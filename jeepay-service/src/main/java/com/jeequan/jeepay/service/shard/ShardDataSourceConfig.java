@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.shard;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+* 订单分库 数据源配置 （isys.sharding.enabled=true 时生效）
+* 第0个分库使用 spring.datasource 的连接信息， 各分库的连接池参数均读取 spring.datasource.druid；
+* 对外提供的数据源为延迟获取连接的代理， 事务在执行第一条语句时才按当前分库号获取连接。
+*/
+@Configuration
+@ConditionalOnProperty(prefix = "isys.sharding", name = "enabled", havingValue = "true")
+public class ShardDataSourceConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(Environment env, ShardingYmlConfig shardingYmlConfig) throws SQLException {
+
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(ShardRouter.DEFAULT_SHARD, createDataSource(env, ShardRouter.DEFAULT_SHARD,
+                env.getProperty("spring.datasource.url"), env.getProperty("spring.datasource.username"), env.getProperty("spring.datasource.password")));
+
+        for (int i = 0; i < shardingYmlConfig.getDatasources().size(); i++) {
+            ShardingYmlConfig.DataSourceItem item = shardingYmlConfig.getDatasources().get(i);
+            targetDataSources.put(i + 1, createDataSource(env, i + 1, item.getUrl(), item.getUsername(), item.getPassword()));
+        }
+
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(targetDataSources);
+        routingDataSource.setLenientFallback(false);
+        return routingDataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource){
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    private DruidDataSource createDataSource(Environment env, int shard, String url, String username, String password) throws SQLException {
+
+        DruidDataSource dataSource = new DruidDataSource();
+        Binder.get(env).bind("spring.datasource.druid", Bindable.ofInstance(dataSource));
+        dataSource.setName("shard-" + shard);
+        dataSource.setUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.init();
+        return dataSource;
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.shard;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.jeequan.jeepay.core.utils.OrderIdGenerator;
+import com.jeequan.jeepay.core.utils.SeqKit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/*
+* 订单分库 路由
+* 订单数据 (支付、退款、转账订单， 商户通知记录， 分账记录) 按所属支付/转账订单的分片号分布到各分库：
+*   1. 支付/转账订单号中包含商户号对应的分片号， 退款订单、通知记录、分账记录与所属订单位于同一分库；
+*   2. 未包含分片号的历史订单号 (及历史自增ID) 位于默认库， 因此按商户号查询时需同时查询商户所在分库及默认库；
+*   3. 无法确定分库的查询由 scatterRead 在各分库并行执行后合并 （在独立线程中执行， 不参与调用方的事务）；
+*   4. 同一事务只能操作一个分库， 跨分库的更新由 scatterWrite 逐库执行， 不允许在事务中调用。
+* 未开启分库时所有方法直接在当前线程执行。
+*/
+@Slf4j
+@Component
+public class ShardRouter {
+
+    /** 默认库 (非订单数据、历史订单数据) **/
+    public static final int DEFAULT_SHARD = 0;
+
+    /** 当前线程指定的分库 **/
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    /** 当前线程限定的候选分库 （跨库查询/更新的范围）， 为空表示全部分库 **/
+    private static final ThreadLocal<List<Integer>> CANDIDATE_SHARDS = new ThreadLocal<>();
+
+    @Autowired private ShardingYmlConfig shardingYmlConfig;
+
+    /** 分库数量 **/
+    private int shardCount = 1;
+
+    private List<Integer> allShards = Collections.singletonList(DEFAULT_SHARD);
+
+    /** 跨库查询线程池 **/
+    private ThreadPoolExecutor scatterExecutor;
+
+    /** 当前线程的分库号， 未指定时为默认库 **/
+    public static int currentShard(){
+        Integer shard = CURRENT_SHARD.get();
+        return shard == null ? DEFAULT_SHARD : shard;
+    }
+
+    @PostConstruct
+    public void init(){
+
+        if(!shardingYmlConfig.isEnabled()){
+            return ;
+        }
+
+        shardCount = 1 + shardingYmlConfig.getDatasources().size();
+        if(shardCount > OrderIdGenerator.SHARD_COUNT){
+            throw new IllegalStateException("分库数量不能超过" + OrderIdGenerator.SHARD_COUNT);
+        }
+
+        List<Integer> shardList = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shardList.add(i);
+        }
+        allShards = Collections.unmodifiableList(shardList);
+
+        int threadSize = Math.max(shardingYmlConfig.getScatterThreadSize(), shardCount);
+        scatterExecutor = new ThreadPoolExecutor(threadSize, threadSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("order-shard-scatter-", true));
+        log.info("订单分库已开启, 分库数量={}", shardCount);
+    }
+
+    @PreDestroy
+    public void destroy(){
+        if(scatterExecutor != null){
+            scatterExecutor.shutdown();
+        }
+    }
+
+    public boolean isEnabled(){
+        return shardCount > 1;
+    }
+
+    public int getShardCount(){
+        return shardCount;
+    }
+
+    /** 当前线程是否已确定分库 （未开启分库时总是返回true） **/
+    public boolean inShard(){
+        return shardCount <= 1 || CURRENT_SHARD.get() != null;
+    }
+
+    /** 商户号对应的分库 **/
+    public int shardOfMch(String mchNo){
+        return OrderIdGenerator.shardOf(mchNo) % shardCount;
+    }
+
+    /** 商户数据可能所在的分库 (商户所在分库 & 存放历史订单的默认库) **/
+    public List<Integer> shardsOfMch(String mchNo){
+        int shard = shardOfMch(mchNo);
+        return shard == DEFAULT_SHARD ? Collections.singletonList(DEFAULT_SHARD) : Arrays.asList(DEFAULT_SHARD, shard);
+    }
+
+    /** 订单号 (支付、退款、转账) 对应的分库， 历史订单号位于默认库 **/
+    public int shardOfOrderId(String orderId){
+        Integer shard = SeqKit.parseOrderIdShard(orderId);
+        return shard == null ? DEFAULT_SHARD : shard % shardCount;
+    }
+
+    /** 数字ID (由OrderIdGenerator生成) 对应的分库， 历史自增ID位于默认库 **/
+    public int shardOfId(long id){
+        return OrderIdGenerator.isGenerated(id) ? OrderIdGenerator.parseShard(id) % shardCount : DEFAULT_SHARD;
+    }
+
+    /** 在指定分库执行 **/
+    public <R> R execute(int shard, Supplier<R> supplier){
+
+        Integer prevShard = CURRENT_SHARD.get();
+        if(shardCount <= 1 || (prevShard != null && prevShard == shard)){
+            return supplier.get();
+        }
+
+        Integer txShard = ShardRoutingDataSource.getTxShard();
+        if(txShard != null && txShard != shard){
+            throw new IllegalStateException("当前事务已使用分库[" + txShard + "], 不支持在同一事务中操作分库[" + shard + "]");
+        }
+
+        CURRENT_SHARD.set(shard);
+        try {
+            return supplier.get();
+        } finally {
+            if(prevShard == null){
+                CURRENT_SHARD.remove();
+            }else{
+                CURRENT_SHARD.set(prevShard);
+            }
+        }
+    }
+
+    /** 在指定分库执行 **/
+    public void run(int shard, Runnable runnable){
+        execute(shard, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /** 限定候选分库后执行， 其中无法确定分库的操作仅在候选分库中执行 **/
+    public <R> R executeOnShards(Collection<Integer> shards, Supplier<R> supplier){
+
+        if(shardCount <= 1 || CURRENT_SHARD.get() != null){
+            return supplier.get();
+        }
+
+        List<Integer> shardList = new ArrayList<>(new TreeSet<>(shards));
+        if(shardList.size() == 1){
+            return execute(shardList.get(0), supplier);
+        }
+
+        List<Integer> prevShards = CANDIDATE_SHARDS.get();
+        CANDIDATE_SHARDS.set(shardList);
+        try {
+            return supplier.get();
+        } finally {
+            if(prevShards == null){
+                CANDIDATE_SHARDS.remove();
+            }else{
+                CANDIDATE_SHARDS.set(prevShards);
+            }
+        }
+    }
+
+    /**
+     * 跨库查询： 在各 (候选) 分库并行执行， 返回各分库的结果 （按分库号顺序）
+     * 已确定分库时仅在当前分库执行。
+     **/
+    public <R> List<R> scatterRead(Supplier<R> supplier){
+
+        if(inShard()){
+            return Collections.singletonList(supplier.get());
+        }
+
+        List<Integer> shardList = targetShards();
+        if(shardList.size() == 1){
+            return Collections.singletonList(execute(shardList.get(0), supplier));
+        }
+
+        List<Future<R>> futureList = new ArrayList<>(shardList.size());
+        for (Integer shard : shardList) {
+            futureList.add(scatterExecutor.submit(() -> {
+                CURRENT_SHARD.set(shard);
+                try {
+                    return supplier.get();
+                } finally {
+                    CURRENT_SHARD.remove();
+                }
+            }));
+        }
+
+        List<R> result = new ArrayList<>(shardList.size());
+        try {
+            for (Future<R> future : futureList) {
+                result.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("跨库查询被中断", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("跨库查询异常", e.getCause());
+        } finally {
+            futureList.forEach(future -> future.cancel(true));
+        }
+        return result;
+    }
+
+    /**
+     * 跨库更新： 在各 (候选) 分库逐个执行， 返回影响的总行数
+     * 各分库的更新不在同一事务中， 因此不允许在事务中调用。
+     **/
+    public int scatterWrite(Supplier<Integer> supplier){
+
+        if(inShard()){
+            return supplier.get();
+        }
+
+        if(TransactionSynchronizationManager.isActualTransactionActive()){
+            throw new IllegalStateException("不支持在事务中跨分库更新");
+        }
+
+        int result = 0;
+        for (Integer shard : targetShards()) {
+            result += execute(shard, supplier);
+        }
+        return result;
+    }
+
+    /** 在各 (候选) 分库逐个执行 **/
+    public void forEachShard(IntConsumer consumer){
+
+        if(inShard()){
+            consumer.accept(currentShard());
+            return ;
+        }
+
+        for (Integer shard : targetShards()) {
+            run(shard, () -> consumer.accept(shard));
+        }
+    }
+
+    private List<Integer> targetShards(){
+        List<Integer> shards = CANDIDATE_SHARDS.get();
+        return shards == null ? allShards : shards;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.shard;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+* 订单分库 路由数据源
+* 按当前线程的分库号 (ShardRouter) 选择数据源， 未指定时使用默认库；
+* 事务中首次获取连接时将分库号绑定到事务， 事务结束前该事务内的操作不允许切换到其他分库。
+*/
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    /** 事务绑定的分库号 resource key **/
+    private static final Object TX_SHARD_KEY = ShardRoutingDataSource.class.getName() + ".TX_SHARD";
+
+    /** 当前事务绑定的分库号， 无事务或事务尚未获取连接时返回null **/
+    public static Integer getTxShard(){
+        return (Integer) TransactionSynchronizationManager.getResource(TX_SHARD_KEY);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        int shard = ShardRouter.currentShard();
+
+        if(TransactionSynchronizationManager.isActualTransactionActive() && TransactionSynchronizationManager.isSynchronizationActive()
+                && getTxShard() == null){
+
+            TransactionSynchronizationManager.bindResource(TX_SHARD_KEY, shard);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TX_SHARD_KEY);
+                }
+            });
+        }
+        return shard;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        for (DataSource dataSource : getResolvedDataSources().values()) {
+            if(dataSource instanceof Closeable){
+                ((Closeable) dataSource).close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.shard;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Function;
+
+/*
+* 订单分库 服务基类
+* 按主键/实体可确定分库的操作在对应分库执行， 无法确定分库的查询在各分库并行执行后合并， 更新在各分库逐个执行；
+* 已通过 ShardRouter 指定分库时， 所有操作直接在该分库执行。
+*
+* 跨库合并的说明：
+*   list: 各分库结果直接拼接， 不保证排序及 limit 条数， 需要时由调用方处理；
+*   page: 各分库均查询 [1, 当前页 * 每页条数] 的数据， 按 pageOrder 合并排序后截取当前页， 页码越大开销越大。
+*/
+public abstract class ShardServiceImpl<M extends BaseMapper<T>, T> extends ServiceImpl<M, T> {
+
+    @Autowired protected ShardRouter shardRouter;
+
+    /** 主键所在分库 **/
+    protected abstract int shardOfId(Serializable id);
+
+    /** 实体所在分库， 实体中不包含路由字段时返回null **/
+    protected abstract Integer shardOfEntity(T entity);
+
+    /** 跨库分页时的合并排序 (与列表查询的排序一致) **/
+    protected abstract Comparator<T> pageOrder();
+
+    @Override
+    public boolean save(T entity) {
+        Integer shard = shardOfEntity(entity);
+        return shardRouter.execute(shard == null ? ShardRouter.DEFAULT_SHARD : shard, () -> super.save(entity));
+    }
+
+    @Override
+    public boolean updateById(T entity) {
+        Integer shard = shardOfEntity(entity);
+        if(shard == null){
+            return shardRouter.scatterWrite(() -> baseMapper.updateById(entity)) > 0;
+        }
+        return shardRouter.execute(shard, () -> super.updateById(entity));
+    }
+
+    @Override
+    public boolean update(T entity, Wrapper<T> updateWrapper) {
+        return shardRouter.scatterWrite(() -> baseMapper.update(entity, updateWrapper)) > 0;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        return shardRouter.execute(shardOfId(id), () -> super.removeById(id));
+    }
+
+    @Override
+    public boolean remove(Wrapper<T> queryWrapper) {
+        return shardRouter.scatterWrite(() -> baseMapper.delete(queryWrapper)) > 0;
+    }
+
+    @Override
+    public T getById(Serializable id) {
+        return shardRouter.execute(shardOfId(id), () -> super.getById(id));
+    }
+
+    @Override
+    public List<T> listByIds(Collection<? extends Serializable> idList) {
+
+        if(shardRouter.inShard()){
+            return super.listByIds(idList);
+        }
+
+        List<T> result = new ArrayList<>(idList.size());
+        groupByShard(idList).forEach((shard, shardIdList) -> result.addAll(shardRouter.execute(shard, () -> super.listByIds(shardIdList))));
+        return result;
+    }
+
+    @Override
+    public T getOne(Wrapper<T> queryWrapper, boolean throwEx) {
+
+        List<T> resultList = new ArrayList<>();
+        shardRouter.scatterRead(() -> super.getOne(queryWrapper, throwEx)).forEach(item -> {
+            if(item != null){
+                resultList.add(item);
+            }
+        });
+
+        if(throwEx && resultList.size() > 1){
+            throw new TooManyResultsException("Expected one result (or null) to be returned by getOne(), but found: " + resultList.size());
+        }
+        return resultList.isEmpty() ? null : resultList.get(0);
+    }
+
+    @Override
+    public <V> V getObj(Wrapper<T> queryWrapper, Function<? super Object, V> mapper) {
+
+        for (V item : shardRouter.scatterRead(() -> super.getObj(queryWrapper, mapper))) {
+            if(item != null){
+                return item;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int count(Wrapper<T> queryWrapper) {
+        return (int) sumLong(shardRouter.scatterRead(() -> baseMapper.selectCount(queryWrapper)));
+    }
+
+    @Override
+    public List<T> list(Wrapper<T> queryWrapper) {
+
+        List<T> result = new ArrayList<>();
+        shardRouter.scatterRead(() -> baseMapper.selectList(queryWrapper)).forEach(result::addAll);
+        return result;
+    }
+
+    @Override
+    public <E extends IPage<T>> E page(E page, Wrapper<T> queryWrapper) {
+        return scatterPage(page, shardPage -> baseMapper.selectPage(shardPage, queryWrapper));
+    }
+
+    /** 跨库分页查询 **/
+    protected <E extends IPage<T>> E scatterPage(E page, Function<IPage<T>, IPage<T>> query) {
+
+        if(shardRouter.inShard()){
+            query.apply(page);
+            return page;
+        }
+
+        long size = page.getSize();
+        List<IPage<T>> pageList = shardRouter.scatterRead(() -> query.apply(new Page<>(1, size < 0 ? size : page.getCurrent() * size, page.isSearchCount())));
+
+        long total = 0;
+        List<T> records = new ArrayList<>();
+        for (IPage<T> shardPage : pageList) {
+            total += shardPage.getTotal();
+            records.addAll(shardPage.getRecords());
+        }
+        records.sort(pageOrder());
+
+        if(size >= 0){
+            int fromIndex = (int) Math.min((page.getCurrent() - 1) * size, records.size());
+            int toIndex = (int) Math.min(fromIndex + size, records.size());
+            records = new ArrayList<>(records.subList(fromIndex, toIndex));
+        }
+
+        if(page.isSearchCount()){
+            page.setTotal(total);
+        }
+        page.setRecords(records);
+        return page;
+    }
+
+    /** 按主键所在分库分组执行更新， 返回影响的总行数 **/
+    protected <K extends Serializable> int updateByIdGroup(Collection<K> idList, Function<List<K>, Integer> updater) {
+
+        if(idList == null || idList.isEmpty()){
+            return 0;
+        }
+
+        if(shardRouter.inShard()){
+            return updater.apply(new ArrayList<>(idList));
+        }
+
+        int result = 0;
+        for (Map.Entry<Integer, List<K>> entry : groupByShard(idList).entrySet()) {
+            result += shardRouter.execute(entry.getKey(), () -> updater.apply(entry.getValue()));
+        }
+        return result;
+    }
+
+    /** 多个分库的结果求和 **/
+    protected static long sumLong(List<? extends Number> numberList) {
+
+        long result = 0;
+        for (Number number : numberList) {
+            if(number != null){
+                result += number.longValue();
+            }
+        }
+        return result;
+    }
+
+    private <K extends Serializable> Map<Integer, List<K>> groupByShard(Collection<K> idList) {
+
+        Map<Integer, List<K>> groupMap = new TreeMap<>();
+        for (K id : idList) {
+            groupMap.computeIfAbsent(shardOfId(id), k -> new ArrayList<>()).add(id);
+        }
+        return groupMap;
+    }
+
+}
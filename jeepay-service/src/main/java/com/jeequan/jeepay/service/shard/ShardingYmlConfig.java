@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2021-2031, 河北计全科技有限公司 (https://www.jeequan.com & jeequan@126.com).
+ * <p>
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE 3.0;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeequan.jeepay.service.shard;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+* 订单分库配置
+* 第0个分库为 spring.datasource 配置的默认库 （系统配置、商户信息等非订单数据均在默认库）， datasources 为第1 ~ N个分库；
+* 分库数量确定后不可随意调整 （数据按 商户号/订单号 取模分布， 调整后需迁移数据）。
+*/
+@Data
+@Component
+@ConfigurationProperties(prefix="isys.sharding")
+public class ShardingYmlConfig {
+
+    /** 是否开启分库 **/
+    private boolean enabled = false;
+
+    /** 跨库查询的线程数 **/
+    private int scatterThreadSize = 16;
+
+    /** 第1 ~ N个分库的连接信息 （连接池参数与 spring.datasource.druid 一致） **/
+    private List<DataSourceItem> datasources = new ArrayList<>();
+
+    /** 分库连接信息 **/
+    @Data
+    public static class DataSourceItem {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+
+}